@@ -0,0 +1,204 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark của FtpCore với FTP server nhúng trên loopback: độ trễ LIST, số file nhỏ/giây,
+ * MB/s của file lớn và thời gian tính dung lượng/xoá cây thư mục mẫu.
+ *
+ *   gradle -p android/core jmh
+ */
+public class FtpCoreBenchmark {
+
+  static final int LIST_SIZE = 500;
+  static final int SMALL_FILE_SIZE = 4 * 1024;
+  static final int LARGE_FILE_MB = 64;
+  static final int TEXT_FILE_MB = 16;
+
+  /**
+   * Server + core dùng chung cho cả lần chạy.
+   */
+  @State(Scope.Benchmark)
+  public static class Server {
+    EmbeddedFtpServer server;
+    ExecutorService executor;
+    Metrics metrics;
+    FtpCore core;
+    File localDir;
+    File smallFile;
+    File largeFile;
+    final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+      server = EmbeddedFtpServer.start();
+      executor = Executors.newSingleThreadExecutor();
+      metrics = new Metrics(snapshot -> { });
+      core = new FtpCore(metrics, executor);
+      core.setup(server.config());
+
+      for (int i = 0; i < LIST_SIZE; i++) {
+        server.createFile("list/file-" + i + ".bin", 0);
+      }
+      server.createFile("large.bin", LARGE_FILE_MB * 1024L * 1024L);
+      server.file("small").mkdirs();
+      server.file("upload").mkdirs();
+
+      localDir = Files.createTempDirectory("rnftp-bench").toFile();
+      smallFile = new File(localDir, "small.bin");
+      EmbeddedFtpServer.writeRandom(smallFile, SMALL_FILE_SIZE, 1);
+      largeFile = new File(localDir, "large.bin");
+      EmbeddedFtpServer.writeRandom(largeFile, LARGE_FILE_MB * 1024L * 1024L, 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      core.shutdown();
+      metrics.shutdown();
+      executor.shutdownNow();
+      server.close();
+      EmbeddedFtpServer.deleteRecursively(localDir);
+    }
+  }
+
+  /**
+   * Cây mẫu 3 tầng x 4 nhánh (85 thư mục), mỗi thư mục 10 file, duyệt với 'parallelism' session.
+   */
+  @State(Scope.Benchmark)
+  public static class Tree {
+    @Param({"1", "4", "8"})
+    int parallelism;
+
+    @Setup(Level.Trial)
+    public void create(Server state) throws IOException {
+      state.server.createTree("tree", 3, 4, 10, 1024);
+    }
+  }
+
+  /**
+   * Cây được tạo lại trước mỗi lần xoá (trên đĩa của server, không tính vào thời gian đo).
+   */
+  @State(Scope.Thread)
+  public static class DoomedTree {
+    @Param({"1", "4", "8"})
+    int parallelism;
+
+    @Setup(Level.Invocation)
+    public void create(Server state) throws IOException {
+      state.server.createTree("doomed", 3, 4, 10, 16);
+    }
+  }
+
+  /**
+   * File text dễ nén (log), upload với và không có MODE Z.
+   */
+  @State(Scope.Benchmark)
+  public static class TextFile {
+    @Param({"off", "on"})
+    String compression;
+    File file;
+
+    @Setup(Level.Trial)
+    public void create(Server state) throws IOException {
+      file = new File(state.localDir, "log.txt");
+      StringBuilder content = new StringBuilder();
+      for (int i = 0; content.length() < TEXT_FILE_MB * 1024 * 1024; i++) {
+        content.append("2024-01-01 00:00:00 INFO request ").append(i).append(" served in ").append(i % 97).append(" ms\n");
+      }
+      Files.write(file.toPath(), content.toString().getBytes("UTF-8"));
+    }
+  }
+
+  /**
+   * Đếm MB đã chuyển, JMH báo theo MB/s.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Megabytes {
+    public long megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      megabytes = 0;
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public FTPFile[] listLatency(Server state) throws IOException {
+    // bỏ qua cache listing để đo đúng một LIST trên session của pool
+    return state.core.getPool().execute(client -> client.listFiles("/list"));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public FTPFile statLatency(Server state) throws IOException {
+    return state.core.stat("/list/file-0.bin");
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void smallFileUpload(Server state) throws IOException {
+    state.core.upload(state.smallFile, "/small/file-" + (state.sequence.incrementAndGet() % 1000) + ".bin");
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void largeFileUpload(Server state, Megabytes counter) throws IOException {
+    state.core.upload(state.largeFile, "/upload/large.bin");
+    counter.megabytes += LARGE_FILE_MB;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void largeFileDownload(Server state, Megabytes counter) throws IOException {
+    state.core.download("/large.bin", new File(state.localDir, "download.bin"));
+    counter.megabytes += LARGE_FILE_MB;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void textFileUpload(Server state, TextFile text, Megabytes counter) throws IOException {
+    state.core.upload(text.file, "/upload/log.txt", text.compression, null);
+    counter.megabytes += TEXT_FILE_MB;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public TreeWalker.Node folderSize(Server state, Tree tree) throws Exception {
+    return state.core.scanFolder("/tree", tree.parallelism, false, null);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public FtpCore.RemoveReport removeTree(Server state, DoomedTree tree) throws Exception {
+    return state.core.removeTree("/doomed", tree.parallelism, null);
+  }
+}
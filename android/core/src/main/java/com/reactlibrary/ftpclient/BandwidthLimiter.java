@@ -0,0 +1,87 @@
+package com.reactlibrary.ftpclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giới hạn băng thông kiểu token bucket cho vòng lặp copy của TransferEngine. Mỗi chunk trừ token
+ * ở bucket chung của chiều transfer và ở bucket riêng của transfer; bucket nào thiếu (nợ) thì thread
+ * ngủ cho tới khi trả hết nợ. Lệnh metadata (LIST, SIZE...) không đi qua đây nên không bị giới hạn.
+ */
+class BandwidthLimiter {
+
+  static final long UNLIMITED = 0;
+  // lượng token tối đa được dồn lại khi rảnh, tính theo thời gian ở tốc độ hiện tại
+  private static final long BURST_MS = 200;
+  // khi bị giới hạn, mỗi chunk chỉ khoảng CHUNK_MS dữ liệu để tốc độ đều thay vì từng cục lớn
+  private static final long CHUNK_MS = 50;
+  private static final int MIN_CHUNK = 4 * 1024;
+
+  /**
+   * Một bucket, tốc độ (byte/s) đổi được lúc đang chạy, UNLIMITED (0) là không giới hạn.
+   */
+  static class Bucket {
+    private long rate;
+    private double tokens;
+    private long lastRefill;
+
+    Bucket(long rate) {
+      setRate(rate);
+    }
+
+    synchronized void setRate(long rate) {
+      this.rate = Math.max(UNLIMITED, rate);
+      this.tokens = 0;
+      this.lastRefill = System.nanoTime();
+    }
+
+    synchronized long getRate() {
+      return rate;
+    }
+
+    /**
+     * Trừ 'bytes' token.
+     * @return số ns phải chờ để bucket hết nợ, 0 nếu không phải chờ.
+     */
+    synchronized long take(long bytes, long now) {
+      if (rate <= UNLIMITED) {
+        return 0;
+      }
+      double capacity = rate * BURST_MS / 1000.0;
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1e9);
+      lastRefill = now;
+      tokens -= bytes;
+      return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+    }
+
+    private int chunkSize(int max) {
+      long current = getRate();
+      if (current <= UNLIMITED) {
+        return max;
+      }
+      return (int) Math.max(MIN_CHUNK, Math.min(max, current * CHUNK_MS / 1000));
+    }
+  }
+
+  private BandwidthLimiter() {
+  }
+
+  /**
+   * Kích thước chunk nên đọc, nhỏ lại khi có bucket đang giới hạn.
+   */
+  static int chunkSize(Bucket global, Bucket transfer, int max) {
+    int size = global == null ? max : global.chunkSize(max);
+    return transfer == null ? size : transfer.chunkSize(size);
+  }
+
+  /**
+   * Trừ 'bytes' ở cả hai bucket (null là không giới hạn) và ngủ nếu cần.
+   */
+  static void throttle(Bucket global, Bucket transfer, long bytes) throws InterruptedException {
+    long now = System.nanoTime();
+    long wait = Math.max(global == null ? 0 : global.take(bytes, now),
+            transfer == null ? 0 : transfer.take(bytes, now));
+    if (wait > 0) {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Checksum (CRC32/MD5/SHA-256) tính ngay trên dữ liệu đi qua data stream trong lúc transfer,
+ * không phải đọc lại file sau đó. Xong transfer thì so với hash của server (HASH, XCRC, XMD5,
+ * MD5, XSHA256) nếu FEAT có lệnh tương ứng.
+ */
+class Checksum {
+
+  static final String CRC32 = "crc32";
+  static final String MD5 = "md5";
+  static final String SHA256 = "sha256";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  final String algorithm;
+  private final CRC32 crc;
+  private final MessageDigest digest;
+  private String value;
+  // null: server không có lệnh hash nào để so
+  private Boolean verified;
+
+  private Checksum(String algorithm) throws IOException {
+    this.algorithm = algorithm;
+    if (CRC32.equals(algorithm)) {
+      this.crc = new CRC32();
+      this.digest = null;
+    } else {
+      this.crc = null;
+      try {
+        this.digest = MessageDigest.getInstance(MD5.equals(algorithm) ? "MD5" : "SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IOException(e.getMessage());
+      }
+    }
+  }
+
+  static boolean isValidAlgorithm(String algorithm) {
+    return CRC32.equals(algorithm) || MD5.equals(algorithm) || SHA256.equals(algorithm);
+  }
+
+  /**
+   * @return null nếu 'algorithm' là null (không tính checksum).
+   */
+  static Checksum create(String algorithm) throws IOException {
+    if (algorithm == null) {
+      return null;
+    }
+    if (!isValidAlgorithm(algorithm)) {
+      throw new IOException("unsupported checksum " + algorithm);
+    }
+    return new Checksum(algorithm);
+  }
+
+  /**
+   * Bắt đầu lại từ đầu, gọi ở đầu mỗi lần thử transfer.
+   */
+  synchronized void reset() {
+    if (crc != null) {
+      crc.reset();
+    } else {
+      digest.reset();
+    }
+    value = null;
+    verified = null;
+  }
+
+  synchronized void update(byte[] bytes, int offset, int length) {
+    if (crc != null) {
+      crc.update(bytes, offset, length);
+    } else {
+      digest.update(bytes, offset, length);
+    }
+  }
+
+  /**
+   * Tính trên 'length' byte đầu của 'file', dùng cho phần đã có sẵn khi resume và cho
+   * download nhiều đoạn (các đoạn về không theo thứ tự nên không tính được trên stream).
+   */
+  void updateFromFile(File file, long length) throws IOException {
+    if (length <= 0) {
+      return;
+    }
+    RandomAccessFile input = new RandomAccessFile(file, "r");
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long left = length;
+      while (left > 0) {
+        int read = input.read(buffer, 0, (int) Math.min(buffer.length, left));
+        if (read == -1) {
+          throw new IOException(file.getName() + " is shorter than " + length + " bytes");
+        }
+        update(buffer, 0, read);
+        left -= read;
+      }
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Giá trị hex (chữ thường) của phần đã tính, sau lần gọi đầu thì không nhận thêm dữ liệu.
+   */
+  synchronized String hex() {
+    if (value == null) {
+      if (crc != null) {
+        value = String.format(Locale.US, "%08x", crc.getValue());
+      } else {
+        value = toHex(digest.digest());
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return true/false khi đã so với server, null nếu server không hỗ trợ.
+   */
+  synchronized Boolean isVerified() {
+    return verified;
+  }
+
+  /**
+   * Tính trên dữ liệu ghi qua 'out'.
+   */
+  OutputStream wrap(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        update(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        update(b, off, len);
+      }
+    };
+  }
+
+  /**
+   * Tính trên dữ liệu đọc từ 'in'.
+   */
+  InputStream wrap(InputStream in) {
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+          update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+          update(b, off, read);
+        }
+        return read;
+      }
+    };
+  }
+
+  /**
+   * So hex() với hash của 'remotePath' trên server.
+   * @throws ChecksumMismatchException khi khác nhau.
+   */
+  void verify(FtpSessionPool pool, FTPClient client, String remotePath) throws IOException {
+    String remote = queryServer(pool.getFeatures(client), client, remotePath);
+    synchronized (this) {
+      verified = remote == null ? null : remote.equals(hex());
+    }
+    if (remote != null && !remote.equals(hex())) {
+      throw new ChecksumMismatchException(remotePath + " " + algorithm + " mismatch: local " + hex()
+              + ", server " + remote);
+    }
+  }
+
+  /**
+   * FEAT của server có lệnh nào trả về hash theo 'algorithm' không.
+   */
+  boolean supportedBy(ServerFeatures features) {
+    if (features.has("HASH", hashName())) {
+      return true;
+    }
+    for (String command : legacyCommands()) {
+      if (features.has(command)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Hash (hex chữ thường) của 'remotePath' do server tính: HASH (draft-bryan-ftp-hash) nếu có
+   * thuật toán này, sau đó các lệnh X* cũ. Không dùng tới dữ liệu đã tính nên gọi được từ nhiều thread.
+   * @return null nếu server không hỗ trợ.
+   */
+  String queryServer(ServerFeatures features, FTPClient client, String remotePath) throws IOException {
+    String hashName = hashName();
+    if (features.has("HASH", hashName)
+            && FTPReply.isPositiveCompletion(client.sendCommand("OPTS", "HASH " + hashName))) {
+      String value = ask(client, "HASH", remotePath);
+      if (value != null) {
+        return value;
+      }
+    }
+    for (String command : legacyCommands()) {
+      if (features.has(command)) {
+        String value = ask(client, command, remotePath);
+        if (value != null) {
+          return value;
+        }
+      }
+    }
+    return null;
+  }
+
+  private String hashName() {
+    return CRC32.equals(algorithm) ? "CRC32" : MD5.equals(algorithm) ? "MD5" : "SHA-256";
+  }
+
+  private String[] legacyCommands() {
+    return CRC32.equals(algorithm) ? new String[]{"XCRC"}
+            : MD5.equals(algorithm) ? new String[]{"XMD5", "MD5"} : new String[]{"XSHA256"};
+  }
+
+  // reply có nhiều dạng: "250 <hex>", "251 <path> <hex>", "213 SHA-256 0-99 <hex> <path>"
+  private String ask(FTPClient client, String command, String remotePath) throws IOException {
+    if (!FTPReply.isPositiveCompletion(client.sendCommand(command, remotePath))) {
+      return null;
+    }
+    String[] reply = client.getReplyStrings();
+    String[] tokens = reply[reply.length - 1].trim().split("\\s+");
+    for (int i = 1; i < tokens.length; i++) {
+      String token = tokens[i].replace("\"", "").toLowerCase(Locale.US);
+      if (token.startsWith("0x")) {
+        token = token.substring(2);
+      }
+      if (!isHex(token)) {
+        continue;
+      }
+      if (CRC32.equals(algorithm) && token.length() <= 8) {
+        return String.format(Locale.US, "%08x", Long.parseLong(token, 16));
+      }
+      if (token.length() == (MD5.equals(algorithm) ? 32 : 64)) {
+        return token;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isHex(String token) {
+    if (token.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      if (Character.digit(token.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format(Locale.US, "%02x", b & 0xff));
+    }
+    return hex.toString();
+  }
+}
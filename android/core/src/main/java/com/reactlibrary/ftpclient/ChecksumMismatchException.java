@@ -0,0 +1,13 @@
+package com.reactlibrary.ftpclient;
+
+/**
+ * Checksum tính trong lúc transfer khác hash của server. Bản hỏng đã bị xoá nên lần thử lại
+ * truyền lại từ đầu.
+ */
+class ChecksumMismatchException extends TransientTransferException {
+  private static final long serialVersionUID = 1L;
+
+  ChecksumMismatchException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,231 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Truyền nén MODE Z (deflate trên data connection). Nén/giải nén chạy như một tầng stream giữa
+ * TransferEngine và data connection, không có file tạm. Dữ liệu đã nén sẵn (ảnh, video, zip...)
+ * thì không nên nén lại: chế độ AUTO chọn theo đuôi file và, với upload, thử nén vài mẫu của file.
+ */
+class Compression {
+
+  static final String OFF = "off";
+  static final String AUTO = "auto";
+  static final String ON = "on";
+
+  // file nhỏ hơn thì không đáng thêm hai lệnh MODE
+  static final long MIN_SIZE = 16 * 1024;
+  // thử nén SAMPLE_COUNT mẫu SAMPLE_SIZE byte rải đều trong file, chỉ nén khi còn dưới MAX_RATIO
+  static final int SAMPLE_SIZE = 16 * 1024;
+  static final int SAMPLE_COUNT = 3;
+  static final double MAX_RATIO = 0.9;
+  // máy yếu: mức nhanh nhất đã lấy được phần lớn lợi ích với text/log/json
+  static final int LEVEL = Deflater.BEST_SPEED;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+  private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+          "jpg", "jpeg", "png", "gif", "webp", "heic", "heif",
+          "mp3", "m4a", "aac", "ogg", "opus", "flac",
+          "mp4", "m4v", "mov", "mkv", "webm", "3gp", "avi",
+          "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "apk", "jar", "docx", "xlsx", "pptx", "pdf"));
+
+  private Compression() {
+  }
+
+  static boolean isValidMode(String mode) {
+    return OFF.equals(mode) || AUTO.equals(mode) || ON.equals(mode);
+  }
+
+  /**
+   * Đuôi file cho biết dữ liệu đã được nén sẵn.
+   */
+  static boolean isCompressedName(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.US));
+  }
+
+  /**
+   * Có nên nén khi upload 'localFile' từ 'offset' với chế độ 'mode' không.
+   */
+  static boolean shouldCompressUpload(String mode, File localFile, long offset) throws IOException {
+    if (ON.equals(mode)) {
+      return true;
+    }
+    if (!AUTO.equals(mode) || localFile.length() - offset < MIN_SIZE || isCompressedName(localFile.getName())) {
+      return false;
+    }
+    return sampleRatio(localFile, offset) < MAX_RATIO;
+  }
+
+  /**
+   * Có nên nén khi download 'remotePath' không. Chưa có dữ liệu để thử nên AUTO chỉ xét đuôi file.
+   */
+  static boolean shouldCompressDownload(String mode, String remotePath) {
+    if (ON.equals(mode)) {
+      return true;
+    }
+    return AUTO.equals(mode) && !isCompressedName(remotePath.substring(remotePath.lastIndexOf('/') + 1));
+  }
+
+  /**
+   * Tỉ lệ kích thước sau/trước khi nén của các mẫu lấy từ 'offset' tới cuối file.
+   */
+  static double sampleRatio(File file, long offset) throws IOException {
+    RandomAccessFile input = new RandomAccessFile(file, "r");
+    Deflater deflater = new Deflater(LEVEL);
+    try {
+      long length = input.length() - offset;
+      byte[] sample = new byte[SAMPLE_SIZE];
+      byte[] output = new byte[SAMPLE_SIZE];
+      long in = 0;
+      long out = 0;
+      for (int i = 0; i < SAMPLE_COUNT; i++) {
+        long position = offset + (length - SAMPLE_SIZE) * i / Math.max(1, SAMPLE_COUNT - 1);
+        input.seek(Math.max(offset, position));
+        int read = input.read(sample);
+        if (read <= 0) {
+          break;
+        }
+        deflater.reset();
+        deflater.setInput(sample, 0, read);
+        deflater.finish();
+        while (!deflater.finished()) {
+          out += deflater.deflate(output);
+        }
+        in += read;
+      }
+      return in == 0 ? 1 : (double) out / in;
+    } finally {
+      deflater.end();
+      input.close();
+    }
+  }
+
+  /**
+   * Bật MODE Z trên 'client' nếu FEAT của server có "MODE Z".
+   * @return false nếu server không hỗ trợ, khi đó transfer chạy bình thường ở MODE S.
+   */
+  static boolean enable(FtpSessionPool pool, FTPClient client) throws IOException {
+    if (!pool.getFeatures(client).has("MODE", "Z")) {
+      return false;
+    }
+    return FTPReply.isPositiveCompletion(client.sendCommand("MODE", "Z"));
+  }
+
+  /**
+   * Trả session về MODE S trước khi đưa lại vào pool.
+   */
+  static void disable(FTPClient client) throws IOException {
+    if (!FTPReply.isPositiveCompletion(client.sendCommand("MODE", "S"))) {
+      throw new IOException("ftp MODE S failed: " + client.getReplyString());
+    }
+  }
+
+  /**
+   * Nén dữ liệu ghi vào data stream 'out', 'wireBytes' nhận số byte thật sự đi trên mạng.
+   * close() kết thúc luồng deflate, giải phóng Deflater rồi đóng 'out'.
+   */
+  static OutputStream deflate(OutputStream out, Counter wireBytes) {
+    final Deflater deflater = new Deflater(LEVEL);
+    return new DeflaterOutputStream(new CountingOutputStream(out, wireBytes), deflater, STREAM_BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          deflater.end();
+        }
+      }
+    };
+  }
+
+  /**
+   * Giải nén dữ liệu đọc từ data stream 'in', 'wireBytes' nhận số byte thật sự đi trên mạng.
+   * Luồng bị cắt giữa chừng sẽ báo EOFException thay vì được coi là hết file.
+   */
+  static InputStream inflate(InputStream in, Counter wireBytes) {
+    final Inflater inflater = new Inflater();
+    return new InflaterInputStream(new CountingInputStream(in, wireBytes), inflater, STREAM_BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+
+  /**
+   * Bộ đếm byte đơn giản cho một transfer.
+   */
+  static class Counter {
+    long bytes;
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+    private final Counter counter;
+
+    CountingInputStream(InputStream in, Counter counter) {
+      super(in);
+      this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        counter.bytes++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read > 0) {
+        counter.bytes += read;
+      }
+      return read;
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    private final Counter counter;
+
+    CountingOutputStream(OutputStream out, Counter counter) {
+      super(out);
+      this.counter = counter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      counter.bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      counter.bytes += len;
+    }
+  }
+}
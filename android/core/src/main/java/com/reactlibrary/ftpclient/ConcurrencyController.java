@@ -0,0 +1,312 @@
+package com.reactlibrary.ftpclient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tự chỉnh số transfer chạy đồng thời của một lane kiểu AIMD thay vì một con số cố định.
+ * Sau mỗi 'interval' đo tổng tốc độ của lane, RTT của control connection (lệnh có reply ngay)
+ * và số lỗi/timeout trong khoảng vừa rồi:
+ * - có lỗi/timeout hoặc RTT tăng vọt so với RTT nền (hàng đợi ở router/server đã đầy): giảm theo tỉ lệ;
+ * - lane đủ slot mà vẫn còn task chờ: thêm một slot;
+ * - vừa thêm slot mà tốc độ không tăng: lùi lại một slot và giữ nguyên một lúc rồi mới thử tiếp.
+ */
+class ConcurrencyController {
+
+  private static final String TAG = "RNFtpClient";
+  static final int DEFAULT_MIN = 1;
+  static final int DEFAULT_MAX = 16;
+  static final int DEFAULT_INITIAL = 4;
+  static final long DEFAULT_INTERVAL_MS = 2000;
+  static final long MIN_INTERVAL_MS = 500;
+  static final double DECREASE_FACTOR = 0.7;
+  // RTT trong khoảng vừa rồi gấp RTT_TOLERANCE lần RTT nền và hơn ít nhất MIN_RTT_INCREASE_MS thì coi là nghẽn,
+  // ngưỡng ms tránh phản ứng với dao động vài ms trong mạng LAN
+  static final double RTT_TOLERANCE = 2.0;
+  static final double MIN_RTT_INCREASE_MS = 20;
+  // RTT nền là RTT nhỏ nhất đã thấy, được nâng dần mỗi lần đo để theo kịp khi đổi mạng
+  static final double BASE_RTT_DRIFT = 1.05;
+  // thêm một slot phải tăng tốc độ ít nhất MIN_GAIN, không thì lùi lại và giữ HOLD_TICKS lần đo
+  static final double MIN_GAIN = 0.05;
+  static final int HOLD_TICKS = 5;
+  static final int MAX_DECISIONS = 20;
+
+  static final String REASON_INCREASE = "increase";
+  static final String REASON_PLATEAU = "plateau";
+  static final String REASON_RTT = "rtt";
+  static final String REASON_ERROR = "error";
+  static final String REASON_TIMEOUT = "timeout";
+  static final String REASON_CONFIG = "config";
+
+  static class Options {
+    boolean adaptive = true;   // false: lane chạy cố định 'max' transfer
+    int min = DEFAULT_MIN;
+    int max = DEFAULT_MAX;
+    long intervalMs = DEFAULT_INTERVAL_MS;
+
+    Options copy() {
+      Options copy = new Options();
+      copy.adaptive = adaptive;
+      copy.min = min;
+      copy.max = max;
+      copy.intervalMs = intervalMs;
+      return copy;
+    }
+  }
+
+  /**
+   * Tổng số byte lane đã truyền từ lúc khởi động, controller lấy hiệu giữa hai lần đo.
+   */
+  interface ByteSource {
+    long transferredBytes();
+  }
+
+  /**
+   * Nơi nhận mỗi lần đổi số slot (module sẽ chuyển thành event gửi lên JS).
+   */
+  interface Listener {
+    void onDecision(String lane, Decision decision);
+  }
+
+  /**
+   * Một lần đổi số slot và số liệu đo dẫn tới nó.
+   */
+  static class Decision {
+    long time;
+    int from;
+    int to;
+    String reason;
+    double throughput;   // byte/s trong khoảng vừa rồi
+    double rttMs;        // 0 nếu không có lệnh nào trong khoảng vừa rồi
+    long errors;
+    long timeouts;
+  }
+
+  static class Status {
+    Options options;
+    int level;
+    int active;
+    int queued;
+    double throughput;
+    double rttMs;
+    double baseRttMs;
+    List<Decision> decisions;
+  }
+
+  private final String name;
+  private final TransferScheduler lane;
+  private final Metrics metrics;
+  private final ByteSource bytes;
+  private final Listener listener;
+  private final ScheduledExecutorService ticker;
+  private final ArrayDeque<Decision> decisions = new ArrayDeque<>();
+  private ScheduledFuture<?> ticking;
+  private Options options = new Options();
+  private int level;
+  private double throughput;
+  private double rttMs;
+  private double baseRttMs;
+  private boolean probing = false;
+  private double probeBaseline;
+  private int hold = 0;
+  // số liệu của lần đo trước
+  private long lastTick;
+  private long lastBytes;
+  private long lastRttCount;
+  private long lastRttSum;
+  private long lastErrors;
+  private long lastTimeouts;
+
+  ConcurrencyController(final String name, TransferScheduler lane, Metrics metrics, ByteSource bytes, Listener listener) {
+    this.name = name;
+    this.lane = lane;
+    this.metrics = metrics;
+    this.bytes = bytes;
+    this.listener = listener;
+    this.level = lane.getMaxActive();
+    this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RNFtpClient-concurrency-" + name);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Áp dụng options mặc định và bắt đầu đo nếu adaptive.
+   */
+  void start() {
+    setOptions(getOptions());
+  }
+
+  synchronized Options getOptions() {
+    return options.copy();
+  }
+
+  /**
+   * Đổi giới hạn; với adaptive=false lane chạy cố định 'max' transfer.
+   */
+  synchronized void setOptions(Options options) {
+    options.min = Math.max(1, options.min);
+    options.max = Math.max(options.min, options.max);
+    options.intervalMs = Math.max(MIN_INTERVAL_MS, options.intervalMs);
+    this.options = options;
+    if (ticking != null) {
+      ticking.cancel(false);
+      ticking = null;
+    }
+    probing = false;
+    hold = 0;
+    int target = options.adaptive ? Math.max(options.min, Math.min(options.max, level)) : options.max;
+    apply(target, REASON_CONFIG, 0, 0, 0);
+    if (!options.adaptive) {
+      return;
+    }
+    resetSample();
+    ticking = ticker.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          tick();
+        } catch (RuntimeException e) {
+          FtpLog.d(TAG, "concurrency " + name + " tick failed", e);
+        }
+      }
+    }, options.intervalMs, options.intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  synchronized Status status() {
+    Status status = new Status();
+    status.options = options.copy();
+    status.level = level;
+    status.active = lane.getActive();
+    status.queued = lane.getQueued();
+    status.throughput = throughput;
+    status.rttMs = rttMs;
+    status.baseRttMs = baseRttMs;
+    status.decisions = new ArrayList<>(decisions);
+    return status;
+  }
+
+  void shutdown() {
+    ticker.shutdownNow();
+  }
+
+  /**
+   * Một lần đo: lấy hiệu các bộ đếm so với lần trước rồi quyết định.
+   */
+  synchronized void tick() {
+    long now = System.nanoTime();
+    double seconds = (now - lastTick) / 1e9;
+    long transferred = bytes.transferredBytes();
+    double sampleThroughput = seconds > 0 ? (transferred - lastBytes) / seconds : 0;
+
+    // histogram có thể đã bị resetMetrics() thay bằng cái mới
+    Metrics.Histogram rtt = metrics.find(Metrics.RTT);
+    long rttCount = rtt == null ? 0 : rtt.getCount();
+    long rttSum = rtt == null ? 0 : rtt.getSum();
+    if (rttCount < lastRttCount) {
+      lastRttCount = 0;
+      lastRttSum = 0;
+    }
+    double sampleRtt = rttCount > lastRttCount ? (rttSum - lastRttSum) / 1000.0 / (rttCount - lastRttCount) : 0;
+
+    long errors = lane.getErrorCount();
+    long timeouts = lane.getTimeoutCount();
+    decide(sampleThroughput, sampleRtt, errors - lastErrors, timeouts - lastTimeouts,
+            lane.getActive(), lane.getQueued());
+
+    lastTick = now;
+    lastBytes = transferred;
+    lastRttCount = rttCount;
+    lastRttSum = rttSum;
+    lastErrors = errors;
+    lastTimeouts = timeouts;
+  }
+
+  /**
+   * Quyết định số slot từ số liệu của một khoảng đo.
+   * @return lần đổi số slot, null nếu giữ nguyên.
+   */
+  synchronized Decision decide(double throughput, double rttMs, long errors, long timeouts, int active, int queued) {
+    this.throughput = throughput;
+    this.rttMs = rttMs;
+    if (rttMs > 0) {
+      baseRttMs = baseRttMs <= 0 ? rttMs : Math.min(rttMs, baseRttMs * BASE_RTT_DRIFT);
+    }
+    boolean wasProbing = probing;
+    probing = false;
+    int target = level;
+    String reason = null;
+    if (timeouts > 0 || errors > 0) {
+      target = (int) (level * DECREASE_FACTOR);
+      reason = timeouts > 0 ? REASON_TIMEOUT : REASON_ERROR;
+    } else if (rttMs > baseRttMs * RTT_TOLERANCE && rttMs - baseRttMs > MIN_RTT_INCREASE_MS) {
+      target = (int) (level * DECREASE_FACTOR);
+      reason = REASON_RTT;
+    } else if (wasProbing && queued > 0 && throughput < probeBaseline * (1 + MIN_GAIN)) {
+      // còn task chờ (lane vẫn đầy) mà slot mới không làm tăng tốc độ
+      target = level - 1;
+      reason = REASON_PLATEAU;
+      hold = HOLD_TICKS;
+    } else if (hold > 0) {
+      hold--;
+    } else if (queued > 0 && active >= level) {
+      target = level + 1;
+      reason = REASON_INCREASE;
+      probing = true;
+      probeBaseline = throughput;
+    }
+    target = Math.max(options.min, Math.min(options.max, target));
+    if (target == level) {
+      probing = false;
+      return null;
+    }
+    return apply(target, reason, errors, timeouts, throughput);
+  }
+
+  private Decision apply(int target, String reason, long errors, long timeouts, double throughput) {
+    if (target == level && lane.getMaxActive() == target) {
+      return null;
+    }
+    Decision decision = new Decision();
+    decision.time = System.currentTimeMillis();
+    decision.from = level;
+    decision.to = target;
+    decision.reason = reason;
+    decision.throughput = throughput;
+    decision.rttMs = rttMs;
+    decision.errors = errors;
+    decision.timeouts = timeouts;
+    level = target;
+    // giảm slot không dừng transfer đang chạy, lane chỉ chờ tới khi số task đang chạy xuống dưới giới hạn mới
+    lane.setMaxActive(target);
+    decisions.addLast(decision);
+    if (decisions.size() > MAX_DECISIONS) {
+      decisions.removeFirst();
+    }
+    metrics.count("concurrency." + name + "." + reason);
+    if (listener != null) {
+      listener.onDecision(name, decision);
+    }
+    return decision;
+  }
+
+  private void resetSample() {
+    lastTick = System.nanoTime();
+    lastBytes = bytes.transferredBytes();
+    Metrics.Histogram rtt = metrics.find(Metrics.RTT);
+    lastRttCount = rtt == null ? 0 : rtt.getCount();
+    lastRttSum = rtt == null ? 0 : rtt.getSum();
+    lastErrors = lane.getErrorCount();
+    lastTimeouts = lane.getTimeoutCount();
+  }
+}
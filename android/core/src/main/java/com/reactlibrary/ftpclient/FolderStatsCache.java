@@ -0,0 +1,73 @@
+package com.reactlibrary.ftpclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache tổng (dung lượng, số file, số thư mục) của các nhánh thư mục đã duyệt xong,
+ * để lần getFolderSize sau không phải LIST lại các nhánh chưa thay đổi.
+ * Thay đổi ở một đường dẫn làm mất tổng của chính nó, của các thư mục con và của mọi thư mục tổ tiên.
+ */
+class FolderStatsCache {
+
+  static final long TTL_MS = 60000;
+  static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  static class Stats {
+    final long bytes;
+    final long files;
+    final long dirs;
+    final long computedAt;
+
+    Stats(long bytes, long files, long dirs, long computedAt) {
+      this.bytes = bytes;
+      this.files = files;
+      this.dirs = dirs;
+      this.computedAt = computedAt;
+    }
+  }
+
+  private final LinkedHashMap<String, Stats> entries = new LinkedHashMap<String, Stats>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Stats> eldest) {
+      return size() > DEFAULT_MAX_ENTRIES;
+    }
+  };
+
+  synchronized Stats get(String path) {
+    String key = ListingCache.normalize(path);
+    Stats stats = entries.get(key);
+    if (stats == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - stats.computedAt >= TTL_MS) {
+      entries.remove(key);
+      return null;
+    }
+    return stats;
+  }
+
+  synchronized void put(String path, long bytes, long files, long dirs) {
+    entries.put(ListingCache.normalize(path), new Stats(bytes, files, dirs, System.currentTimeMillis()));
+  }
+
+  synchronized void invalidate(String path) {
+    String key = ListingCache.normalize(path);
+    String prefix = key.endsWith("/") ? key : key + "/";
+    Iterator<String> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      String cached = it.next();
+      String cachedPrefix = cached.endsWith("/") ? cached : cached + "/";
+      if (cached.equals(key) || cached.startsWith(prefix) || key.startsWith(cachedPrefix)) {
+        it.remove();
+      }
+    }
+    // đường dẫn tương đối: thư mục gốc "" là tổ tiên của mọi thứ
+    entries.remove("");
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+}
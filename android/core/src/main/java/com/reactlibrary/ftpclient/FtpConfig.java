@@ -0,0 +1,64 @@
+package com.reactlibrary.ftpclient;
+
+/**
+ * Thông tin kết nối được truyền vào từ setup(), dùng làm khoá cho pool session.
+ */
+final class FtpConfig {
+
+  final String host;
+  final int port;
+  final String username;
+  final String password;
+  // FTPS: AUTH TLS trên control connection, PROT P (mã hoá cả data connection) nếu protectData
+  final boolean tls;
+  final boolean protectData;
+  // SHA-256 (hex) của chứng chỉ server được tin, null: kiểm tra theo kho chứng chỉ của hệ thống và tên host
+  final String certificateSha256;
+
+  FtpConfig(String host, int port, String username, String password) {
+    this(host, port, username, password, false, true, null);
+  }
+
+  FtpConfig(String host, int port, String username, String password, boolean tls, boolean protectData,
+            String certificateSha256) {
+    this.host = host;
+    this.port = port;
+    this.username = username;
+    this.password = password;
+    this.tls = tls;
+    this.protectData = protectData;
+    this.certificateSha256 = certificateSha256;
+  }
+
+  String key() {
+    String key = String.format("%s@%s:%d#%d", username, host, port, password == null ? 0 : password.hashCode());
+    return tls ? key + "#tls" : key;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FtpConfig)) {
+      return false;
+    }
+    FtpConfig other = (FtpConfig) o;
+    return port == other.port
+            && tls == other.tls
+            && protectData == other.protectData
+            && eq(certificateSha256, other.certificateSha256)
+            && eq(host, other.host)
+            && eq(username, other.username)
+            && eq(password, other.password);
+  }
+
+  @Override
+  public int hashCode() {
+    return key().hashCode();
+  }
+
+  private static boolean eq(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -0,0 +1,1022 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phần lõi FTP không phụ thuộc Android/React Native: pool session của cấu hình hiện tại, cache
+ * listing và tổng thư mục, duyệt cây (tính dung lượng, xoá) và STOR/RETR trên một session.
+ * RNFtpClientModule chỉ chuyển tham số/kết quả giữa JS và lớp này, test và benchmark dùng trực tiếp trên JVM.
+ */
+class FtpCore {
+
+  static final long SCAN_PROGRESS_INTERVAL_MS = 250;
+  static final int REMOVE_BATCH_SIZE = 32;
+  static final int MAX_REPORTED_REMOVE_FAILURES = 100;
+  // chờ reply của ABOR tối đa chừng này (có server chỉ trả lời khi lệnh transfer đang chạy dừng hẳn)
+  static final int ABORT_TIMEOUT_MS = 300;
+  // readRange() dừng RETR mà vẫn giữ session nên chờ reply của ABOR lâu hơn
+  static final int RANGE_ABORT_TIMEOUT_MS = 2000;
+  // readRange()/tail() vào bộ nhớ đọc tối đa chừng này, đoạn lớn hơn thì ghi ra file
+  static final int MAX_RANGE_READ_BYTES = 16 * 1024 * 1024;
+  // listPaged() chỉ đưa listing vào cache khi thư mục có không quá chừng này entry
+  static final int MAX_CACHED_PAGED_ENTRIES = 10000;
+  private static final String TAG = "RNFtpClient";
+
+  /**
+   * Đọc data stream của readRange(), tối đa 'length' byte.
+   * @return số byte đã đọc, ít hơn 'length' nghĩa là file đã hết.
+   */
+  private interface RangeReader {
+    long read(InputStream in, long length) throws IOException;
+  }
+
+  /**
+   * Nhận từng trang của listPaged(), 'cursor' là vị trí của entry đầu tiên trong trang.
+   * @return false để dừng, listPaged() khi đó trả về -1.
+   */
+  interface ListPageListener {
+    boolean onPage(FTPFile[] entries, int cursor, boolean done);
+  }
+
+  /**
+   * Tiến độ duyệt cây của scanFolder(), gọi tối đa mỗi SCAN_PROGRESS_INTERVAL_MS và một lần khi xong.
+   */
+  interface ScanListener {
+    void onProgress(TreeWalker walker, boolean done);
+  }
+
+  /**
+   * Tiến độ của removeTree(), gọi tối đa mỗi SCAN_PROGRESS_INTERVAL_MS và một lần khi xong.
+   */
+  interface RemoveListener {
+    void onProgress(RemoveReport report, boolean done);
+  }
+
+  /**
+   * Kết quả xoá một cây thư mục, được cập nhật từ nhiều worker.
+   */
+  static class RemoveReport {
+    final AtomicLong deletedFiles = new AtomicLong();
+    final AtomicLong deletedDirs = new AtomicLong();
+    final AtomicLong failureCount = new AtomicLong();
+    // chỉ giữ MAX_REPORTED_REMOVE_FAILURES lỗi đầu tiên: {path, error}
+    final List<String[]> failures = Collections.synchronizedList(new ArrayList<String[]>());
+
+    void fail(String path, String error) {
+      failureCount.incrementAndGet();
+      if (failures.size() < MAX_REPORTED_REMOVE_FAILURES) {
+        failures.add(new String[]{path, error});
+      }
+    }
+  }
+
+  private final Metrics metrics;
+  private final TransferEngine transferEngine;
+  // worker của TreeWalker, mỗi lần duyệt dùng tối đa TreeWalker.MAX_PARALLELISM thread
+  private final ExecutorService walkExecutor = Executors.newCachedThreadPool();
+  private final ListingCache listingCache;
+  private final FolderStatsCache folderStatsCache = new FolderStatsCache();
+  private final RangeCache rangeCache = new RangeCache();
+  // các lần duyệt cây đang chạy theo đường dẫn gốc, để cancelScan() có thể dừng
+  private final ConcurrentHashMap<String, TreeWalker> activeScans = new ConcurrentHashMap<>();
+  private volatile FtpSessionPool sessionPool;
+  private FtpSessionPool.Options poolOptions = new FtpSessionPool.Options();
+  private ListingCache.Options listCacheOptions = new ListingCache.Options();
+
+  /**
+   * @param metrics
+   * @param refreshExecutor: nơi chạy việc làm mới listing ở chế độ staleWhileRevalidate.
+   */
+  FtpCore(Metrics metrics, ExecutorService refreshExecutor) {
+    this.metrics = metrics;
+    this.transferEngine = new TransferEngine(TransferEngine.DEFAULT_BUFFER_SIZE, metrics);
+    this.listingCache = new ListingCache(refreshExecutor);
+  }
+
+  /**
+   * Dùng cấu hình đăng nhập 'config'. Cấu hình khác cấu hình hiện tại thì tạo pool mới,
+   * đóng pool cũ và bỏ mọi cache.
+   */
+  synchronized void setup(FtpConfig config) {
+    FtpSessionPool current = this.sessionPool;
+    if (current != null && current.getConfig().equals(config)) {
+      return;
+    }
+    this.sessionPool = new FtpSessionPool(config, poolOptions, metrics);
+    listingCache.clear();
+    folderStatsCache.clear();
+    rangeCache.clear();
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  /**
+   * @return null nếu chưa setup().
+   */
+  FtpConfig getConfig() {
+    FtpSessionPool pool = this.sessionPool;
+    return pool == null ? null : pool.getConfig();
+  }
+
+  FtpSessionPool getPool() throws IOException {
+    FtpSessionPool pool = this.sessionPool;
+    if (pool == null) {
+      throw new IOException("ftp client is not setup");
+    }
+    return pool;
+  }
+
+  Metrics getMetrics() {
+    return metrics;
+  }
+
+  TransferEngine getTransferEngine() {
+    return transferEngine;
+  }
+
+  synchronized FtpSessionPool.Options getPoolOptions() {
+    return poolOptions.copy();
+  }
+
+  synchronized void setPoolOptions(FtpSessionPool.Options options) {
+    this.poolOptions = options;
+    FtpSessionPool current = this.sessionPool;
+    if (current != null) {
+      current.setOptions(options);
+    }
+  }
+
+  synchronized ListingCache.Options getListCacheOptions() {
+    return listCacheOptions.copy();
+  }
+
+  synchronized void setListCacheOptions(ListingCache.Options options) {
+    this.listCacheOptions = options;
+    listingCache.setOptions(options);
+  }
+
+  void clearListCache() {
+    listingCache.clear();
+  }
+
+  /**
+   * Đường dẫn 'path' trên server vừa bị thay đổi: bỏ các listing, tổng thư mục và đoạn file đã đọc bị ảnh hưởng.
+   */
+  void invalidate(String path) {
+    listingCache.invalidate(path);
+    folderStatsCache.invalidate(path);
+    rangeCache.invalidate(path);
+  }
+
+  /**
+   * LIST 'path', qua cache listing.
+   */
+  FTPFile[] list(String path) throws IOException {
+    return listingCache.list(path, p -> getPool().execute(client -> client.listFiles(p)));
+  }
+
+  /**
+   * LIST 'path' theo từng trang 'pageSize' entry: parse data stream từng dòng và đưa trang cho 'listener'
+   * ngay khi đủ, không chờ hết reply. Listing còn hạn trong cache thì chia trang từ cache; thư mục không quá
+   * MAX_CACHED_PAGED_ENTRIES entry được đưa vào cache như list().
+   * @return tổng số entry, -1 nếu 'listener' dừng giữa chừng (LIST bị ABOR, session vẫn dùng tiếp được).
+   */
+  int listPaged(String path, int pageSize, ListPageListener listener) throws IOException {
+    FTPFile[] cached = listingCache.peek(path);
+    if (cached != null) {
+      return listPagedFromCache(cached, pageSize, listener);
+    }
+    long generation = listingCache.generation();
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      if (!(client instanceof ListStreamClient)) {
+        FTPFile[] files = client.listFiles(path);
+        reusable = true;
+        listingCache.store(path, files, generation);
+        return listPagedFromCache(files, pageSize, listener);
+      }
+      FTPFileEntryParser parser = new DefaultFTPFileEntryParserFactory().createFileEntryParser(client.getSystemType());
+      InputStream dataStream = ((ListStreamClient) client).openListStream(path);
+      if (dataStream == null) {
+        throw transferFailed(client, "ftp list failed: " + client.getReplyString());
+      }
+      List<FTPFile> all = new ArrayList<>();
+      List<FTPFile> page = new ArrayList<>(pageSize);
+      int cursor = 0;
+      try {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(dataStream, client.getControlEncoding()));
+        String entry;
+        while ((entry = parser.readNextEntry(reader)) != null) {
+          FTPFile file = parser.parseFTPEntry(entry);
+          if (file == null) {
+            continue;
+          }
+          // trang chỉ được gửi khi đã có entry tiếp theo, để biết nó có phải trang cuối không
+          if (page.size() == pageSize) {
+            if (!listener.onPage(page.toArray(new FTPFile[0]), cursor, false)) {
+              reusable = abortRetrieve(client, dataStream);
+              return -1;
+            }
+            cursor += page.size();
+            page.clear();
+          }
+          page.add(file);
+          if (all != null) {
+            all.add(file);
+            if (all.size() > MAX_CACHED_PAGED_ENTRIES) {
+              all = null;
+            }
+          }
+        }
+      } catch (IOException e) {
+        closeQuietly(dataStream);
+        throw e;
+      }
+      closeQuietly(dataStream);
+      if (!client.completePendingCommand()) {
+        throw transferFailed(client, "ftp list failed: " + client.getReplyString());
+      }
+      reusable = true;
+      if (all != null) {
+        listingCache.store(path, all.toArray(new FTPFile[0]), generation);
+      }
+      if (!listener.onPage(page.toArray(new FTPFile[0]), cursor, true)) {
+        return -1;
+      }
+      return cursor + page.size();
+    } finally {
+      release(pool, client, reusable);
+    }
+  }
+
+  private static int listPagedFromCache(FTPFile[] files, int pageSize, ListPageListener listener) {
+    int cursor = 0;
+    do {
+      FTPFile[] page = Arrays.copyOfRange(files, cursor, Math.min(files.length, cursor + pageSize));
+      if (!listener.onPage(page, cursor, cursor + page.length >= files.length)) {
+        return -1;
+      }
+      cursor += page.length;
+    } while (cursor < files.length);
+    return cursor;
+  }
+
+  FTPFile stat(final String remotePath) throws IOException {
+    return getPool().execute(client -> stat(client, remotePath));
+  }
+
+  /**
+   * Hỏi thông tin đúng một đường dẫn thay vì LIST cả thư mục: MLST nếu server hỗ trợ,
+   * ngược lại SIZE + MDTM, cuối cùng thử CWD để nhận ra thư mục.
+   * @return null nếu không tồn tại.
+   */
+  FTPFile stat(FTPClient client, String remotePath) throws IOException {
+    ServerFeatures features = getPool().getFeatures(client);
+    if (features.has("MLST")) {
+      return mlst(client, remotePath);
+    }
+
+    String name = ListingCache.normalize(remotePath);
+    name = name.substring(name.lastIndexOf('/') + 1);
+    client.setFileType(FTP.BINARY_FILE_TYPE);
+    long size = -1;
+    if (client.sendCommand("SIZE", remotePath) == 213) {
+      size = parseSize(client.getReplyStrings()[0]);
+    }
+    Calendar timestamp = null;
+    if (client.sendCommand("MDTM", remotePath) == 213) {
+      timestamp = parseMdtm(client.getReplyStrings()[0].substring(4).trim());
+    }
+    if (size >= 0 || timestamp != null) {
+      FTPFile file = new FTPFile();
+      file.setName(name);
+      file.setType(FTPFile.FILE_TYPE);
+      file.setSize(size);
+      file.setTimestamp(timestamp);
+      return file;
+    }
+
+    // SIZE/MDTM thường trả 550 với thư mục, thử CWD vào rồi quay lại thư mục cũ
+    String workingDirectory = client.printWorkingDirectory();
+    if (workingDirectory != null && client.changeWorkingDirectory(remotePath)) {
+      client.changeWorkingDirectory(workingDirectory);
+      FTPFile dir = new FTPFile();
+      dir.setName(name);
+      dir.setType(FTPFile.DIRECTORY_TYPE);
+      dir.setSize(-1);
+      return dir;
+    }
+    return null;
+  }
+
+  // mlistFile() của commons-net 3.3 luôn bỏ ký tự đầu của dòng kết quả (RFC 3659 có một dấu cách ở đầu),
+  // với server không gửi dấu cách đó (Apache FtpServer...) thì mất chữ cái đầu của fact đầu tiên
+  private static FTPFile mlst(FTPClient client, String remotePath) throws IOException {
+    if (!FTPReply.isPositiveCompletion(client.sendCommand("MLST", remotePath))) {
+      return null;
+    }
+    String[] reply = client.getReplyStrings();
+    if (reply.length < 3) {
+      return null;
+    }
+    String entry = reply[1].startsWith(" ") ? reply[1].substring(1) : reply[1];
+    FTPFile file = MLSxEntryParser.parseEntry(entry);
+    if (file != null && file.getName() != null) {
+      // server gửi lại cả đường dẫn, chỉ giữ tên cuối giống nhánh SIZE/MDTM và LIST
+      String name = ListingCache.normalize(file.getName());
+      file.setName(name.substring(name.lastIndexOf('/') + 1));
+    }
+    return file;
+  }
+
+  // "213 <size>", lấy token cuối vì có server gửi thêm chữ vào giữa; -1 nếu không đọc được
+  static long parseSize(String reply) {
+    String[] tokens = reply.trim().split("\\s+");
+    try {
+      return Long.parseLong(tokens[tokens.length - 1]);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  // MDTM trả về YYYYMMDDhhmmss[.sss] theo giờ UTC
+  static Calendar parseMdtm(String value) {
+    try {
+      SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss");
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      Date date = format.parse(value.length() > 14 ? value.substring(0, 14) : value);
+      Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+      calendar.setTime(date);
+      return calendar;
+    } catch (ParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * TreeWalker trên pool hiện tại và các worker dùng chung của lõi.
+   */
+  TreeWalker newWalker(int parallelism, TreeWalker.Listener listener) throws IOException {
+    return new TreeWalker(getPool(), walkExecutor, parallelism, listener);
+  }
+
+  /**
+   * Chạy 'walker' từ 'root' với việc đầu tiên 'rootJob' (xem TreeWalker.walk(root, rootJob)),
+   * cancelScan(root.path) dừng được như scanFolder.
+   * @return 'root', null nếu bị huỷ.
+   */
+  TreeWalker.Node runScan(TreeWalker.Node root, TreeWalker walker, TreeWalker.Job rootJob)
+          throws IOException, InterruptedException {
+    if (activeScans.putIfAbsent(root.path, walker) != null) {
+      throw new IOException("same folder scan is running");
+    }
+    try {
+      return walker.walk(root, rootJob);
+    } finally {
+      activeScans.remove(root.path, walker);
+    }
+  }
+
+  /**
+   * Duyệt song song cả cây 'remotePath' để tính tổng dung lượng/số file/số thư mục.
+   * Nhánh đã duyệt xong được cache lại.
+   * @return node gốc, null nếu bị huỷ.
+   */
+  TreeWalker.Node scanFolder(final String remotePath, int parallelism, final boolean useCache,
+                             final ScanListener listener) throws IOException, InterruptedException {
+    final AtomicLong lastEvent = new AtomicLong();
+    final TreeWalker walker = newWalker(parallelism, new TreeWalker.Listener() {
+      @Override
+      public TreeWalker.Node lookup(String path, TreeWalker.Node parent) {
+        FolderStatsCache.Stats stats = useCache ? folderStatsCache.get(path) : null;
+        if (stats == null) {
+          return null;
+        }
+        TreeWalker.Node node = new TreeWalker.Node(path, parent);
+        node.bytes.set(stats.bytes);
+        node.files.set(stats.files);
+        node.dirs.set(stats.dirs);
+        return node;
+      }
+
+      @Override
+      public void onListed(TreeWalker walker, TreeWalker.Node dir, FTPFile[] files) {
+        if (listener != null && due(lastEvent)) {
+          listener.onProgress(walker, false);
+        }
+      }
+
+      @Override
+      public void onCompleted(FTPClient client, TreeWalker.Node dir) {
+        folderStatsCache.put(dir.path, dir.bytes.get(), dir.files.get(), dir.dirs.get());
+      }
+
+      @Override
+      public boolean onFailure(String path, IOException e) {
+        return false;
+      }
+    });
+    if (activeScans.putIfAbsent(remotePath, walker) != null) {
+      throw new IOException("same folder scan is running");
+    }
+    try {
+      TreeWalker.Node root = walker.walk(remotePath);
+      if (listener != null) {
+        listener.onProgress(walker, true);
+      }
+      return root;
+    } finally {
+      activeScans.remove(remotePath, walker);
+    }
+  }
+
+  /**
+   * Xoá cả cây 'remotePath': mỗi thư mục chỉ LIST một lần, các lệnh DELE được chia thành từng lô
+   * chạy song song trên nhiều session, thư mục được RMD từ dưới lên khi mọi thứ bên trong đã xoá xong.
+   * Lỗi ở một đường dẫn không làm dừng cả cây mà được ghi vào report.
+   * @return null nếu bị huỷ.
+   */
+  RemoveReport removeTree(final String remotePath, int parallelism,
+                          final RemoveListener listener) throws IOException, InterruptedException {
+    final RemoveReport report = new RemoveReport();
+    final AtomicLong lastEvent = new AtomicLong();
+    TreeWalker walker = newWalker(parallelism, new TreeWalker.Listener() {
+      @Override
+      public TreeWalker.Node lookup(String path, TreeWalker.Node parent) {
+        return null;
+      }
+
+      @Override
+      public void onListed(TreeWalker walker, TreeWalker.Node dir, FTPFile[] files) {
+        final List<String> batch = new ArrayList<>();
+        for (FTPFile file : files) {
+          if (file == null || file.isDirectory()) {
+            continue;
+          }
+          batch.add(TreeWalker.childPath(dir.path, file.getName()));
+          if (batch.size() == REMOVE_BATCH_SIZE) {
+            submitDeletes(walker, dir, new ArrayList<>(batch));
+            batch.clear();
+          }
+        }
+        if (!batch.isEmpty()) {
+          submitDeletes(walker, dir, batch);
+        }
+      }
+
+      private void submitDeletes(final TreeWalker walker, TreeWalker.Node dir, final List<String> paths) {
+        walker.submit(dir, paths.get(0), client -> {
+          for (String filePath : paths) {
+            if (walker.isCancelled()) {
+              return;
+            }
+            if (client.deleteFile(filePath)) {
+              report.deletedFiles.incrementAndGet();
+            } else {
+              report.fail(filePath, client.getReplyString().trim());
+            }
+          }
+          if (listener != null && due(lastEvent)) {
+            listener.onProgress(report, false);
+          }
+        });
+      }
+
+      @Override
+      public void onCompleted(FTPClient client, TreeWalker.Node dir) throws IOException {
+        String dirPath = ListingCache.normalize(dir.path);
+        if (client.removeDirectory(dirPath)) {
+          report.deletedDirs.incrementAndGet();
+        } else {
+          report.fail(dirPath, client.getReplyString().trim());
+        }
+      }
+
+      @Override
+      public boolean onFailure(String path, IOException e) {
+        report.fail(path, String.valueOf(e.getMessage()));
+        return true;
+      }
+    });
+    if (activeScans.putIfAbsent(remotePath, walker) != null) {
+      throw new IOException("same folder scan is running");
+    }
+    try {
+      if (walker.walk(remotePath) == null) {
+        return null;
+      }
+      if (listener != null) {
+        listener.onProgress(report, true);
+      }
+      return report;
+    } finally {
+      activeScans.remove(remotePath, walker);
+      invalidate(remotePath);
+    }
+  }
+
+  // true nếu đã qua SCAN_PROGRESS_INTERVAL_MS từ lần báo trước, chỉ một thread thắng
+  private static boolean due(AtomicLong lastEvent) {
+    long now = System.currentTimeMillis();
+    long last = lastEvent.get();
+    return now - last >= SCAN_PROGRESS_INTERVAL_MS && lastEvent.compareAndSet(last, now);
+  }
+
+  /**
+   * Dừng scanFolder/removeTree đang duyệt 'remotePath'.
+   * @return false nếu không có lần duyệt nào.
+   */
+  boolean cancelScan(String remotePath) {
+    TreeWalker walker = activeScans.get(remotePath);
+    if (walker != null) {
+      walker.cancel();
+    }
+    return walker != null;
+  }
+
+  /**
+   * Upload cả file trên một session của pool, không resume/retry.
+   */
+  void upload(File localFile, String remotePath) throws IOException {
+    upload(localFile, remotePath, Compression.OFF, null);
+  }
+
+  /**
+   * Như upload(localFile, remotePath), 'compression' là Compression.OFF/AUTO/ON,
+   * 'checksum' (có thể null) được tính và kiểm tra trong lúc gửi.
+   */
+  void upload(File localFile, final String remotePath, String compression, Checksum checksum) throws IOException {
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+      reusable = store(pool, client, null, localFile, remotePath, 0, false, compression, checksum, NO_PROGRESS);
+    } finally {
+      invalidate(remotePath);
+      release(pool, client, reusable);
+    }
+  }
+
+  /**
+   * Tải cả file trên một session của pool, không resume/retry.
+   */
+  void download(String remotePath, File localFile) throws IOException {
+    download(remotePath, localFile, Compression.OFF, null);
+  }
+
+  /**
+   * Như download(remotePath, localFile), 'compression' là Compression.OFF/AUTO/ON,
+   * 'checksum' (có thể null) được tính và kiểm tra trong lúc tải.
+   */
+  void download(String remotePath, File localFile, String compression, Checksum checksum) throws IOException {
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+      reusable = retrieve(pool, client, null, remotePath, localFile, 0, compression, checksum, NO_PROGRESS);
+    } finally {
+      release(pool, client, reusable);
+    }
+  }
+
+  /**
+   * Đọc 'length' byte của 'remotePath' từ 'offset' vào bộ nhớ: REST + RETR rồi ABOR ngay khi đủ,
+   * không tải phần còn lại của file. Đoạn nhỏ được giữ trong RangeCache.
+   * @return ít hơn 'length' byte nếu file hết trước.
+   */
+  byte[] readRange(String remotePath, long offset, int length) throws IOException {
+    if (offset < 0 || length < 0 || length > MAX_RANGE_READ_BYTES) {
+      throw new IllegalArgumentException("invalid range " + offset + "+" + length);
+    }
+    if (length == 0) {
+      return new byte[0];
+    }
+    byte[] cached = rangeCache.get(remotePath, offset, length);
+    if (cached != null) {
+      metrics.count("range.cacheHits");
+      return cached;
+    }
+    final byte[] buffer = new byte[length];
+    long start = System.nanoTime();
+    long read = retrieveRange(remotePath, offset, length, (in, limit) -> {
+      int filled = 0;
+      while (filled < limit) {
+        int n = in.read(buffer, filled, (int) limit - filled);
+        if (n == -1) {
+          break;
+        }
+        filled += n;
+      }
+      return filled;
+    });
+    metrics.recordTransfer("range", read, start);
+    byte[] data = read == length ? buffer : Arrays.copyOf(buffer, (int) read);
+    rangeCache.put(remotePath, offset, data.clone(), read < length);
+    return data;
+  }
+
+  /**
+   * Như readRange(remotePath, offset, length) nhưng ghi đoạn đọc được vào 'target' (bị ghi đè),
+   * không giới hạn độ dài và không qua cache.
+   * @return số byte đã ghi.
+   */
+  long readRange(String remotePath, long offset, long length, File target) throws IOException {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("invalid range " + offset + "+" + length);
+    }
+    final RandomAccessFile outputFile = new RandomAccessFile(target, "rw");
+    try {
+      outputFile.setLength(0);
+      if (length == 0) {
+        return 0;
+      }
+      return retrieveRange(remotePath, offset, length,
+              (in, limit) -> transferEngine.download(in, outputFile.getChannel(), 0, limit, null, NO_PROGRESS));
+    } finally {
+      outputFile.close();
+    }
+  }
+
+  /**
+   * 'bytes' byte cuối của 'remotePath' (cả file nếu nhỏ hơn), kích thước lấy bằng stat().
+   */
+  byte[] tail(String remotePath, int bytes) throws IOException {
+    long size = size(remotePath);
+    long offset = Math.max(0, size - bytes);
+    return readRange(remotePath, offset, (int) (size - offset));
+  }
+
+  /**
+   * Như tail(remotePath, bytes) nhưng ghi vào 'target'.
+   * @return số byte đã ghi.
+   */
+  long tail(String remotePath, long bytes, File target) throws IOException {
+    long size = size(remotePath);
+    long offset = Math.max(0, size - bytes);
+    return readRange(remotePath, offset, size - offset, target);
+  }
+
+  private long size(String remotePath) throws IOException {
+    FTPFile file = stat(remotePath);
+    if (file == null || !file.isFile()) {
+      throw new IOException(remotePath + " is not a file");
+    }
+    if (file.getSize() < 0) {
+      throw new IOException("size of " + remotePath + " is unknown");
+    }
+    return file.getSize();
+  }
+
+  /**
+   * REST 'offset' + RETR 'remotePath' trên một session của pool, đưa data stream cho 'reader'.
+   * Đọc đủ 'length' byte mà file chưa hết thì dừng lệnh bằng abortRetrieve() và vẫn trả session về pool.
+   * @return số byte 'reader' đã đọc.
+   */
+  private long retrieveRange(String remotePath, long offset, long length, RangeReader reader) throws IOException {
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+      client.setRestartOffset(offset);
+      InputStream dataStream = client.retrieveFileStream(remotePath);
+      if (dataStream == null) {
+        throw transferFailed(client, "ftp retrieve failed: " + client.getReplyString());
+      }
+      long read;
+      boolean eof;
+      try {
+        read = reader.read(dataStream, length);
+        // đoạn kết thúc đúng ở cuối file (tail): đọc thêm một byte để khỏi phải ABOR
+        eof = read < length || dataStream.read() == -1;
+      } catch (IOException e) {
+        closeQuietly(dataStream);
+        throw e;
+      }
+      if (eof) {
+        closeQuietly(dataStream);
+        if (!client.completePendingCommand()) {
+          throw transferFailed(client, "ftp retrieve failed: " + client.getReplyString());
+        }
+        reusable = true;
+      } else {
+        metrics.count("range.aborts");
+        reusable = abortRetrieve(client, dataStream);
+      }
+      return read;
+    } finally {
+      release(pool, client, reusable);
+    }
+  }
+
+  /**
+   * Dừng RETR (hoặc LIST) đang chạy mà vẫn giữ session: đóng data connection trước (server thấy lỗi ghi và
+   * dừng gửi), gửi ABOR rồi đọc đủ hai reply, reply của RETR (426, hoặc 226 nếu đã gửi xong) và reply
+   * của ABOR (226/225). Bỏ sót reply thứ hai thì lệnh sau trên session sẽ đọc nhầm nó.
+   * @return true nếu session dùng tiếp được.
+   */
+  static boolean abortRetrieve(FTPClient client, Closeable dataStream) {
+    closeQuietly(dataStream);
+    try {
+      int timeout = client.getSoTimeout();
+      client.setSoTimeout(RANGE_ABORT_TIMEOUT_MS);
+      try {
+        client.abort();
+        client.getReply();
+      } finally {
+        client.setSoTimeout(timeout);
+      }
+      return true;
+    } catch (IOException e) {
+      FtpLog.d(TAG, "ABOR error", e);
+      return false;
+    }
+  }
+
+  private static final TransferEngine.Progress NO_PROGRESS = new TransferEngine.Progress() {
+    @Override
+    public void add(long bytes) {
+    }
+  };
+
+  /**
+   * Trả session về pool sau khi transfer. Session chỉ được dùng lại khi lệnh transfer đã
+   * kết thúc trọn vẹn (completePendingCommand), còn lại (lỗi, bị huỷ) thì đóng luôn.
+   */
+  static void release(FtpSessionPool pool, FTPClient client, boolean reusable) {
+    if (pool == null || client == null) {
+      return;
+    }
+    if (reusable) {
+      pool.release(client);
+    } else {
+      pool.invalidate(client);
+    }
+  }
+
+  /**
+   * Gửi 'localFile' từ 'offset' lên 'remotePath' trên session 'client' đã mượn sẵn
+   * (REST + STOR hoặc APPE khi offset > 0) và chờ server xác nhận. Với 'compression' khác
+   * Compression.OFF, dữ liệu được nén MODE Z nếu server hỗ trợ và file đáng nén.
+   * 'checksum' (có thể null) được tính trên cả file (phần trước 'offset' đọc từ file local)
+   * và so với hash của server; khác nhau thì file trên server bị xoá và ném ChecksumMismatchException.
+   * @return true khi xong (session dùng tiếp được), false khi bị huỷ giữa chừng.
+   */
+  boolean store(FtpSessionPool pool, FTPClient client, TransferScheduler.Task task, File localFile,
+                String remotePath, long offset, boolean resume, String compression, Checksum checksum,
+                TransferEngine.Progress progress) throws IOException {
+    if (checksum != null) {
+      checksum.reset();
+      checksum.updateFromFile(localFile, offset);
+    }
+    boolean compressed = Compression.shouldCompressUpload(compression, localFile, offset)
+            && Compression.enable(pool, client);
+    Compression.Counter wireBytes = new Compression.Counter();
+    long copied = 0;
+    RandomAccessFile inputFile = new RandomAccessFile(localFile, "r");
+    try {
+      OutputStream dataStream;
+      if (offset > 0 && pool.getFeatures(client).has("REST", "STREAM")) {
+        client.setRestartOffset(offset);
+        dataStream = client.storeFileStream(remotePath);
+      } else if (offset > 0) {
+        dataStream = client.appendFileStream(remotePath);
+      } else {
+        dataStream = client.storeFileStream(remotePath);
+      }
+      if (dataStream == null) {
+        throw transferFailed(client, "ftp store failed: " + client.getReplyString());
+      }
+      OutputStream outputStream = dataStream;
+      if (compressed) {
+        outputStream = Compression.deflate(outputStream, wireBytes);
+      }
+      if (checksum != null) {
+        outputStream = checksum.wrap(outputStream);
+      }
+      attach(task, dataStream);
+      boolean closed = false;
+      try {
+        copied = transferEngine.upload(inputFile.getChannel(), offset, outputStream, task, progress);
+        if (!cancelled(task)) {
+          outputStream.close();
+          closed = true;
+        }
+      } catch (IOException e) {
+        // cancel() đóng data stream nên write đang block sẽ lỗi, đó không phải lỗi transfer
+        if (!cancelled(task)) {
+          throw e;
+        }
+      } finally {
+        detach(task, dataStream);
+        if (!closed) {
+          closeQuietly(outputStream);
+          closeQuietly(dataStream);
+        }
+      }
+    } finally {
+      inputFile.close();
+    }
+
+    if (cancelled(task)) {
+      abort(client);
+      return false;
+    }
+    boolean done = client.completePendingCommand();
+    if (!done) {
+      IOException error = transferFailed(client, localFile.getName() + " is not uploaded successfully.");
+      if (!resume) {
+        client.deleteFile(remotePath);
+      }
+      throw error;
+    }
+    if (compressed) {
+      metrics.recordCompressed("upload", copied, wireBytes.bytes);
+      Compression.disable(client);
+    }
+    if (checksum != null) {
+      try {
+        checksum.verify(pool, client, remotePath);
+      } catch (ChecksumMismatchException e) {
+        client.deleteFile(remotePath);
+        throw e;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Tải 'remotePath' từ 'offset' (REST) vào 'downloadFile' trên session 'client' đã mượn sẵn,
+   * phần cũ sau 'offset' của file local bị ghi đè. Với 'compression' khác Compression.OFF,
+   * dữ liệu được nén MODE Z nếu server hỗ trợ và tên file không phải loại đã nén sẵn.
+   * 'checksum' (có thể null) được tính trên cả file và so với hash của server; khác nhau thì
+   * file local bị xoá và ném ChecksumMismatchException.
+   * @return true khi xong (session dùng tiếp được), false khi bị huỷ giữa chừng.
+   */
+  boolean retrieve(FtpSessionPool pool, FTPClient client, TransferScheduler.Task task, String remotePath,
+                   File downloadFile, long offset, String compression, Checksum checksum,
+                   TransferEngine.Progress progress) throws IOException {
+    if (checksum != null) {
+      checksum.reset();
+      checksum.updateFromFile(downloadFile, offset);
+    }
+    boolean compressed = Compression.shouldCompressDownload(compression, remotePath)
+            && Compression.enable(pool, client);
+    Compression.Counter wireBytes = new Compression.Counter();
+    long copied = 0;
+    RandomAccessFile outputFile = new RandomAccessFile(downloadFile, "rw");
+    try {
+      // phần sau offset (nếu có) là dữ liệu cũ, sẽ được ghi lại
+      outputFile.setLength(offset);
+      client.setRestartOffset(offset);
+      InputStream dataStream = client.retrieveFileStream(remotePath);
+      if (dataStream == null) {
+        throw transferFailed(client, "ftp retrieve failed: " + client.getReplyString());
+      }
+      InputStream inputStream = dataStream;
+      if (compressed) {
+        inputStream = Compression.inflate(inputStream, wireBytes);
+      }
+      if (checksum != null) {
+        inputStream = checksum.wrap(inputStream);
+      }
+      attach(task, dataStream);
+      try {
+        copied = transferEngine.download(inputStream, outputFile.getChannel(), offset, -1, task, progress);
+      } catch (IOException e) {
+        // cancel() đóng data stream nên read đang block sẽ lỗi, đó không phải lỗi transfer
+        if (!cancelled(task)) {
+          throw e;
+        }
+      } finally {
+        detach(task, dataStream);
+        closeQuietly(inputStream);
+        closeQuietly(dataStream);
+      }
+    } finally {
+      outputFile.close();
+    }
+
+    if (cancelled(task)) {
+      abort(client);
+      return false;
+    }
+    boolean done = client.completePendingCommand();
+    if (!done) {
+      throw transferFailed(client, downloadFile.getName() + " is not download successfully.");
+    }
+    if (compressed) {
+      metrics.recordCompressed("download", copied, wireBytes.bytes);
+      Compression.disable(client);
+    }
+    if (checksum != null) {
+      try {
+        checksum.verify(pool, client, remotePath);
+      } catch (ChecksumMismatchException e) {
+        downloadFile.delete();
+        throw e;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Transfer đã bị huỷ: thread bị interrupt hoặc task bị cancel().
+   */
+  static boolean cancelled(TransferScheduler.Task task) {
+    return Thread.currentThread().isInterrupted() || (task != null && task.isCancelled());
+  }
+
+  static void attach(TransferScheduler.Task task, Closeable dataStream) {
+    if (task != null) {
+      task.attach(dataStream);
+    }
+  }
+
+  static void detach(TransferScheduler.Task task, Closeable dataStream) {
+    if (task != null) {
+      task.detach(dataStream);
+    }
+  }
+
+  /**
+   * Gửi ABOR sau khi transfer bị huỷ để server dừng lệnh STOR/RETR ngay thay vì chờ data connection
+   * timeout, rồi ngắt kết nối luôn: session bị huỷ không được dùng lại nên không cần đọc hết các
+   * reply hay gửi QUIT, thời gian huỷ chỉ tối đa ABORT_TIMEOUT_MS.
+   */
+  static void abort(FTPClient client) {
+    try {
+      client.setSoTimeout(ABORT_TIMEOUT_MS);
+      client.abort();
+    } catch (IOException e) {
+      FtpLog.d(TAG, "ABOR error", e);
+    }
+    try {
+      client.disconnect();
+    } catch (IOException e) {
+      FtpLog.d(TAG, "abort disconnect error", e);
+    }
+  }
+
+  static void closeQuietly(Closeable stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      FtpLog.d(TAG, "close stream error", e);
+    }
+  }
+
+  /**
+   * Lỗi khi server từ chối/ngắt lệnh transfer; reply 4xx (426, 450, 451...) được coi là tạm thời.
+   */
+  static IOException transferFailed(FTPClient client, String message) {
+    if (FTPReply.isNegativeTransient(client.getReplyCode())) {
+      return new TransientTransferException(message);
+    }
+    return new IOException(message);
+  }
+
+  /**
+   * Dừng các lần duyệt cây và đóng pool.
+   */
+  void shutdown() {
+    walkExecutor.shutdownNow();
+    FtpSessionPool pool = this.sessionPool;
+    if (pool != null) {
+      pool.close();
+    }
+  }
+}
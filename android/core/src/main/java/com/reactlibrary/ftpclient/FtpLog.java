@@ -0,0 +1,32 @@
+package com.reactlibrary.ftpclient;
+
+/**
+ * Log debug của phần lõi. Trên Android, module gắn Printer ghi ra logcat (android.util.Log);
+ * trên JVM (test, benchmark) mặc định không ghi gì.
+ */
+class FtpLog {
+
+  interface Printer {
+    void d(String tag, String message, Throwable error);
+  }
+
+  private static volatile Printer printer;
+
+  private FtpLog() {
+  }
+
+  static void setPrinter(Printer printer) {
+    FtpLog.printer = printer;
+  }
+
+  static void d(String tag, String message) {
+    d(tag, message, null);
+  }
+
+  static void d(String tag, String message, Throwable error) {
+    Printer current = printer;
+    if (current != null) {
+      current.d(tag, message, error);
+    }
+  }
+}
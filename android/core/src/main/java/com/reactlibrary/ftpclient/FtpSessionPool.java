@@ -0,0 +1,361 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Pool các session FTP (đã connect + login) cho một bộ thông tin đăng nhập.
+ * Thay vì mỗi thao tác phải connect/USER/PASS/QUIT, session được mượn ra rồi trả lại
+ * để dùng tiếp. Session rảnh quá lâu sẽ được NOOP để kiểm tra, hoặc đóng bớt.
+ */
+class FtpSessionPool {
+
+  private static final String TAG = "RNFtpClient";
+
+  /**
+   * Cấu hình của pool, có thể thay đổi từ JS qua setPoolOptions().
+   */
+  static class Options {
+    int minIdle = 1;
+    int maxIdle = 4;
+    long idleTimeoutMs = 60000;       // session rảnh lâu hơn sẽ bị đóng (nếu vượt minIdle)
+    long validateAfterMs = 5000;      // session rảnh lâu hơn sẽ được NOOP trước khi đưa ra dùng
+    long evictionIntervalMs = 15000;
+    int connectTimeoutMs = 10000;
+    int soTimeoutMs = 10000;
+    int dataTimeoutMs = 10000;
+    int bufferSize = TransferEngine.DEFAULT_BUFFER_SIZE;  // buffer stream của commons-net cho data connection
+    int sendBufferSize = 0;      // SO_SNDBUF của data connection, 0 = mặc định của hệ thống
+    int receiveBufferSize = 0;   // SO_RCVBUF của data connection, 0 = mặc định của hệ thống
+
+    Options copy() {
+      Options copy = new Options();
+      copy.minIdle = minIdle;
+      copy.maxIdle = maxIdle;
+      copy.idleTimeoutMs = idleTimeoutMs;
+      copy.validateAfterMs = validateAfterMs;
+      copy.evictionIntervalMs = evictionIntervalMs;
+      copy.connectTimeoutMs = connectTimeoutMs;
+      copy.soTimeoutMs = soTimeoutMs;
+      copy.dataTimeoutMs = dataTimeoutMs;
+      copy.bufferSize = bufferSize;
+      copy.sendBufferSize = sendBufferSize;
+      copy.receiveBufferSize = receiveBufferSize;
+      return copy;
+    }
+  }
+
+  /**
+   * Thao tác chạy trên một session mượn từ pool.
+   */
+  interface Operation<T> {
+    T run(FTPClient client) throws IOException;
+  }
+
+  private static class IdleSession {
+    final FTPClient client;
+    final long idleSince;
+
+    IdleSession(FTPClient client, long idleSince) {
+      this.client = client;
+      this.idleSince = idleSince;
+    }
+  }
+
+  private final FtpConfig config;
+  private final Metrics metrics;
+  private final ArrayDeque<IdleSession> idle = new ArrayDeque<>();
+  private final ScheduledExecutorService evictor;
+  private volatile Options options;
+  private volatile ServerFeatures features;
+  // FTPS: mọi session dùng chung để control connection mới được bắt tay rút gọn
+  private SSLContext tlsContext;
+  private boolean closed = false;
+
+  FtpSessionPool(FtpConfig config, Options options, Metrics metrics) {
+    this.config = config;
+    this.metrics = metrics;
+    this.options = options;
+    this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RNFtpClient-pool-evictor");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    this.evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        evict();
+      }
+    }, options.evictionIntervalMs, options.evictionIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  FtpConfig getConfig() {
+    return config;
+  }
+
+  void setOptions(Options options) {
+    this.options = options;
+  }
+
+  /**
+   * FEAT của server, hỏi qua 'client' ở lần gọi đầu tiên rồi dùng lại cho cả pool.
+   */
+  ServerFeatures getFeatures(FTPClient client) throws IOException {
+    ServerFeatures result = features;
+    if (result == null) {
+      result = ServerFeatures.query(client);
+      features = result;
+    }
+    return result;
+  }
+
+  /**
+   * Mượn một session đã login. Session rảnh lâu sẽ được NOOP trước, nếu chết thì
+   * bỏ đi và thử session khác, hết session rảnh thì mở kết nối mới.
+   */
+  FTPClient borrow() throws IOException {
+    FTPClient client = pollIdle();
+    if (client == null) {
+      return connect();
+    }
+    applyBufferSizes(client, options);
+    return client;
+  }
+
+  private FTPClient pollIdle() throws IOException {
+    while (true) {
+      IdleSession session;
+      synchronized (this) {
+        if (closed) {
+          throw new IOException("session pool is closed");
+        }
+        session = idle.pollFirst();
+      }
+      if (session == null) {
+        return null;
+      }
+      if (System.currentTimeMillis() - session.idleSince < options.validateAfterMs || isAlive(session.client)) {
+        return session.client;
+      }
+      destroy(session.client);
+    }
+  }
+
+  /**
+   * Trả session về pool. Session đã mất kết nối hoặc pool đã đủ maxIdle thì đóng luôn.
+   */
+  void release(FTPClient client) {
+    if (client == null) {
+      return;
+    }
+    synchronized (this) {
+      if (!closed && client.isConnected() && idle.size() < options.maxIdle) {
+        idle.addFirst(new IdleSession(client, System.currentTimeMillis()));
+        return;
+      }
+    }
+    destroy(client);
+  }
+
+  /**
+   * Bỏ session bị lỗi (stream dở dang, bị huỷ giữa chừng...), không cho dùng lại.
+   */
+  void invalidate(FTPClient client) {
+    if (client != null) {
+      destroy(client);
+    }
+  }
+
+  /**
+   * Chạy 'operation' trên một session của pool. Nếu session lấy từ pool đã bị server
+   * đóng, mở lại kết nối và chạy lại một lần.
+   */
+  <T> T execute(Operation<T> operation) throws IOException {
+    FTPClient client = pollIdle();
+    boolean reused = client != null;
+    if (!reused) {
+      client = connect();
+    }
+    try {
+      T result = operation.run(client);
+      release(client);
+      return result;
+    } catch (FTPConnectionClosedException | SocketException e) {
+      invalidate(client);
+      if (!reused) {
+        throw e;
+      }
+      FtpLog.d(TAG, "pooled session lost, reconnecting", e);
+      metrics.count("reconnects");
+    } catch (IOException | RuntimeException e) {
+      invalidate(client);
+      throw e;
+    }
+
+    client = connect();
+    try {
+      T result = operation.run(client);
+      release(client);
+      return result;
+    } catch (IOException | RuntimeException e) {
+      invalidate(client);
+      throw e;
+    }
+  }
+
+  /**
+   * Đóng toàn bộ session rảnh, các session đang mượn sẽ bị đóng khi được trả về.
+   */
+  void close() {
+    ArrayDeque<IdleSession> toClose;
+    synchronized (this) {
+      closed = true;
+      toClose = new ArrayDeque<>(idle);
+      idle.clear();
+    }
+    evictor.shutdownNow();
+    for (IdleSession session : toClose) {
+      destroy(session.client);
+    }
+  }
+
+  private FTPClient connect() throws IOException {
+    Options opts = options;
+    FTPClient client = config.tls ? new TlsFtpClient(getTlsContext(), config, metrics) : new PlainFtpClient();
+    client.setConnectTimeout(opts.connectTimeoutMs);
+    client.setDataTimeout(opts.dataTimeoutMs);
+    client.addProtocolCommandListener(metrics.newCommandTimer());
+    applyBufferSizes(client, opts);
+    try {
+      long start = System.nanoTime();
+      client.connect(config.host, config.port);
+      metrics.recordNanosSince("connect", start);
+      if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+        throw new IOException("ftp server refused connection: " + client.getReplyString());
+      }
+      client.setSoTimeout(opts.soTimeoutMs);
+      client.enterLocalPassiveMode();
+      start = System.nanoTime();
+      if (!client.login(config.username, config.password)) {
+        throw new IOException("ftp login failed: " + client.getReplyString());
+      }
+      metrics.recordNanosSince("login", start);
+      if (client instanceof TlsFtpClient) {
+        ((TlsFtpClient) client).protect();
+      }
+      return client;
+    } catch (IOException e) {
+      metrics.countError(e);
+      destroy(client);
+      throw e;
+    }
+  }
+
+  private synchronized SSLContext getTlsContext() throws IOException {
+    if (tlsContext == null) {
+      tlsContext = TlsFtpClient.createContext(config.certificateSha256);
+    }
+    return tlsContext;
+  }
+
+  private void applyBufferSizes(FTPClient client, Options opts) {
+    client.setBufferSize(opts.bufferSize);
+    client.setSendDataSocketBufferSize(opts.sendBufferSize);
+    client.setReceieveDataSocketBufferSize(opts.receiveBufferSize);
+  }
+
+  private boolean isAlive(FTPClient client) {
+    try {
+      return client.isConnected() && client.sendNoOp();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void destroy(FTPClient client) {
+    try {
+      if (client.isConnected()) {
+        client.logout();
+      }
+    } catch (IOException e) {
+      FtpLog.d(TAG, "logout error", e);
+    }
+    try {
+      if (client.isConnected()) {
+        client.disconnect();
+      }
+    } catch (IOException e) {
+      FtpLog.d(TAG, "logout disconnect error", e);
+    }
+  }
+
+  /**
+   * Chạy định kỳ: đóng session rảnh quá idleTimeout (giữ lại minIdle), NOOP các session
+   * được giữ lại để server không tự đóng, rồi mở thêm cho đủ minIdle.
+   */
+  private void evict() {
+    Options opts = options;
+    long now = System.currentTimeMillis();
+    ArrayDeque<IdleSession> toCheck = new ArrayDeque<>();
+    ArrayDeque<FTPClient> toClose = new ArrayDeque<>();
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      // các session cũ nhất nằm ở cuối deque
+      int keep = idle.size();
+      Iterator<IdleSession> it = idle.descendingIterator();
+      while (it.hasNext()) {
+        IdleSession session = it.next();
+        if (now - session.idleSince < opts.idleTimeoutMs) {
+          break;
+        }
+        it.remove();
+        if (keep > opts.minIdle) {
+          toClose.add(session.client);
+          keep--;
+        } else {
+          toCheck.add(session);
+        }
+      }
+    }
+    for (FTPClient client : toClose) {
+      destroy(client);
+    }
+    for (IdleSession session : toCheck) {
+      if (isAlive(session.client)) {
+        release(session.client);
+      } else {
+        destroy(session.client);
+      }
+    }
+
+    int missing;
+    synchronized (this) {
+      missing = closed ? 0 : opts.minIdle - idle.size();
+    }
+    for (int i = 0; i < missing; i++) {
+      try {
+        release(connect());
+      } catch (IOException e) {
+        FtpLog.d(TAG, "pool prefill error", e);
+        break;
+      }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.reactlibrary.ftpclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Session của pool mở được data stream của LIST để đọc dần từng dòng. FTPClient chỉ có
+ * initiateListParsing()/listFiles(), cả hai đọc hết reply vào bộ nhớ rồi mới parse.
+ */
+interface ListStreamClient {
+
+  /**
+   * Gửi LIST 'path' (kèm -a nếu setListHiddenFiles) và mở data connection.
+   * Đọc xong (hoặc huỷ) phải đóng stream rồi completePendingCommand()/abortRetrieve().
+   * @return null nếu server từ chối lệnh.
+   */
+  InputStream openListStream(String path) throws IOException;
+}
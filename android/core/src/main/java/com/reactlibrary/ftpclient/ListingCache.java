@@ -0,0 +1,198 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Cache kết quả LIST theo đường dẫn thư mục trên server, có TTL và giới hạn số entry (LRU).
+ * Các thao tác làm thay đổi cây thư mục (upload, remove, makeDir, move) phải gọi invalidate()
+ * để bỏ listing của thư mục cha và của cả nhánh bên dưới.
+ */
+class ListingCache {
+
+  private static final String TAG = "RNFtpClient";
+
+  /**
+   * Cấu hình cache, có thể thay đổi từ JS qua setListCacheOptions().
+   */
+  static class Options {
+    long ttlMs = 10000;                     // 0 = tắt cache
+    int maxEntries = 64;
+    boolean staleWhileRevalidate = false;   // trả listing đã hết hạn ngay rồi làm mới ở background
+
+    Options copy() {
+      Options copy = new Options();
+      copy.ttlMs = ttlMs;
+      copy.maxEntries = maxEntries;
+      copy.staleWhileRevalidate = staleWhileRevalidate;
+      return copy;
+    }
+  }
+
+  /**
+   * Lấy listing thật từ server khi cache không có.
+   */
+  interface Loader {
+    FTPFile[] load(String path) throws IOException;
+  }
+
+  private static class CachedListing {
+    final FTPFile[] files;
+    final long loadedAt;
+
+    CachedListing(FTPFile[] files, long loadedAt) {
+      this.files = files;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  private final Executor refreshExecutor;
+  private final LinkedHashMap<String, CachedListing> entries = new LinkedHashMap<String, CachedListing>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedListing> eldest) {
+      return size() > options.maxEntries;
+    }
+  };
+  private final Set<String> refreshing = new HashSet<>();
+  private volatile Options options = new Options();
+  // tăng sau mỗi lần invalidate, listing được load trước đó sẽ không được đưa vào cache nữa
+  private long generation = 0;
+
+  ListingCache(Executor refreshExecutor) {
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  synchronized void setOptions(Options options) {
+    this.options = options;
+    if (options.ttlMs <= 0) {
+      entries.clear();
+    }
+    while (entries.size() > options.maxEntries) {
+      Iterator<String> it = entries.keySet().iterator();
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * Listing của 'path': từ cache nếu còn hạn, ngược lại gọi 'loader' rồi lưu lại.
+   * Ở chế độ stale-while-revalidate, listing hết hạn vẫn được trả về ngay và được làm mới ở background.
+   */
+  FTPFile[] list(String path, final Loader loader) throws IOException {
+    final Options opts = options;
+    if (opts.ttlMs <= 0) {
+      return loader.load(path);
+    }
+    final String key = normalize(path);
+    long now = System.currentTimeMillis();
+    long loadGeneration;
+    synchronized (this) {
+      CachedListing entry = entries.get(key);
+      if (entry != null && now - entry.loadedAt < opts.ttlMs) {
+        return entry.files;
+      }
+      if (entry != null && opts.staleWhileRevalidate) {
+        if (refreshing.add(key)) {
+          scheduleRefresh(key, path, loader);
+        }
+        return entry.files;
+      }
+      loadGeneration = generation;
+    }
+    FTPFile[] files = loader.load(path);
+    put(key, files, loadGeneration);
+    return files;
+  }
+
+  /**
+   * Listing còn hạn của 'path' trong cache, null nếu không có. Không load và không làm mới.
+   */
+  synchronized FTPFile[] peek(String path) {
+    CachedListing entry = entries.get(normalize(path));
+    return entry != null && System.currentTimeMillis() - entry.loadedAt < options.ttlMs ? entry.files : null;
+  }
+
+  /**
+   * Thế hệ hiện tại, lấy trước khi đọc listing từ server để truyền cho store().
+   */
+  synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Lưu listing đọc từ server ngoài list(), bỏ qua nếu có invalidate() từ lúc lấy 'loadGeneration'.
+   */
+  void store(String path, FTPFile[] files, long loadGeneration) {
+    put(normalize(path), files, loadGeneration);
+  }
+
+  private void scheduleRefresh(final String key, final String path, final Loader loader) {
+    final long loadGeneration = generation;
+    refreshExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          put(key, loader.load(path), loadGeneration);
+        } catch (IOException e) {
+          FtpLog.d(TAG, "list cache refresh error", e);
+        } finally {
+          synchronized (ListingCache.this) {
+            refreshing.remove(key);
+          }
+        }
+      }
+    });
+  }
+
+  private synchronized void put(String key, FTPFile[] files, long loadGeneration) {
+    if (loadGeneration == generation && options.ttlMs > 0) {
+      entries.put(key, new CachedListing(files, System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Bỏ listing của 'path', của thư mục cha và của mọi thư mục con bên dưới 'path'.
+   */
+  synchronized void invalidate(String path) {
+    generation++;
+    String key = normalize(path);
+    String prefix = key.endsWith("/") ? key : key + "/";
+    Iterator<String> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      String cached = it.next();
+      if (cached.equals(key) || cached.startsWith(prefix)) {
+        it.remove();
+      }
+    }
+    entries.remove(parentOf(key));
+  }
+
+  synchronized void clear() {
+    generation++;
+    entries.clear();
+  }
+
+  // "/a/b/" và "/a/b" là cùng một thư mục
+  static String normalize(String path) {
+    String key = path;
+    while (key.length() > 1 && key.endsWith("/")) {
+      key = key.substring(0, key.length() - 1);
+    }
+    return key;
+  }
+
+  static String parentOf(String key) {
+    int index = key.lastIndexOf('/');
+    if (index < 0) {
+      return "";
+    }
+    return index == 0 ? "/" : key.substring(0, index);
+  }
+}
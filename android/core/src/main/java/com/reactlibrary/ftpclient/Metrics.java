@@ -0,0 +1,348 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Số liệu đo của module: histogram độ trễ (connect, login, từng lệnh FTP, thời gian chờ trong lane),
+ * histogram byte/tốc độ của từng transfer và các bộ đếm (retry, lỗi theo reply code / loại exception).
+ * Ghi chỉ là vài phép cộng atomic nên gọi được từ mọi thread transfer; tính percentile chỉ làm khi đọc.
+ */
+class Metrics {
+
+  static final String UNIT_MS = "ms";
+  static final String UNIT_BYTES = "bytes";
+  static final String UNIT_BYTES_PER_SECOND = "bytes/s";
+  static final long MIN_INTERVAL_MS = 1000;
+  // độ trễ của các lệnh có reply ngay (không mở data connection), xấp xỉ RTT của control connection
+  static final String RTT = "rtt";
+
+  /**
+   * Nơi nhận số liệu định kỳ (module sẽ chuyển thành event gửi lên JS).
+   */
+  interface Sink {
+    void onMetrics(Snapshot snapshot);
+  }
+
+  static class HistogramSnapshot {
+    String name;
+    String unit;
+    long count;
+    double mean;
+    double min;
+    double max;
+    double p50;
+    double p90;
+    double p99;
+  }
+
+  static class Snapshot {
+    long since;
+    Map<String, Long> counters;
+    List<HistogramSnapshot> histograms;
+  }
+
+  /**
+   * Histogram log-tuyến tính: mỗi luỹ thừa của 2 chia thành 4 bucket, sai số của percentile dưới 25%.
+   * Giá trị được ghi theo đơn vị nguyên (ví dụ µs) và chia cho 'scale' khi đọc.
+   */
+  static class Histogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = SUB_BUCKETS + 62 * SUB_BUCKETS;
+
+    final String unit;
+    private final double scale;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String unit, double scale) {
+      this.unit = unit;
+      this.scale = scale;
+    }
+
+    void record(long value) {
+      if (value < 0) {
+        value = 0;
+      }
+      counts.incrementAndGet(bucketOf(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long current;
+      while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+        // thử lại
+      }
+      while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        // thử lại
+      }
+    }
+
+    long getCount() {
+      return count.get();
+    }
+
+    /**
+     * Tổng các giá trị đã ghi, theo đơn vị nguyên lúc ghi (chưa chia 'scale').
+     */
+    long getSum() {
+      return sum.get();
+    }
+
+    private static int bucketOf(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+      return SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + sub;
+    }
+
+    // giá trị lớn nhất thuộc 'bucket'
+    private static long upperBound(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+      int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+      long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+      long width = 1L << (exponent - 2);
+      return ((SUB_BUCKETS + sub) * width) + width - 1;
+    }
+
+    HistogramSnapshot snapshot(String name) {
+      long[] copy = new long[BUCKETS];
+      long total = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        copy[i] = counts.get(i);
+        total += copy[i];
+      }
+      HistogramSnapshot snapshot = new HistogramSnapshot();
+      snapshot.name = name;
+      snapshot.unit = unit;
+      snapshot.count = total;
+      if (total == 0) {
+        return snapshot;
+      }
+      long maxValue = max.get();
+      snapshot.mean = sum.get() / (double) count.get() / scale;
+      snapshot.min = min.get() / scale;
+      snapshot.max = maxValue / scale;
+      snapshot.p50 = Math.min(percentile(copy, total, 0.50), maxValue) / scale;
+      snapshot.p90 = Math.min(percentile(copy, total, 0.90), maxValue) / scale;
+      snapshot.p99 = Math.min(percentile(copy, total, 0.99), maxValue) / scale;
+      return snapshot;
+    }
+
+    private static long percentile(long[] copy, long total, double quantile) {
+      long rank = Math.max(1, (long) Math.ceil(total * quantile));
+      long seen = 0;
+      for (int i = 0; i < copy.length; i++) {
+        seen += copy[i];
+        if (seen >= rank) {
+          return upperBound(i);
+        }
+      }
+      return upperBound(copy.length - 1);
+    }
+  }
+
+  /**
+   * Đo độ trễ từng lệnh trên một session: từ lúc gửi lệnh tới reply cuối cùng. Với lệnh có reply
+   * 1xx (LIST, STOR, RETR...) thời gian tới reply 1xx được ghi riêng vào "<lệnh>.open"; các lệnh còn
+   * lại được ghi thêm vào histogram RTT.
+   * Mỗi FTPClient chỉ được dùng bởi một thread tại một thời điểm nên không cần đồng bộ.
+   */
+  private class CommandTimer implements ProtocolCommandListener {
+    private String command;
+    private long sentAt;
+    private boolean opened;
+
+    @Override
+    public void protocolCommandSent(ProtocolCommandEvent event) {
+      command = event.getCommand().toUpperCase(Locale.US);
+      sentAt = System.nanoTime();
+      opened = false;
+    }
+
+    @Override
+    public void protocolReplyReceived(ProtocolCommandEvent event) {
+      int code = event.getReplyCode();
+      if (code >= 400) {
+        count("reply." + code);
+      }
+      if (command == null) {
+        // greeting của server, không thuộc lệnh nào
+        return;
+      }
+      long elapsed = (System.nanoTime() - sentAt) / 1000;
+      if (FTPReply.isPositivePreliminary(code)) {
+        recordMicros("command." + command + ".open", elapsed);
+        opened = true;
+        return;
+      }
+      recordMicros("command." + command, elapsed);
+      if (!opened) {
+        recordMicros(RTT, elapsed);
+      }
+      command = null;
+    }
+  }
+
+  private final Sink sink;
+  private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService reporter;
+  private ScheduledFuture<?> reporting;
+  private volatile long since = System.currentTimeMillis();
+
+  Metrics(Sink sink) {
+    this.sink = sink;
+    this.reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RNFtpClient-metrics");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Listener gắn vào mỗi FTPClient mới của pool.
+   */
+  ProtocolCommandListener newCommandTimer() {
+    return new CommandTimer();
+  }
+
+  /**
+   * Ghi một độ trễ tính bằng µs, đọc ra theo ms.
+   */
+  void recordMicros(String name, long micros) {
+    histogram(name, UNIT_MS, 1000).record(micros);
+  }
+
+  void recordNanosSince(String name, long startNanos) {
+    recordMicros(name, (System.nanoTime() - startNanos) / 1000);
+  }
+
+  /**
+   * Một lần transfer trên data connection: số byte và tốc độ trung bình.
+   */
+  void recordTransfer(String direction, long bytes, long startNanos) {
+    long elapsed = System.nanoTime() - startNanos;
+    histogram(direction + ".bytes", UNIT_BYTES, 1).record(bytes);
+    if (elapsed > 0 && bytes > 0) {
+      histogram(direction + ".throughput", UNIT_BYTES_PER_SECOND, 1).record(bytes * 1000000000L / elapsed);
+    }
+    counter(direction + ".totalBytes").addAndGet(bytes);
+    count(direction + ".transfers");
+  }
+
+  /**
+   * Một lần transfer MODE Z: 'bytes' byte của file đi trên mạng thành 'wireBytes' byte.
+   */
+  void recordCompressed(String direction, long bytes, long wireBytes) {
+    counter(direction + ".compressedBytes").addAndGet(bytes);
+    counter(direction + ".wireBytes").addAndGet(wireBytes);
+    count(direction + ".compressedTransfers");
+  }
+
+  /**
+   * @return null nếu chưa ghi gì vào histogram 'name'.
+   */
+  Histogram find(String name) {
+    return histograms.get(name);
+  }
+
+  void count(String name) {
+    counter(name).incrementAndGet();
+  }
+
+  void countError(Exception e) {
+    count("error." + e.getClass().getSimpleName());
+  }
+
+  private Histogram histogram(String name, String unit, double scale) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      Histogram created = new Histogram(unit, scale);
+      histogram = histograms.putIfAbsent(name, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    return histogram;
+  }
+
+  private AtomicLong counter(String name) {
+    AtomicLong counter = counters.get(name);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = counters.putIfAbsent(name, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+
+  Snapshot snapshot() {
+    Snapshot snapshot = new Snapshot();
+    snapshot.since = since;
+    snapshot.counters = new TreeMap<>();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      snapshot.counters.put(entry.getKey(), entry.getValue().get());
+    }
+    snapshot.histograms = new ArrayList<>();
+    for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+      snapshot.histograms.add(entry.getValue().snapshot(entry.getKey()));
+    }
+    return snapshot;
+  }
+
+  void reset() {
+    histograms.clear();
+    counters.clear();
+    since = System.currentTimeMillis();
+  }
+
+  /**
+   * Gửi số liệu qua Sink sau mỗi 'intervalMs' (tối thiểu 1 giây), 0 để tắt.
+   */
+  synchronized void setInterval(long intervalMs) {
+    if (reporting != null) {
+      reporting.cancel(false);
+      reporting = null;
+    }
+    if (intervalMs <= 0) {
+      return;
+    }
+    long interval = Math.max(MIN_INTERVAL_MS, intervalMs);
+    reporting = reporter.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        sink.onMetrics(snapshot());
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  void shutdown() {
+    reporter.shutdownNow();
+  }
+}
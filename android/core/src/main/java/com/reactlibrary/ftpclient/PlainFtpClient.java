@@ -0,0 +1,21 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.io.SocketInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+/**
+ * FTPClient của các session không dùng TLS, thêm openListStream() cho listPaged().
+ */
+class PlainFtpClient extends FTPClient implements ListStreamClient {
+
+  @Override
+  public InputStream openListStream(String path) throws IOException {
+    Socket socket = _openDataConnection_(FTPCmd.LIST, getListArguments(path));
+    return socket == null ? null : new SocketInputStream(socket, socket.getInputStream());
+  }
+}
@@ -0,0 +1,215 @@
+package com.reactlibrary.ftpclient;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gom tiến độ của tất cả transfer đang chạy và gửi thành một batch sau mỗi khoảng 'interval'.
+ * Thread transfer chỉ cộng số byte (AtomicLong), việc tính %/tốc độ/ETA và gửi event diễn ra
+ * trên thread riêng của aggregator.
+ */
+class ProgressAggregator {
+
+  static final long DEFAULT_INTERVAL_MS = 250;
+  static final long MIN_INTERVAL_MS = 16;
+
+  /**
+   * Nơi nhận batch tiến độ (module sẽ chuyển thành event gửi lên JS).
+   */
+  interface Sink {
+    void onProgress(List<Snapshot> batch);
+  }
+
+  /**
+   * Tiến độ của một token tại thời điểm flush.
+   */
+  static class Snapshot {
+    String token;
+    long bytesTransferred;
+    long totalBytes;
+    int percentage;
+    double throughput;         // byte/s trong interval vừa rồi
+    double averageThroughput;  // byte/s từ lúc bắt đầu
+    long eta;                  // ms còn lại, -1 nếu chưa ước lượng được
+  }
+
+  /**
+   * Bộ đếm byte của một transfer, được TransferEngine gọi add() sau mỗi chunk.
+   */
+  static class Entry implements TransferEngine.Progress {
+    final String token;
+    private final AtomicLong transferred;
+    private volatile long totalBytes;
+    private volatile long startBytes;
+    private volatile long startTime;
+    private volatile boolean finished = false;
+    private volatile boolean dirty = true;
+    private long lastFlushBytes;
+    private long lastFlushTime;
+
+    Entry(String token, long totalBytes, long startBytes) {
+      this.token = token;
+      this.transferred = new AtomicLong(startBytes);
+      reset(totalBytes, startBytes);
+    }
+
+    private void reset(long totalBytes, long startBytes) {
+      this.totalBytes = totalBytes;
+      this.startBytes = startBytes;
+      this.transferred.set(startBytes);
+      this.startTime = System.currentTimeMillis();
+      this.lastFlushBytes = startBytes;
+      this.lastFlushTime = startTime;
+      this.dirty = true;
+    }
+
+    @Override
+    public void add(long bytes) {
+      transferred.addAndGet(bytes);
+      dirty = true;
+    }
+
+    long getTransferred() {
+      return transferred.get();
+    }
+  }
+
+  private final Sink sink;
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService flusher;
+  private ScheduledFuture<?> flushing;
+  private long intervalMs = DEFAULT_INTERVAL_MS;
+
+  ProgressAggregator(Sink sink) {
+    this.sink = sink;
+    this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RNFtpClient-progress");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Bắt đầu (hoặc bắt đầu lại khi retry/resume) theo dõi 'token' từ 'startBytes'.
+   */
+  Entry track(String token, long totalBytes, long startBytes) {
+    Entry entry = entries.get(token);
+    if (entry == null) {
+      Entry created = new Entry(token, totalBytes, startBytes);
+      entry = entries.putIfAbsent(token, created);
+      if (entry == null) {
+        entry = created;
+      }
+    }
+    synchronized (entry) {
+      entry.finished = false;
+      entry.reset(totalBytes, startBytes);
+    }
+    ensureFlushing();
+    return entry;
+  }
+
+  /**
+   * Số byte đã truyền của 'token' (kể cả phần có sẵn khi resume), -1 nếu không theo dõi 'token'.
+   */
+  long transferred(String token) {
+    Entry entry = entries.get(token);
+    return entry == null ? -1 : entry.getTransferred();
+  }
+
+  /**
+   * Transfer kết thúc (xong, lỗi hoặc huỷ): lần flush kế tiếp gửi trạng thái cuối rồi bỏ token.
+   */
+  void finish(String token) {
+    Entry entry = entries.get(token);
+    if (entry != null) {
+      entry.finished = true;
+      entry.dirty = true;
+    }
+  }
+
+  synchronized void setInterval(long intervalMs) {
+    this.intervalMs = Math.max(MIN_INTERVAL_MS, intervalMs);
+    if (flushing != null) {
+      flushing.cancel(false);
+      flushing = null;
+      ensureFlushing();
+    }
+  }
+
+  void shutdown() {
+    flusher.shutdownNow();
+  }
+
+  private synchronized void ensureFlushing() {
+    if (flushing == null && !flusher.isShutdown()) {
+      flushing = flusher.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  void flush() {
+    long now = System.currentTimeMillis();
+    List<Snapshot> batch = new ArrayList<>();
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      if (!entry.dirty) {
+        continue;
+      }
+      synchronized (entry) {
+        entry.dirty = false;
+        batch.add(snapshot(entry, now));
+        if (entry.finished) {
+          it.remove();
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      sink.onProgress(batch);
+    }
+    synchronized (this) {
+      if (entries.isEmpty() && flushing != null) {
+        flushing.cancel(false);
+        flushing = null;
+      }
+    }
+  }
+
+  private Snapshot snapshot(Entry entry, long now) {
+    Snapshot snapshot = new Snapshot();
+    long bytes = entry.getTransferred();
+    long total = entry.totalBytes;
+    snapshot.token = entry.token;
+    snapshot.bytesTransferred = bytes;
+    snapshot.totalBytes = total;
+    snapshot.percentage = total > 0 ? (int) Math.min(100, bytes * 100 / total) : (entry.finished ? 100 : 0);
+
+    long sinceLastFlush = now - entry.lastFlushTime;
+    snapshot.throughput = sinceLastFlush > 0 ? (bytes - entry.lastFlushBytes) * 1000.0 / sinceLastFlush : 0;
+    long sinceStart = now - entry.startTime;
+    snapshot.averageThroughput = sinceStart > 0 ? (bytes - entry.startBytes) * 1000.0 / sinceStart : 0;
+    snapshot.eta = snapshot.averageThroughput > 0
+            ? (long) ((total - bytes) * 1000.0 / snapshot.averageThroughput)
+            : -1;
+
+    entry.lastFlushBytes = bytes;
+    entry.lastFlushTime = now;
+    return snapshot;
+  }
+}
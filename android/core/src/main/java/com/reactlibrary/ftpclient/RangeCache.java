@@ -0,0 +1,114 @@
+package com.reactlibrary.ftpclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache trong bộ nhớ các đoạn nhỏ vừa đọc bằng readRange()/tail(), để lần đọc lại cùng đoạn
+ * (hoặc một đoạn nằm trong nó) không phải mở data connection. Giới hạn theo tổng số byte,
+ * bỏ đoạn dùng lâu nhất trước; thay đổi ở một đường dẫn làm mất các đoạn của nó và của các file bên trong.
+ */
+class RangeCache {
+
+  static final long TTL_MS = 30000;
+  // đoạn lớn hơn không được cache
+  static final int MAX_RANGE_BYTES = 256 * 1024;
+  static final long MAX_BYTES = 4 * 1024 * 1024;
+
+  static class Range {
+    final String path;
+    final long offset;
+    final byte[] data;
+    final boolean eof;   // data kết thúc ở cuối file
+    final long loadedAt;
+
+    Range(String path, long offset, byte[] data, boolean eof, long loadedAt) {
+      this.path = path;
+      this.offset = offset;
+      this.data = data;
+      this.eof = eof;
+      this.loadedAt = loadedAt;
+    }
+
+    /**
+     * @return phần [offset, offset + length) nếu đoạn này chứa nó, null nếu không.
+     */
+    byte[] slice(long offset, int length) {
+      long start = offset - this.offset;
+      if (start < 0 || start > data.length) {
+        return null;
+      }
+      long available = data.length - start;
+      if (available < length && !eof) {
+        return null;
+      }
+      byte[] slice = new byte[(int) Math.min(available, length)];
+      System.arraycopy(data, (int) start, slice, 0, slice.length);
+      return slice;
+    }
+  }
+
+  private final LinkedHashMap<String, Range> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes = 0;
+
+  /**
+   * @return 'length' byte từ 'offset' của 'path' (ít hơn nếu file hết trước đó), null nếu chưa có trong cache.
+   */
+  synchronized byte[] get(String path, long offset, int length) {
+    String key = ListingCache.normalize(path);
+    long now = System.currentTimeMillis();
+    Iterator<Range> it = entries.values().iterator();
+    Range hit = null;
+    byte[] slice = null;
+    while (it.hasNext()) {
+      Range range = it.next();
+      if (now - range.loadedAt >= TTL_MS) {
+        bytes -= range.data.length;
+        it.remove();
+      } else if (slice == null && range.path.equals(key)) {
+        slice = range.slice(offset, length);
+        hit = range;
+      }
+    }
+    if (slice != null) {
+      // đánh dấu vừa dùng
+      entries.get(hit.path + "@" + hit.offset);
+    }
+    return slice;
+  }
+
+  synchronized void put(String path, long offset, byte[] data, boolean eof) {
+    if (data.length > MAX_RANGE_BYTES) {
+      return;
+    }
+    String key = ListingCache.normalize(path);
+    Range previous = entries.put(key + "@" + offset, new Range(key, offset, data, eof, System.currentTimeMillis()));
+    if (previous != null) {
+      bytes -= previous.data.length;
+    }
+    bytes += data.length;
+    Iterator<Range> it = entries.values().iterator();
+    while (bytes > MAX_BYTES && it.hasNext()) {
+      bytes -= it.next().data.length;
+      it.remove();
+    }
+  }
+
+  synchronized void invalidate(String path) {
+    String key = ListingCache.normalize(path);
+    String prefix = key.endsWith("/") ? key : key + "/";
+    Iterator<Range> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Range range = it.next();
+      if (range.path.equals(key) || range.path.startsWith(prefix)) {
+        bytes -= range.data.length;
+        it.remove();
+      }
+    }
+  }
+
+  synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+}
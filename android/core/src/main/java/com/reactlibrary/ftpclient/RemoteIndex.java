@@ -0,0 +1,537 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục của một cây thư mục trên server để tìm file tại chỗ thay vì LIST từng thư mục: trie theo
+ * từng thành phần của đường dẫn, mỗi node giữ size/mtime, lưu ra file nhị phân gọn trong app storage.
+ * Lần đầu duyệt song song cả cây; các lần sau hỏi mtime (MLST) của từng thư mục và chỉ LIST lại
+ * thư mục có mtime khác lần LIST trước (thêm/xoá/đổi tên bên trong làm đổi mtime của thư mục).
+ * Server không có MLST thì không biết mtime của thư mục, lần nào cũng duyệt lại cả cây.
+ * File bị ghi đè tại chỗ không làm đổi mtime của thư mục, nên thay đổi từ nơi khác kiểu đó chỉ được
+ * thấy sau khi làm mới toàn bộ; thay đổi qua module thì invalidate() đánh dấu thư mục để LIST lại.
+ */
+class RemoteIndex {
+
+  private static final String TAG = "RNFtpClient";
+  private static final int MAGIC = 0x52464958;
+  private static final int VERSION = 1;
+  static final int DEFAULT_SEARCH_LIMIT = 500;
+  // mtime chưa biết: thư mục sẽ được LIST lại ở lần làm mới sau
+  static final long UNKNOWN = -1;
+
+  static final String TYPE_FILE = "file";
+  static final String TYPE_DIR = "dir";
+
+  /**
+   * Một file/thư mục trong trie. Node gốc có 'name' là đường dẫn gốc của chỉ mục.
+   */
+  static class Entry {
+    final String name;
+    final Entry parent;
+    final boolean directory;
+    long size;
+    long mtime = UNKNOWN;
+    // chỉ với thư mục: mtime của thư mục lúc LIST gần nhất, children null nếu chưa LIST lần nào
+    long listedMtime = UNKNOWN;
+    HashMap<String, Entry> children;
+
+    Entry(String name, Entry parent, boolean directory) {
+      this.name = name;
+      this.parent = parent;
+      this.directory = directory;
+    }
+
+    String path() {
+      if (parent == null) {
+        return name;
+      }
+      return TreeWalker.childPath(parent.path(), name);
+    }
+  }
+
+  /**
+   * Điều kiện tìm, các điều kiện không đặt thì bỏ qua.
+   */
+  static class Query {
+    String under;                  // chỉ tìm trong nhánh này
+    String prefix;                 // tên bắt đầu bằng
+    String glob;                   // tên khớp mẫu với * và ?
+    boolean caseSensitive = false;
+    String type;                   // TYPE_FILE, TYPE_DIR hoặc null
+    long minSize = -1;
+    long maxSize = -1;
+    long modifiedAfter = -1;       // ms
+    long modifiedBefore = -1;      // ms
+    int limit = DEFAULT_SEARCH_LIMIT;
+  }
+
+  static class Hit {
+    final String path;
+    final boolean directory;
+    final long size;
+    final long mtime;
+
+    Hit(String path, boolean directory, long size, long mtime) {
+      this.path = path;
+      this.directory = directory;
+      this.size = size;
+      this.mtime = mtime;
+    }
+  }
+
+  private static final Comparator<Hit> BY_PATH = new Comparator<Hit>() {
+    @Override
+    public int compare(Hit a, Hit b) {
+      return a.path.compareTo(b.path);
+    }
+  };
+
+  static class Info {
+    String root;
+    boolean built;
+    long dirs;
+    long files;
+    long bytes;
+    long updatedAt;
+  }
+
+  /**
+   * Kết quả một lần update(): số thư mục đã hỏi mtime, số thư mục phải LIST lại, số thư mục lỗi (bị bỏ qua).
+   */
+  static class Update {
+    final AtomicLong dirsChecked = new AtomicLong();
+    final AtomicLong dirsListed = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+    boolean full;
+    long durationMs;
+  }
+
+  private final File file;
+  private final String rootPath;
+  private Entry root;
+  private long updatedAt;
+
+  private RemoteIndex(File file, String rootPath) {
+    this.file = file;
+    this.rootPath = rootPath;
+  }
+
+  /**
+   * Đọc chỉ mục của 'rootPath' từ 'file'. File không có, hỏng hoặc của gốc khác thì coi như chưa duyệt.
+   */
+  static RemoteIndex open(File file, String rootPath) {
+    RemoteIndex index = new RemoteIndex(file, ListingCache.normalize(rootPath));
+    if (!file.exists()) {
+      return index;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(index.rootPath)) {
+          return index;
+        }
+        long updatedAt = in.readLong();
+        index.root = read(in, null);
+        index.updatedAt = updatedAt;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      FtpLog.d(TAG, "remote index is unreadable, starting over", e);
+      index.root = null;
+    }
+    return index;
+  }
+
+  String getRootPath() {
+    return rootPath;
+  }
+
+  /**
+   * Làm mới chỉ mục trên các session của 'core': lần đầu hoặc 'full' thì duyệt cả cây vào một trie mới
+   * (tìm kiếm vẫn dùng trie cũ cho tới khi xong), còn lại chỉ LIST các thư mục có mtime đã đổi.
+   * Server không có MLST thì luôn duyệt cả cây: hỏi mtime thư mục bằng SIZE/MDTM/CWD không ra gì mà còn tốn thêm lệnh.
+   * Thư mục lỗi được bỏ qua và LIST lại ở lần sau, lỗi ở gốc thì dừng. Xong thì lưu ra file.
+   * @return null nếu bị huỷ (cancelScan của gốc).
+   */
+  Update update(FtpCore core, int parallelism, boolean full) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    final Update update = new Update();
+    final FtpSessionPool pool = core.getPool();
+    final boolean mlst = pool.execute(client -> pool.getFeatures(client).has("MLST"));
+    Entry target;
+    synchronized (this) {
+      update.full = full || root == null || !mlst;
+      target = update.full ? new Entry(rootPath, null, true) : root;
+    }
+    TreeWalker walker = core.newWalker(parallelism, new TreeWalker.Listener() {
+      @Override
+      public TreeWalker.Node lookup(String path, TreeWalker.Node parent) {
+        return null;
+      }
+
+      @Override
+      public void onListed(TreeWalker walker, TreeWalker.Node dir, FTPFile[] files) {
+      }
+
+      @Override
+      public void onCompleted(FTPClient client, TreeWalker.Node dir) {
+      }
+
+      @Override
+      public boolean onFailure(String path, IOException e) {
+        if (path.equals(rootPath)) {
+          return false;
+        }
+        FtpLog.d(TAG, "remote index skips " + path, e);
+        update.failures.incrementAndGet();
+        return true;
+      }
+    });
+    TreeWalker.Node owner = new TreeWalker.Node(rootPath, null);
+    TreeWalker.Node done = core.runScan(owner, walker, job(core, walker, owner, target, update, mlst));
+    if (done == null) {
+      return null;
+    }
+    synchronized (this) {
+      root = target;
+      updatedAt = System.currentTimeMillis();
+    }
+    save();
+    update.durationMs = (System.nanoTime() - start) / 1000000;
+    return update;
+  }
+
+  /**
+   * Việc của một thư mục: hỏi mtime (chỉ với 'mlst'), LIST lại nếu đã đổi, rồi thêm việc cho các thư mục con.
+   */
+  private TreeWalker.Job job(final FtpCore core, final TreeWalker walker, final TreeWalker.Node owner,
+                             final Entry dir, final Update update, final boolean mlst) {
+    return new TreeWalker.Job() {
+      @Override
+      public void run(FTPClient client) throws IOException {
+        String path = dir.path();
+        try {
+          long mtime = UNKNOWN;
+          if (mlst) {
+            update.dirsChecked.incrementAndGet();
+            FTPFile stat = core.stat(client, path);
+            mtime = stat == null || stat.getTimestamp() == null ? UNKNOWN : stat.getTimestamp().getTimeInMillis();
+          }
+          boolean changed;
+          synchronized (RemoteIndex.this) {
+            changed = mtime == UNKNOWN || mtime != dir.listedMtime || dir.children == null;
+          }
+          if (changed) {
+            FTPFile[] files = mlst ? client.mlistDir(path) : client.listFiles(path);
+            update.dirsListed.incrementAndGet();
+            merge(dir, files, mtime);
+          }
+        } catch (IOException e) {
+          synchronized (RemoteIndex.this) {
+            dir.listedMtime = UNKNOWN;
+          }
+          throw e;
+        }
+        List<Entry> subdirs = new ArrayList<>();
+        synchronized (RemoteIndex.this) {
+          for (Entry child : dir.children.values()) {
+            if (child.directory) {
+              subdirs.add(child);
+            }
+          }
+        }
+        // mọi việc thuộc node gốc: chỉ cần biết khi nào tất cả xong, không cộng tổng theo nhánh
+        for (Entry subdir : subdirs) {
+          walker.submit(owner, subdir.path(), job(core, walker, owner, subdir, update, mlst));
+        }
+      }
+    };
+  }
+
+  private synchronized void merge(Entry dir, FTPFile[] files, long mtime) {
+    HashMap<String, Entry> previous = dir.children;
+    HashMap<String, Entry> children = new HashMap<>(files.length * 4 / 3 + 1);
+    for (FTPFile file : files) {
+      if (file == null || (!file.isFile() && !file.isDirectory())) {
+        continue;
+      }
+      String name = file.getName();
+      if (name.equals(".") || name.equals("..") || TreeWalker.isSelfOrParent(file)) {
+        continue;
+      }
+      Entry entry = previous == null ? null : previous.get(name);
+      if (entry == null || entry.directory != file.isDirectory()) {
+        // thư mục con mới chưa có children nên sẽ được LIST
+        entry = new Entry(name, dir, file.isDirectory());
+      }
+      entry.size = file.isFile() ? file.getSize() : 0;
+      entry.mtime = file.getTimestamp() == null ? UNKNOWN : file.getTimestamp().getTimeInMillis();
+      children.put(name, entry);
+    }
+    dir.children = children;
+    dir.listedMtime = mtime;
+  }
+
+  /**
+   * 'path' vừa bị thay đổi qua module: thư mục chứa nó (và chính nó nếu là thư mục) được LIST lại
+   * ở lần làm mới sau, kể cả khi mtime của thư mục không đổi (ghi đè file tại chỗ).
+   */
+  synchronized void invalidate(String path) {
+    if (root == null) {
+      return;
+    }
+    String key = ListingCache.normalize(path);
+    if (!isUnderRoot(key)) {
+      if (rootPath.startsWith(key.endsWith("/") ? key : key + "/")) {
+        root.listedMtime = UNKNOWN;
+      }
+      return;
+    }
+    Entry entry = find(key, true);
+    if (entry.directory) {
+      entry.listedMtime = UNKNOWN;
+    }
+    if (entry.parent != null) {
+      entry.parent.listedMtime = UNKNOWN;
+    }
+  }
+
+  /**
+   * Tìm trong chỉ mục, không gửi lệnh nào lên server.
+   * @return tối đa query.limit kết quả theo thứ tự đường dẫn, rỗng nếu chưa duyệt lần nào.
+   */
+  synchronized List<Hit> search(Query query) {
+    List<Hit> hits = new ArrayList<>();
+    Entry start = root == null || query.under == null ? root : find(ListingCache.normalize(query.under), false);
+    if (start == null || query.limit <= 0) {
+      return hits;
+    }
+    Pattern glob = query.glob == null ? null : globPattern(query.glob, query.caseSensitive);
+    // duyệt hết cây, chỉ giữ 'limit' đường dẫn nhỏ nhất: đầu heap là đường dẫn lớn nhất đang giữ
+    PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(query.limit, 1024), Collections.reverseOrder(BY_PATH));
+    ArrayDeque<Entry> stack = new ArrayDeque<>();
+    stack.push(start);
+    while (!stack.isEmpty()) {
+      Entry dir = stack.pop();
+      if (dir.children == null) {
+        continue;
+      }
+      for (Entry entry : dir.children.values()) {
+        if (entry.directory) {
+          stack.push(entry);
+        }
+        if (matches(entry, query, glob)) {
+          String path = entry.path();
+          if (best.size() < query.limit) {
+            best.add(new Hit(path, entry.directory, entry.size, entry.mtime));
+          } else if (path.compareTo(best.peek().path) < 0) {
+            best.poll();
+            best.add(new Hit(path, entry.directory, entry.size, entry.mtime));
+          }
+        }
+      }
+    }
+    hits.addAll(best);
+    Collections.sort(hits, BY_PATH);
+    return hits;
+  }
+
+  private static boolean matches(Entry entry, Query query, Pattern glob) {
+    if (query.type != null && query.type.equals(TYPE_DIR) != entry.directory) {
+      return false;
+    }
+    if (query.prefix != null
+            && !entry.name.regionMatches(!query.caseSensitive, 0, query.prefix, 0, query.prefix.length())) {
+      return false;
+    }
+    if (glob != null && !glob.matcher(entry.name).matches()) {
+      return false;
+    }
+    if ((query.minSize >= 0 && entry.size < query.minSize) || (query.maxSize >= 0 && entry.size > query.maxSize)) {
+      return false;
+    }
+    if (query.modifiedAfter >= 0 && (entry.mtime == UNKNOWN || entry.mtime < query.modifiedAfter)) {
+      return false;
+    }
+    return query.modifiedBefore < 0 || (entry.mtime != UNKNOWN && entry.mtime < query.modifiedBefore);
+  }
+
+  /**
+   * Mẫu tên kiểu shell: * là chuỗi bất kỳ, ? là một ký tự, còn lại khớp đúng từng ký tự.
+   */
+  static Pattern globPattern(String glob, boolean caseSensitive) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c != '*' && c != '?') {
+        literal.append(c);
+        continue;
+      }
+      if (literal.length() > 0) {
+        regex.append(Pattern.quote(literal.toString()));
+        literal.setLength(0);
+      }
+      regex.append(c == '*' ? ".*" : ".");
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString(),
+            Pattern.DOTALL | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+  }
+
+  synchronized Info info() {
+    Info info = new Info();
+    info.root = rootPath;
+    info.built = root != null;
+    info.updatedAt = updatedAt;
+    if (root == null) {
+      return info;
+    }
+    ArrayDeque<Entry> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      Entry dir = stack.pop();
+      if (dir.children == null) {
+        continue;
+      }
+      for (Entry entry : dir.children.values()) {
+        if (entry.directory) {
+          info.dirs++;
+          stack.push(entry);
+        } else {
+          info.files++;
+          info.bytes += entry.size;
+        }
+      }
+    }
+    return info;
+  }
+
+  /**
+   * Bỏ chỉ mục cả trong bộ nhớ lẫn file.
+   */
+  synchronized void delete() {
+    root = null;
+    updatedAt = 0;
+    file.delete();
+  }
+
+  private boolean isUnderRoot(String key) {
+    return key.equals(rootPath) || key.startsWith(rootPath.endsWith("/") ? rootPath : rootPath + "/");
+  }
+
+  /**
+   * @param deepest: không có 'key' thì trả về thư mục tổ tiên gần nhất đã có trong chỉ mục thay vì null.
+   */
+  private Entry find(String key, boolean deepest) {
+    if (root == null || !isUnderRoot(key)) {
+      return null;
+    }
+    Entry entry = root;
+    String rest = key.substring(rootPath.length());
+    for (String name : rest.split("/")) {
+      if (name.isEmpty()) {
+        continue;
+      }
+      Entry child = entry.children == null ? null : entry.children.get(name);
+      if (child == null) {
+        return deepest ? entry : null;
+      }
+      entry = child;
+    }
+    return entry;
+  }
+
+  /**
+   * Ghi ra file tạm rồi đổi tên để không bao giờ để lại chỉ mục ghi dở. Giữ khoá tới khi đổi tên xong
+   * để delete() chạy cùng lúc không bị file vừa ghi xong hồi sinh.
+   */
+  synchronized void save() throws IOException {
+    if (root == null) {
+      return;
+    }
+    File parentDir = file.getParentFile();
+    if (parentDir != null && !parentDir.exists()) {
+      parentDir.mkdirs();
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(rootPath);
+      out.writeLong(updatedAt);
+      write(out, root);
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("can not write remote index " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  // mỗi node: tên, loại, size, mtime; thư mục thêm mtime lúc LIST và số con (-1 nếu chưa LIST) rồi tới các con
+  private static void write(DataOutputStream out, Entry entry) throws IOException {
+    out.writeUTF(entry.name);
+    out.writeBoolean(entry.directory);
+    out.writeLong(entry.size);
+    out.writeLong(entry.mtime);
+    if (!entry.directory) {
+      return;
+    }
+    out.writeLong(entry.listedMtime);
+    out.writeInt(entry.children == null ? -1 : entry.children.size());
+    if (entry.children != null) {
+      for (Entry child : entry.children.values()) {
+        write(out, child);
+      }
+    }
+  }
+
+  private static Entry read(DataInputStream in, Entry parent) throws IOException {
+    String name = in.readUTF();
+    boolean directory = in.readBoolean();
+    Entry entry = new Entry(name, parent, directory);
+    entry.size = in.readLong();
+    entry.mtime = in.readLong();
+    if (!directory) {
+      return entry;
+    }
+    entry.listedMtime = in.readLong();
+    int count = in.readInt();
+    if (count >= 0) {
+      entry.children = new HashMap<>(count * 4 / 3 + 1);
+      for (int i = 0; i < count; i++) {
+        Entry child = read(in, entry);
+        entry.children.put(child.name, child);
+      }
+    }
+    return entry;
+  }
+}
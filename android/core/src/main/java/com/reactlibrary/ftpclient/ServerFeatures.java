@@ -0,0 +1,57 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Kết quả FEAT của server. Chỉ hỏi một lần cho mỗi pool rồi dùng chung cho mọi session,
+ * thay vì mỗi session mới lại gửi FEAT như FTPClient.hasFeature().
+ */
+class ServerFeatures {
+
+  // tên feature (in hoa) -> tham số, ví dụ "MLST" -> "type*;size*;modify*;", "REST" -> "STREAM"
+  private final Map<String, String> features;
+
+  private ServerFeatures(Map<String, String> features) {
+    this.features = features;
+  }
+
+  /**
+   * Gửi FEAT trên 'client'. Server không hỗ trợ FEAT được coi là không có feature nào.
+   */
+  static ServerFeatures query(FTPClient client) throws IOException {
+    Map<String, String> features = new HashMap<>();
+    if (FTPReply.isPositiveCompletion(client.sendCommand("FEAT"))) {
+      String[] lines = client.getReplyStrings();
+      // dòng đầu "211-Features:" và dòng cuối "211 End", các feature nằm giữa và bắt đầu bằng dấu cách
+      for (int i = 1; i < lines.length - 1; i++) {
+        String line = lines[i].trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        int space = line.indexOf(' ');
+        String name = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.US);
+        String value = space < 0 ? "" : line.substring(space + 1).trim();
+        features.put(name, value);
+      }
+    }
+    return new ServerFeatures(features);
+  }
+
+  boolean has(String feature) {
+    return features.containsKey(feature.toUpperCase(Locale.US));
+  }
+
+  /**
+   * Có feature và tham số chứa 'value' (ví dụ REST STREAM).
+   */
+  boolean has(String feature, String value) {
+    String values = features.get(feature.toUpperCase(Locale.US));
+    return values != null && values.toUpperCase(Locale.US).contains(value.toUpperCase(Locale.US));
+  }
+}
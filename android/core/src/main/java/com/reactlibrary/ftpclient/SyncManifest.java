@@ -0,0 +1,143 @@
+package com.reactlibrary.ftpclient;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trạng thái của lần sync trước cho một cặp thư mục local/remote: với mỗi file (đường dẫn tương đối),
+ * size + thời gian sửa đổi ở cả hai phía lúc đã khớp nhau. Lần sau chỉ cần so với các giá trị này để
+ * biết phía nào đã thay đổi, không phải so hai phía với nhau.
+ */
+class SyncManifest {
+
+  private static final String TAG = "RNFtpClient";
+  private static final int VERSION = 1;
+
+  static class Entry {
+    final SyncPlanner.Stamp local;
+    final SyncPlanner.Stamp remote;
+
+    Entry(SyncPlanner.Stamp local, SyncPlanner.Stamp remote) {
+      this.local = local;
+      this.remote = remote;
+    }
+  }
+
+  private final File file;
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  private SyncManifest(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Đọc manifest từ 'file'. File không có hoặc hỏng thì coi như chưa sync lần nào.
+   */
+  static SyncManifest load(File file) {
+    SyncManifest manifest = new SyncManifest(file);
+    if (!file.exists()) {
+      return manifest;
+    }
+    try {
+      JSONObject root = new JSONObject(readText(file));
+      if (root.optInt("version") != VERSION) {
+        return manifest;
+      }
+      JSONObject items = root.getJSONObject("entries");
+      Iterator<?> keys = items.keys();
+      while (keys.hasNext()) {
+        String path = (String) keys.next();
+        JSONObject item = items.getJSONObject(path);
+        manifest.entries.put(path, new Entry(
+                new SyncPlanner.Stamp(item.getLong("ls"), item.getLong("lm")),
+                new SyncPlanner.Stamp(item.getLong("rs"), item.getLong("rm"))));
+      }
+    } catch (IOException | JSONException e) {
+      FtpLog.d(TAG, "sync manifest is unreadable, starting over", e);
+      manifest.entries.clear();
+    }
+    return manifest;
+  }
+
+  Entry get(String path) {
+    return entries.get(path);
+  }
+
+  Set<String> paths() {
+    return entries.keySet();
+  }
+
+  void put(String path, SyncPlanner.Stamp local, SyncPlanner.Stamp remote) {
+    entries.put(path, new Entry(local, remote));
+  }
+
+  void remove(String path) {
+    entries.remove(path);
+  }
+
+  /**
+   * Ghi ra file tạm rồi đổi tên để không bao giờ để lại manifest ghi dở.
+   */
+  void save() throws IOException {
+    JSONObject root = new JSONObject();
+    JSONObject items = new JSONObject();
+    try {
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        JSONObject item = new JSONObject();
+        item.put("ls", entry.getValue().local.size);
+        item.put("lm", entry.getValue().local.mtime);
+        item.put("rs", entry.getValue().remote.size);
+        item.put("rm", entry.getValue().remote.mtime);
+        items.put(entry.getKey(), item);
+      }
+      root.put("version", VERSION);
+      root.put("entries", items);
+    } catch (JSONException e) {
+      throw new IOException(e.getMessage());
+    }
+    File parentDir = file.getParentFile();
+    if (parentDir != null && !parentDir.exists()) {
+      parentDir.mkdirs();
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    OutputStream out = new FileOutputStream(tmp);
+    try {
+      out.write(root.toString().getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("can not write sync manifest " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  private static String readText(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toString("UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.reactlibrary.ftpclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Lập kế hoạch sync: so trạng thái hiện tại của hai phía với manifest của lần sync trước
+ * để biết file nào cần upload, download, xoá hoặc đang bị sửa ở cả hai phía (conflict).
+ * Không làm I/O, việc so nội dung (hash) được giao cho Verifier.
+ */
+class SyncPlanner {
+
+  // độ lệch thời gian sửa đổi tối đa giữa hai phía của cùng một file khi không so được nội dung
+  static final long MTIME_TOLERANCE_MS = 60000;
+
+  enum Direction { UPLOAD, DOWNLOAD, BOTH }
+
+  /** Khi file bị sửa ở cả hai phía: lấy bản mới hơn, luôn lấy local, luôn lấy remote, hoặc bỏ qua. */
+  enum ConflictPolicy { NEWER, LOCAL, REMOTE, SKIP }
+
+  enum ActionType {
+    UPLOAD,
+    DOWNLOAD,
+    DELETE_REMOTE,
+    DELETE_LOCAL,
+    CONFLICT,   // bị sửa ở cả hai phía và ConflictPolicy.SKIP: chỉ báo lại
+    RECORD,     // hai phía đã giống nhau, chỉ cần ghi vào manifest
+    FORGET      // đã mất ở cả hai phía, bỏ khỏi manifest
+  }
+
+  /**
+   * Size + thời gian sửa đổi (ms) của một file ở một phía.
+   */
+  static class Stamp {
+    final long size;
+    final long mtime;
+
+    Stamp(long size, long mtime) {
+      this.size = size;
+      this.mtime = mtime;
+    }
+
+    boolean sameAs(Stamp other) {
+      return other != null && size == other.size && mtime == other.mtime;
+    }
+  }
+
+  static class Action {
+    final ActionType type;
+    final String path;
+    final Stamp local;
+    final Stamp remote;
+
+    Action(ActionType type, String path, Stamp local, Stamp remote) {
+      this.type = type;
+      this.path = path;
+      this.local = local;
+      this.remote = remote;
+    }
+  }
+
+  /**
+   * So nội dung của một file có cùng size ở hai phía khi chưa có manifest (ví dụ MD5 local và XMD5 trên server).
+   */
+  interface Verifier {
+    boolean sameContent(String path) throws IOException;
+  }
+
+  private final Direction direction;
+  private final ConflictPolicy conflictPolicy;
+  private final boolean propagateDeletes;
+  private final Verifier verifier;
+
+  SyncPlanner(Direction direction, ConflictPolicy conflictPolicy, boolean propagateDeletes, Verifier verifier) {
+    this.direction = direction;
+    this.conflictPolicy = conflictPolicy;
+    this.propagateDeletes = propagateDeletes;
+    this.verifier = verifier;
+  }
+
+  List<Action> plan(Map<String, Stamp> local, Map<String, Stamp> remote, SyncManifest manifest) throws IOException {
+    TreeSet<String> paths = new TreeSet<>(local.keySet());
+    paths.addAll(remote.keySet());
+    paths.addAll(manifest.paths());
+    List<Action> actions = new ArrayList<>();
+    for (String path : paths) {
+      Action action = decide(path, local.get(path), remote.get(path), manifest.get(path));
+      if (action != null) {
+        actions.add(action);
+      }
+    }
+    return actions;
+  }
+
+  private Action decide(String path, Stamp local, Stamp remote, SyncManifest.Entry known) throws IOException {
+    if (local == null && remote == null) {
+      return new Action(ActionType.FORGET, path, null, null);
+    }
+    boolean localChanged = known == null || !known.local.sameAs(local);
+    boolean remoteChanged = known == null || !known.remote.sameAs(remote);
+
+    if (local != null && remote != null) {
+      if (known != null && !localChanged && !remoteChanged) {
+        return null;
+      }
+      if (known == null || (localChanged && remoteChanged)) {
+        // chưa sync lần nào hoặc bị sửa ở cả hai phía
+        if (local.size == remote.size && (verifier != null ? verifier.sameContent(path) : sameTime(local, remote))) {
+          return new Action(ActionType.RECORD, path, local, remote);
+        }
+        return resolveConflict(path, local, remote);
+      }
+      if (localChanged) {
+        return direction == Direction.DOWNLOAD
+                ? new Action(ActionType.DOWNLOAD, path, local, remote)   // phía đích bị sửa, ghi đè lại theo nguồn
+                : new Action(ActionType.UPLOAD, path, local, remote);
+      }
+      return direction == Direction.UPLOAD
+              ? new Action(ActionType.UPLOAD, path, local, remote)
+              : new Action(ActionType.DOWNLOAD, path, local, remote);
+    }
+
+    if (local != null) {
+      // chỉ còn ở local
+      if (direction == Direction.DOWNLOAD) {
+        return propagateDeletes ? new Action(ActionType.DELETE_LOCAL, path, local, null) : null;
+      }
+      if (direction == Direction.BOTH && known != null && !localChanged) {
+        // đã từng sync và bị xoá trên server
+        return propagateDeletes ? new Action(ActionType.DELETE_LOCAL, path, local, null) : null;
+      }
+      return new Action(ActionType.UPLOAD, path, local, null);
+    }
+
+    // chỉ còn trên server
+    if (direction == Direction.UPLOAD) {
+      return propagateDeletes ? new Action(ActionType.DELETE_REMOTE, path, null, remote) : null;
+    }
+    if (direction == Direction.BOTH && known != null && !remoteChanged) {
+      // đã từng sync và bị xoá ở local
+      return propagateDeletes ? new Action(ActionType.DELETE_REMOTE, path, null, remote) : null;
+    }
+    return new Action(ActionType.DOWNLOAD, path, null, remote);
+  }
+
+  /**
+   * Không so được nội dung: cùng size chỉ được coi là giống nhau khi thời gian sửa đổi cũng khớp
+   * (LIST thường chỉ chính xác tới phút), không thì xử lý như conflict thay vì bỏ qua mãi về sau.
+   */
+  private static boolean sameTime(Stamp local, Stamp remote) {
+    return local.mtime > 0 && remote.mtime > 0 && Math.abs(local.mtime - remote.mtime) < MTIME_TOLERANCE_MS;
+  }
+
+  private Action resolveConflict(String path, Stamp local, Stamp remote) {
+    if (direction == Direction.UPLOAD) {
+      return new Action(ActionType.UPLOAD, path, local, remote);
+    }
+    if (direction == Direction.DOWNLOAD) {
+      return new Action(ActionType.DOWNLOAD, path, local, remote);
+    }
+    switch (conflictPolicy) {
+      case LOCAL:
+        return new Action(ActionType.UPLOAD, path, local, remote);
+      case REMOTE:
+        return new Action(ActionType.DOWNLOAD, path, local, remote);
+      case SKIP:
+        return new Action(ActionType.CONFLICT, path, local, remote);
+      case NEWER:
+      default:
+        return local.mtime >= remote.mtime
+                ? new Action(ActionType.UPLOAD, path, local, remote)
+                : new Action(ActionType.DOWNLOAD, path, local, remote);
+    }
+  }
+}
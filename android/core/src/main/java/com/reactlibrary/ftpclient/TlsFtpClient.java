@@ -0,0 +1,172 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPSClient;
+import org.apache.commons.net.io.SocketInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Locale;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * FTPS kiểu explicit (AUTH TLS, PBSZ 0, PROT P) có dùng lại TLS session:
+ * - data connection bắt tay bằng session của control connection (bắt tay rút gọn, không tính lại khoá;
+ *   server như vsftpd với require_ssl_reuse còn từ chối data connection không dùng lại session);
+ * - các session của cùng một pool dùng chung SSLContext nên control connection mới cũng bắt tay rút gọn.
+ * Thời gian mỗi lần bắt tay được ghi vào Metrics (HANDSHAKE_CONTROL/HANDSHAKE_DATA), kèm bộ đếm
+ * ".resumed"/".full" theo loại bắt tay.
+ */
+class TlsFtpClient extends FTPSClient implements ListStreamClient {
+
+  private static final String TAG = "RNFtpClient";
+  static final String HANDSHAKE_CONTROL = "tls.handshake.control";
+  static final String HANDSHAKE_DATA = "tls.handshake.data";
+  private static final String SUN_JSSE = "SunJSSE";
+
+  private final SSLContext context;
+  private final FtpConfig config;
+  private final Metrics metrics;
+  private boolean protectData = false;
+
+  TlsFtpClient(SSLContext context, FtpConfig config, Metrics metrics) {
+    super(false, context);
+    this.context = context;
+    this.config = config;
+    this.metrics = metrics;
+  }
+
+  /**
+   * SSLContext dùng chung cho mọi session của một pool. Có 'certificateSha256' thì chỉ tin đúng chứng chỉ
+   * đó (NAS thường dùng chứng chỉ tự ký), không thì kiểm tra theo kho chứng chỉ của hệ thống.
+   */
+  static SSLContext createContext(String certificateSha256) throws IOException {
+    try {
+      SSLContext context = SSLContext.getInstance("TLS");
+      TrustManager[] trust = certificateSha256 == null ? null : new TrustManager[]{new PinnedTrustManager(certificateSha256)};
+      context.init(null, trust, null);
+      return context;
+    } catch (GeneralSecurityException e) {
+      throw new IOException("can not create TLS context: " + e.getMessage());
+    }
+  }
+
+  /**
+   * PBSZ 0 + PROT P (PROT C nếu config.protectData là false), gọi sau khi login.
+   */
+  void protect() throws IOException {
+    execPBSZ(0);
+    execPROT(config.protectData ? "P" : "C");
+    // FTPSClient tạo SSLSocket cho data connection với khoá host:port của chính data connection nên
+    // không bao giờ tìm thấy session của control connection: để commons-net mở socket thường rồi tự
+    // bọc TLS trong _openDataConnection_
+    setSocketFactory(null);
+    protectData = config.protectData;
+  }
+
+  @Override
+  protected void sslNegotiation() throws IOException {
+    long start = System.nanoTime();
+    long startMillis = System.currentTimeMillis();
+    super.sslNegotiation();
+    SSLSession session = ((SSLSocket) _socket_).getSession();
+    record(HANDSHAKE_CONTROL, start, startMillis, session);
+    // chứng chỉ đã được ghim thì không cần khớp tên host (NAS thường được gọi bằng IP)
+    if (config.certificateSha256 == null
+            && !HttpsURLConnection.getDefaultHostnameVerifier().verify(config.host, session)) {
+      throw new SSLPeerUnverifiedException("server certificate does not match " + config.host);
+    }
+  }
+
+  @Override
+  protected Socket _openDataConnection_(String command, String arg) throws IOException {
+    Socket socket = super._openDataConnection_(command, arg);
+    if (socket == null || !protectData) {
+      return socket;
+    }
+    long start = System.nanoTime();
+    long startMillis = System.currentTimeMillis();
+    // host:port của control connection (giống lúc sslNegotiation) là khoá tìm session trong cache của SSLContext.
+    // Conscrypt (Android) lấy cả host lẫn port từ tham số của createSocket, SunJSSE lấy port từ socket bên dưới
+    SSLSession control = ((SSLSocket) _socket_).getSession();
+    if (SUN_JSSE.equals(context.getProvider().getName())) {
+      socket = new KeyedSocket(socket, control.getPeerPort());
+    }
+    SSLSocket sslSocket = (SSLSocket) context.getSocketFactory().createSocket(
+            socket, control.getPeerHost(), control.getPeerPort(), true);
+    try {
+      sslSocket.setUseClientMode(true);
+      sslSocket.startHandshake();
+    } catch (IOException e) {
+      try {
+        sslSocket.close();
+      } catch (IOException closeError) {
+        FtpLog.d(TAG, "close data socket error", closeError);
+      }
+      throw e;
+    }
+    record(HANDSHAKE_DATA, start, startMillis, sslSocket.getSession());
+    return sslSocket;
+  }
+
+  @Override
+  public InputStream openListStream(String path) throws IOException {
+    Socket socket = _openDataConnection_(FTPCmd.LIST, getListArguments(path));
+    return socket == null ? null : new SocketInputStream(socket, socket.getInputStream());
+  }
+
+  private void record(String name, long start, long startMillis, SSLSession session) {
+    metrics.recordNanosSince(name, start);
+    // session được dùng lại được tạo từ trước lúc bắt đầu bắt tay
+    metrics.count(name + (session.getCreationTime() < startMillis ? ".resumed" : ".full"));
+  }
+
+  /**
+   * Chỉ tin chứng chỉ server có SHA-256 đúng bằng giá trị đã ghim.
+   */
+  static class PinnedTrustManager implements X509TrustManager {
+    private final String sha256;
+
+    PinnedTrustManager(String sha256) {
+      this.sha256 = sha256.replace(":", "").replace(" ", "").toLowerCase(Locale.US);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      if (chain == null || chain.length == 0) {
+        throw new CertificateException("server sent no certificate");
+      }
+      String actual;
+      try {
+        actual = Checksum.toHex(MessageDigest.getInstance("SHA-256").digest(chain[0].getEncoded()));
+      } catch (GeneralSecurityException e) {
+        throw new CertificateException(e.getMessage());
+      }
+      if (!actual.equals(sha256)) {
+        throw new CertificateException("server certificate " + actual + " is not the pinned one");
+      }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      throw new CertificateException("client certificates are not checked");
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+      return new X509Certificate[0];
+    }
+  }
+}
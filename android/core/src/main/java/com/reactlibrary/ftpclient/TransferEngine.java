@@ -0,0 +1,190 @@
+package com.reactlibrary.ftpclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vòng lặp copy dùng chung cho upload/download: phía file local đọc/ghi qua FileChannel theo
+ * vị trí (positional), phía data connection là stream của FTPClient. Buffer lớn được lấy từ pool
+ * và dùng lại giữa các transfer để giảm rác cho GC trên máy yếu.
+ */
+class TransferEngine {
+
+  static final int MIN_BUFFER_SIZE = 64 * 1024;
+  static final int MAX_BUFFER_SIZE = 1024 * 1024;
+  static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+  private static final int MAX_POOLED_BUFFERS = 16;
+
+  /**
+   * Nhận số byte vừa được ghi xong, gọi sau mỗi chunk.
+   */
+  interface Progress {
+    void add(long bytes);
+  }
+
+  private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  private final Metrics metrics;
+  // giới hạn chung cho tất cả upload / tất cả download, mặc định không giới hạn
+  private final BandwidthLimiter.Bucket uploadLimit = new BandwidthLimiter.Bucket(BandwidthLimiter.UNLIMITED);
+  private final BandwidthLimiter.Bucket downloadLimit = new BandwidthLimiter.Bucket(BandwidthLimiter.UNLIMITED);
+  // tổng số byte đã truyền, cộng sau mỗi chunk để đo được tốc độ cả khi transfer chưa xong
+  private final AtomicLong uploadedBytes = new AtomicLong();
+  private final AtomicLong downloadedBytes = new AtomicLong();
+  private volatile int bufferSize;
+
+  TransferEngine(int bufferSize, Metrics metrics) {
+    this.metrics = metrics;
+    setBufferSize(bufferSize);
+  }
+
+  void setBufferSize(int bufferSize) {
+    this.bufferSize = Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, bufferSize));
+  }
+
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  BandwidthLimiter.Bucket getUploadLimit() {
+    return uploadLimit;
+  }
+
+  BandwidthLimiter.Bucket getDownloadLimit() {
+    return downloadLimit;
+  }
+
+  long getUploadedBytes() {
+    return uploadedBytes.get();
+  }
+
+  long getDownloadedBytes() {
+    return downloadedBytes.get();
+  }
+
+  /**
+   * Copy từ data stream vào file local bắt đầu tại 'position', tối đa 'limit' byte (-1 là tới hết
+   * stream). Dừng sớm khi thread bị interrupt. Tốc độ bị giới hạn bởi bucket download chung và bucket của 'task'.
+   * @return số byte đã copy.
+   */
+  long download(InputStream in, FileChannel out, long position, long limit,
+                TransferScheduler.Task task, Progress progress) throws IOException {
+    ByteBuffer buffer = acquire();
+    long start = System.nanoTime();
+    long copied = 0;
+    try {
+      byte[] array = buffer.array();
+      BandwidthLimiter.Bucket transferLimit = task == null ? null : task.bandwidth;
+      while ((limit < 0 || copied < limit) && !Thread.currentThread().isInterrupted()) {
+        if (task != null) {
+          task.checkpoint();
+        }
+        int max = BandwidthLimiter.chunkSize(downloadLimit, transferLimit, array.length);
+        if (limit >= 0) {
+          max = (int) Math.min(max, limit - copied);
+        }
+        int read = in.read(array, 0, max);
+        if (read == -1) {
+          break;
+        }
+        buffer.clear();
+        buffer.limit(read);
+        while (buffer.hasRemaining()) {
+          position += out.write(buffer, position);
+        }
+        copied += read;
+        downloadedBytes.addAndGet(read);
+        progress.add(read);
+        if (!throttle(downloadLimit, transferLimit, read)) {
+          break;
+        }
+      }
+      return copied;
+    } finally {
+      metrics.recordTransfer("download", copied, start);
+      release(buffer);
+    }
+  }
+
+  /**
+   * Copy file local từ 'position' tới hết file lên data stream. Dừng sớm khi thread bị interrupt.
+   * Tốc độ bị giới hạn bởi bucket upload chung và bucket của 'task'.
+   * @return số byte đã copy.
+   */
+  long upload(FileChannel in, long position, OutputStream out,
+              TransferScheduler.Task task, Progress progress) throws IOException {
+    ByteBuffer buffer = acquire();
+    long start = System.nanoTime();
+    long copied = 0;
+    try {
+      byte[] array = buffer.array();
+      BandwidthLimiter.Bucket transferLimit = task == null ? null : task.bandwidth;
+      while (!Thread.currentThread().isInterrupted()) {
+        if (task != null) {
+          task.checkpoint();
+        }
+        buffer.clear();
+        buffer.limit(BandwidthLimiter.chunkSize(uploadLimit, transferLimit, array.length));
+        int read = in.read(buffer, position);
+        if (read == -1) {
+          break;
+        }
+        out.write(array, 0, read);
+        position += read;
+        copied += read;
+        uploadedBytes.addAndGet(read);
+        progress.add(read);
+        if (!throttle(uploadLimit, transferLimit, read)) {
+          break;
+        }
+      }
+      return copied;
+    } finally {
+      metrics.recordTransfer("upload", copied, start);
+      release(buffer);
+    }
+  }
+
+  // false nếu bị interrupt (huỷ) trong lúc chờ
+  private boolean throttle(BandwidthLimiter.Bucket global, BandwidthLimiter.Bucket transfer, long bytes) {
+    try {
+      BandwidthLimiter.throttle(global, transfer, bytes);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  // Buffer dạng heap (có array()) vì data connection của commons-net là InputStream/OutputStream,
+  // direct buffer sẽ phải copy thêm một lần qua mảng tạm.
+  private ByteBuffer acquire() {
+    int size = bufferSize;
+    ByteBuffer buffer;
+    while ((buffer = buffers.poll()) != null) {
+      pooled.decrementAndGet();
+      if (buffer.capacity() == size) {
+        buffer.clear();
+        return buffer;
+      }
+    }
+    return ByteBuffer.allocate(size);
+  }
+
+  private void release(ByteBuffer buffer) {
+    if (buffer.capacity() != bufferSize) {
+      return;
+    }
+    if (pooled.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+      buffers.offer(buffer);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,406 @@
+package com.reactlibrary.ftpclient;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nhật ký các upload/download cần sống sót khi app bị kill: mỗi dòng của file là một bản ghi JSON
+ * chỉ ghi thêm vào cuối ("add" khi vào hàng đợi, "offset" khi đã truyền thêm, "end" khi xong/lỗi/huỷ).
+ * Bản ghi được gom lại và ghi + fsync theo lô trên thread riêng, offset chỉ ghi mỗi CHECKPOINT_MS.
+ * Lúc mở, file được đọc lại (dòng cuối ghi dở bị bỏ qua) và viết gọn thành các job còn dang dở;
+ * khi số dòng thừa quá nhiều thì cũng viết gọn như vậy.
+ */
+class TransferJournal {
+
+  private static final String TAG = "RNFtpClient";
+  static final String UPLOAD = "upload";
+  static final String DOWNLOAD = "download";
+  static final String END_DONE = "done";
+  static final String END_FAILED = "failed";
+  static final String END_CANCELLED = "cancelled";
+
+  // các bản ghi tới gần nhau (enqueue cả trăm file) được ghi chung một lần
+  static final long FLUSH_DELAY_MS = 50;
+  static final long CHECKPOINT_MS = 1000;
+  // viết gọn khi số dòng vượt cả hai ngưỡng
+  static final int COMPACT_MIN_LINES = 1000;
+  static final int COMPACT_RATIO = 4;
+
+  /**
+   * Offset đã truyền được của transfer 'token', -1 nếu transfer chưa chạy.
+   */
+  interface OffsetSource {
+    long committedOffset(String token);
+  }
+
+  static class Job {
+    final String token;
+    final String type;
+    final String localPath;
+    final String remotePath;
+    final String server;
+    final TransferOptions options;
+    long offset;
+
+    Job(String token, String type, String localPath, String remotePath, String server, TransferOptions options) {
+      this.token = token;
+      this.type = type;
+      this.localPath = localPath;
+      this.remotePath = remotePath;
+      this.server = server;
+      this.options = options;
+    }
+  }
+
+  private final File file;
+  private final OffsetSource offsets;
+  private final ScheduledExecutorService writer;
+  // giữ trong lúc ghi file để các lần ghi không chen nhau, fsync không chặn add()/end() của thread transfer
+  private final Object fileLock = new Object();
+  // guarded by this
+  private final Map<String, Job> jobs = new LinkedHashMap<>();
+  private final List<String> pendingLines = new ArrayList<>();
+  private ScheduledFuture<?> flushing;
+  private ScheduledFuture<?> checkpointing;
+  private int lines;
+
+  private TransferJournal(File file, OffsetSource offsets) {
+    this.file = file;
+    this.offsets = offsets;
+    this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RNFtpClient-journal");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Đọc lại journal ở 'file' (không có thì tạo mới) rồi viết gọn.
+   */
+  static TransferJournal open(File file, OffsetSource offsets) {
+    TransferJournal journal = new TransferJournal(file, offsets);
+    String content;
+    synchronized (journal) {
+      journal.load();
+      content = journal.snapshot();
+      journal.lines = journal.jobs.size();
+      journal.ensureCheckpointing();
+    }
+    try {
+      synchronized (journal.fileLock) {
+        journal.replace(content);
+      }
+    } catch (IOException e) {
+      FtpLog.d(TAG, "can not compact transfer journal", e);
+    }
+    return journal;
+  }
+
+  /**
+   * Khoá của server trong journal, không chứa mật khẩu.
+   */
+  static String serverOf(FtpConfig config) {
+    return config.username + "@" + config.host + ":" + config.port;
+  }
+
+  /**
+   * Các job chưa kết thúc, theo thứ tự vào hàng đợi.
+   */
+  synchronized List<Job> pending() {
+    return new ArrayList<>(jobs.values());
+  }
+
+  synchronized boolean contains(String token) {
+    return jobs.containsKey(token);
+  }
+
+  /**
+   * Ghi nhận job mới.
+   * @return false nếu đã có job cùng token (job được khôi phục và chạy lại).
+   */
+  synchronized boolean add(Job job) {
+    if (jobs.containsKey(job.token)) {
+      return false;
+    }
+    jobs.put(job.token, job);
+    try {
+      JSONObject record = new JSONObject();
+      record.put("op", "add");
+      record.put("token", job.token);
+      record.put("type", job.type);
+      record.put("local", job.localPath);
+      record.put("remote", job.remotePath);
+      record.put("server", job.server);
+      record.put("options", optionsToJson(job.options));
+      append(record);
+    } catch (JSONException e) {
+      FtpLog.d(TAG, "can not journal " + job.token, e);
+    }
+    ensureCheckpointing();
+    return true;
+  }
+
+  /**
+   * Job kết thúc với 'status' (END_DONE, END_FAILED, END_CANCELLED), sẽ không được khôi phục nữa.
+   */
+  synchronized void end(String token, String status) {
+    if (jobs.remove(token) == null) {
+      return;
+    }
+    try {
+      JSONObject record = new JSONObject();
+      record.put("op", "end");
+      record.put("token", token);
+      record.put("status", status);
+      append(record);
+    } catch (JSONException e) {
+      FtpLog.d(TAG, "can not journal end of " + token, e);
+    }
+  }
+
+  /**
+   * Ghi offset hiện tại của các job đang chạy.
+   */
+  synchronized void checkpoint() {
+    for (Job job : jobs.values()) {
+      long offset = offsets.committedOffset(job.token);
+      if (offset < 0 || offset == job.offset) {
+        continue;
+      }
+      job.offset = offset;
+      try {
+        JSONObject record = new JSONObject();
+        record.put("op", "offset");
+        record.put("token", job.token);
+        record.put("offset", offset);
+        append(record);
+      } catch (JSONException e) {
+        FtpLog.d(TAG, "can not journal offset of " + job.token, e);
+      }
+    }
+  }
+
+  /**
+   * Ghi các bản ghi đang chờ xuống file và fsync, viết gọn nếu file đã quá dài.
+   */
+  void flush() throws IOException {
+    synchronized (fileLock) {
+      String content;
+      boolean compacting;
+      synchronized (this) {
+        flushing = null;
+        if (pendingLines.isEmpty()) {
+          return;
+        }
+        compacting = lines + pendingLines.size() > Math.max(COMPACT_MIN_LINES, COMPACT_RATIO * jobs.size());
+        if (compacting) {
+          content = snapshot();
+          lines = jobs.size();
+        } else {
+          StringBuilder batch = new StringBuilder();
+          for (String line : pendingLines) {
+            batch.append(line).append('\n');
+          }
+          content = batch.toString();
+          lines += pendingLines.size();
+        }
+        pendingLines.clear();
+      }
+      if (compacting) {
+        replace(content);
+      } else {
+        write(file, content, true);
+      }
+    }
+  }
+
+  /**
+   * Ghi nốt các bản ghi đang chờ rồi dừng thread ghi.
+   */
+  void close() {
+    checkpoint();
+    try {
+      flush();
+    } catch (IOException e) {
+      FtpLog.d(TAG, "can not flush transfer journal", e);
+    }
+    writer.shutdownNow();
+  }
+
+  private void append(JSONObject record) {
+    pendingLines.add(record.toString());
+    if (flushing == null && !writer.isShutdown()) {
+      flushing = writer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            flush();
+          } catch (IOException e) {
+            FtpLog.d(TAG, "can not write transfer journal", e);
+          }
+        }
+      }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // chỉ đo offset khi còn job, thread ghi không phải thức dậy mỗi giây khi không có gì
+  private void ensureCheckpointing() {
+    if (jobs.isEmpty()) {
+      if (checkpointing != null) {
+        checkpointing.cancel(false);
+        checkpointing = null;
+      }
+      return;
+    }
+    if (checkpointing == null && !writer.isShutdown()) {
+      checkpointing = writer.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (TransferJournal.this) {
+            checkpoint();
+            ensureCheckpointing();
+          }
+        }
+      }, CHECKPOINT_MS, CHECKPOINT_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void load() {
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          lines++;
+          try {
+            replay(new JSONObject(line));
+          } catch (JSONException e) {
+            // dòng ghi dở khi app bị kill giữa chừng
+            FtpLog.d(TAG, "skip broken transfer journal line", e);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      FtpLog.d(TAG, "transfer journal is unreadable", e);
+    }
+  }
+
+  private void replay(JSONObject record) throws JSONException {
+    String op = record.getString("op");
+    String token = record.getString("token");
+    if ("add".equals(op)) {
+      Job job = new Job(token, record.getString("type"), record.getString("local"), record.getString("remote"),
+              record.getString("server"), optionsFromJson(record.getJSONObject("options")));
+      job.offset = record.optLong("offset", 0);
+      jobs.put(token, job);
+    } else if ("offset".equals(op)) {
+      Job job = jobs.get(token);
+      if (job != null) {
+        job.offset = record.getLong("offset");
+      }
+    } else if ("end".equals(op)) {
+      jobs.remove(token);
+    }
+  }
+
+  // nội dung journal khi viết gọn: mỗi job còn dang dở một dòng "add" kèm offset
+  private String snapshot() {
+    StringBuilder content = new StringBuilder();
+    try {
+      for (Job job : jobs.values()) {
+        JSONObject record = new JSONObject();
+        record.put("op", "add");
+        record.put("token", job.token);
+        record.put("type", job.type);
+        record.put("local", job.localPath);
+        record.put("remote", job.remotePath);
+        record.put("server", job.server);
+        record.put("options", optionsToJson(job.options));
+        record.put("offset", job.offset);
+        content.append(record.toString()).append('\n');
+      }
+    } catch (JSONException e) {
+      FtpLog.d(TAG, "can not compact transfer journal", e);
+    }
+    return content.toString();
+  }
+
+  // ghi ra file tạm rồi đổi tên để không bao giờ để lại journal viết gọn dở
+  private void replace(String content) throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    write(tmp, content, false);
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("can not write transfer journal " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  private static void write(File target, String content, boolean append) throws IOException {
+    File parentDir = target.getParentFile();
+    if (parentDir != null && !parentDir.exists()) {
+      parentDir.mkdirs();
+    }
+    FileOutputStream out = new FileOutputStream(target, append);
+    try {
+      out.write(content.getBytes("UTF-8"));
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+  }
+
+  static JSONObject optionsToJson(TransferOptions options) throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("priority", options.priority);
+    json.put("resume", options.resume);
+    json.put("retries", options.retries);
+    json.put("retryDelay", options.retryDelayMs);
+    json.put("segments", options.segments);
+    json.put("maxBytesPerSecond", options.maxBytesPerSecond);
+    json.put("compression", options.compression);
+    if (options.checksumAlgorithm != null) {
+      json.put("checksumAlgorithm", options.checksumAlgorithm);
+    }
+    return json;
+  }
+
+  static TransferOptions optionsFromJson(JSONObject json) {
+    TransferOptions options = new TransferOptions();
+    options.priority = json.optInt("priority", options.priority);
+    options.resume = json.optBoolean("resume", options.resume);
+    options.retries = json.optInt("retries", options.retries);
+    options.retryDelayMs = json.optLong("retryDelay", options.retryDelayMs);
+    options.segments = json.optInt("segments", options.segments);
+    options.maxBytesPerSecond = json.optLong("maxBytesPerSecond", options.maxBytesPerSecond);
+    options.compression = json.optString("compression", options.compression);
+    options.checksumAlgorithm = json.has("checksumAlgorithm") ? json.optString("checksumAlgorithm") : null;
+    options.persistent = true;
+    return options;
+  }
+}
@@ -0,0 +1,16 @@
+package com.reactlibrary.ftpclient;
+
+/**
+ * Tuỳ chọn cho từng upload/download, đọc từ tham số 'options' của enqueueUpload/enqueueDownload.
+ */
+class TransferOptions {
+  int priority = TransferScheduler.PRIORITY_NORMAL;
+  boolean resume = false;     // giữ phần đã truyền khi lỗi/huỷ, lần sau truyền tiếp từ offset
+  int retries = 0;            // số lần tự thử lại khi lỗi mạng
+  long retryDelayMs = 1000;   // thời gian chờ lần thử lại đầu tiên, nhân đôi sau mỗi lần
+  int segments = 1;           // số kết nối song song khi download
+  long maxBytesPerSecond = BandwidthLimiter.UNLIMITED;  // giới hạn tốc độ riêng của transfer
+  String compression = Compression.OFF;  // MODE Z: Compression.OFF / AUTO / ON
+  String checksumAlgorithm = null;  // Checksum.CRC32 / MD5 / SHA256 tính trong lúc truyền, null là không tính
+  boolean persistent = false; // ghi vào TransferJournal để chạy tiếp sau khi app bị kill
+}
@@ -0,0 +1,406 @@
+package com.reactlibrary.ftpclient;
+
+import java.io.Closeable;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi transfer có giới hạn số task chạy đồng thời (một "lane" cho upload, một cho download).
+ * Task vượt quá giới hạn sẽ chờ trong hàng đợi theo priority (cao chạy trước, cùng priority thì FIFO)
+ * thay vì bị từ chối.
+ */
+class TransferScheduler {
+  static final int PRIORITY_LOW = -10;
+  static final int PRIORITY_NORMAL = 0;
+  static final int PRIORITY_HIGH = 10;
+
+  enum State { QUEUED, RUNNING, PAUSED, FINISHED }
+
+  /**
+   * Một transfer trong lane. execute() chạy trên worker thread; vòng lặp copy nên gọi
+   * checkpoint() định kỳ để tôn trọng pause/cancel, data stream đang mở thì attach() để
+   * cancel() đóng được ngay cả khi thread đang block trên socket.
+   */
+  abstract static class Task {
+    final String token;
+    final TransferOptions options;
+    // giới hạn tốc độ riêng của transfer, đổi được lúc đang chạy qua setBandwidth()
+    final BandwidthLimiter.Bucket bandwidth;
+    private volatile int priority;
+    private long seq;
+    private long queuedAt;
+    private volatile State state = State.QUEUED;
+    private volatile boolean pauseRequested = false;
+    private volatile boolean cancelRequested = false;
+    private volatile Thread thread;
+    private volatile long cancelledAt;
+    private volatile TransferScheduler lane;
+    // data stream đang mở (download nhiều đoạn, batch có thể có nhiều cái cùng lúc)
+    private final Set<Closeable> streams = Collections.newSetFromMap(new ConcurrentHashMap<Closeable, Boolean>());
+    // chạy trên worker khi task kết thúc, guarded by this
+    private final List<Runnable> finishListeners = new ArrayList<>();
+    private boolean finished = false;
+
+    Task(String token, TransferOptions options) {
+      this.token = token;
+      this.options = options;
+      this.priority = options.priority;
+      this.bandwidth = new BandwidthLimiter.Bucket(options.maxBytesPerSecond);
+    }
+
+    /** Thực hiện transfer, tự resolve/reject promise. */
+    abstract void execute();
+
+    /** Task bị huỷ khi còn nằm trong hàng đợi, chưa chạy lần nào. */
+    abstract void onCancelledBeforeStart();
+
+    int getPriority() {
+      return priority;
+    }
+
+    State getState() {
+      return state;
+    }
+
+    /**
+     * Block worker thread khi task đang bị pause, thoát ngay nếu thread bị interrupt (cancel).
+     */
+    void checkpoint() {
+      if (!pauseRequested) {
+        return;
+      }
+      synchronized (this) {
+        state = State.PAUSED;
+        while (pauseRequested && !Thread.currentThread().isInterrupted()) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        state = State.RUNNING;
+      }
+    }
+
+    boolean isCancelled() {
+      return cancelRequested;
+    }
+
+    /**
+     * Báo một lần thử bị lỗi (kể cả lần sẽ được thử lại), ConcurrencyController dựa vào đó để giảm số slot.
+     */
+    void reportError(Exception e) {
+      TransferScheduler current = lane;
+      if (current == null) {
+        return;
+      }
+      current.errors.incrementAndGet();
+      if (e instanceof SocketTimeoutException || e.getCause() instanceof SocketTimeoutException) {
+        current.timeouts.incrementAndGet();
+      }
+    }
+
+    /**
+     * Đăng ký data stream của transfer, cancel() sẽ đóng nó để read/write đang block thoát ra ngay.
+     */
+    void attach(Closeable stream) {
+      streams.add(stream);
+      if (cancelRequested) {
+        FtpCore.closeQuietly(stream);
+      }
+    }
+
+    void detach(Closeable stream) {
+      streams.remove(stream);
+    }
+
+    private void closeStreams() {
+      for (Closeable stream : streams) {
+        FtpCore.closeQuietly(stream);
+      }
+    }
+
+    /**
+     * @return false nếu task đã kết thúc, khi đó 'listener' không được gọi.
+     */
+    private synchronized boolean whenFinished(Runnable listener) {
+      if (finished) {
+        return false;
+      }
+      finishListeners.add(listener);
+      return true;
+    }
+
+    private List<Runnable> markFinished() {
+      synchronized (this) {
+        finished = true;
+        return new ArrayList<>(finishListeners);
+      }
+    }
+
+    private synchronized void wakeUp() {
+      notifyAll();
+    }
+  }
+
+  private static final Comparator<Task> ORDER = new Comparator<Task>() {
+    @Override
+    public int compare(Task a, Task b) {
+      if (a.priority != b.priority) {
+        return a.priority > b.priority ? -1 : 1;
+      }
+      return a.seq < b.seq ? -1 : (a.seq == b.seq ? 0 : 1);
+    }
+  };
+
+  private final String name;
+  private final Metrics metrics;
+  private final ExecutorService workers;
+  private final ConcurrentHashMap<String, Task> tasks = new ConcurrentHashMap<>();
+  private final PriorityQueue<Task> pending = new PriorityQueue<>(16, ORDER);
+  private final List<Task> pausedPending = new ArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private int maxActive;
+  private int active = 0;
+
+  TransferScheduler(final String name, int maxActive, Metrics metrics) {
+    this.name = name;
+    this.metrics = metrics;
+    this.maxActive = maxActive;
+    this.workers = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        return new Thread(r, "RNFtpClient-" + name + "-" + count.incrementAndGet());
+      }
+    });
+  }
+
+  /**
+   * Đưa task vào hàng đợi. Trả về false nếu đã có task cùng token.
+   */
+  boolean submit(Task task) {
+    if (tasks.putIfAbsent(task.token, task) != null) {
+      return false;
+    }
+    task.lane = this;
+    synchronized (this) {
+      task.seq = sequence.incrementAndGet();
+      task.queuedAt = System.nanoTime();
+      pending.add(task);
+    }
+    dispatch();
+    return true;
+  }
+
+  boolean contains(String token) {
+    return tasks.containsKey(token);
+  }
+
+  Task get(String token) {
+    return tasks.get(token);
+  }
+
+  List<Task> snapshot() {
+    return new ArrayList<>(tasks.values());
+  }
+
+  /**
+   * Pause task: task đang chờ sẽ không được lấy ra chạy, task đang chạy sẽ dừng ở checkpoint().
+   */
+  boolean pause(String token) {
+    Task task = tasks.get(token);
+    if (task == null) {
+      return false;
+    }
+    synchronized (this) {
+      if (pending.remove(task)) {
+        task.state = State.PAUSED;
+        pausedPending.add(task);
+        return true;
+      }
+    }
+    task.pauseRequested = true;
+    return true;
+  }
+
+  boolean resume(String token) {
+    Task task = tasks.get(token);
+    if (task == null) {
+      return false;
+    }
+    boolean requeued;
+    synchronized (this) {
+      requeued = pausedPending.remove(task);
+      if (requeued) {
+        task.state = State.QUEUED;
+        task.queuedAt = System.nanoTime();
+        pending.add(task);
+      }
+    }
+    if (requeued) {
+      dispatch();
+    } else {
+      task.pauseRequested = false;
+      task.wakeUp();
+    }
+    return true;
+  }
+
+  /**
+   * Đổi giới hạn tốc độ (byte/s, 0 là không giới hạn) của task, có hiệu lực ngay cả khi đang chạy.
+   */
+  boolean setBandwidth(String token, long bytesPerSecond) {
+    Task task = tasks.get(token);
+    if (task == null) {
+      return false;
+    }
+    task.bandwidth.setRate(bytesPerSecond);
+    return true;
+  }
+
+  boolean reprioritize(String token, int priority) {
+    Task task = tasks.get(token);
+    if (task == null) {
+      return false;
+    }
+    synchronized (this) {
+      // PriorityQueue không tự sắp xếp lại khi phần tử thay đổi nên phải lấy ra rồi thêm lại
+      boolean queued = pending.remove(task);
+      task.priority = priority;
+      if (queued) {
+        pending.add(task);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Huỷ task mà không chờ. Task còn trong hàng đợi bị bỏ ra và báo huỷ luôn; task đang chạy bị
+   * interrupt và các data stream đã attach() bị đóng, phần dọn dẹp (ABOR, xoá file dở) chạy trên worker.
+   * 'onStopped' được gọi khi task đã dừng hẳn (ngay lập tức nếu task chưa chạy hoặc đã xong).
+   * @return false nếu không có task với 'token'.
+   */
+  boolean cancel(String token, Runnable onStopped) {
+    Task task = tasks.get(token);
+    if (task == null) {
+      return false;
+    }
+    boolean removed;
+    synchronized (this) {
+      removed = pending.remove(task) || pausedPending.remove(task);
+    }
+    if (removed) {
+      task.state = State.FINISHED;
+      tasks.remove(token, task);
+      task.onCancelledBeforeStart();
+      onStopped.run();
+      return true;
+    }
+    task.cancelledAt = System.nanoTime();
+    task.cancelRequested = true;
+    if (!task.whenFinished(onStopped)) {
+      onStopped.run();
+      return true;
+    }
+    // cùng khoá với lúc worker bỏ 'thread': interrupt không thể tới sau khi worker đã xoá cờ và chạy task khác
+    synchronized (task) {
+      Thread t = task.thread;
+      if (t != null) {
+        t.interrupt();
+      }
+    }
+    task.closeStreams();
+    task.wakeUp();
+    return true;
+  }
+
+  synchronized void setMaxActive(int maxActive) {
+    this.maxActive = Math.max(1, maxActive);
+    dispatchLocked();
+  }
+
+  synchronized int getMaxActive() {
+    return maxActive;
+  }
+
+  synchronized int getActive() {
+    return active;
+  }
+
+  synchronized int getQueued() {
+    return pending.size();
+  }
+
+  long getErrorCount() {
+    return errors.get();
+  }
+
+  long getTimeoutCount() {
+    return timeouts.get();
+  }
+
+  void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private synchronized void dispatch() {
+    dispatchLocked();
+  }
+
+  private void dispatchLocked() {
+    while (active < maxActive && !pending.isEmpty()) {
+      final Task task = pending.poll();
+      task.state = State.RUNNING;
+      metrics.recordNanosSince("queueWait." + name, task.queuedAt);
+      active++;
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          task.thread = Thread.currentThread();
+          try {
+            if (task.cancelRequested) {
+              task.onCancelledBeforeStart();
+            } else {
+              task.execute();
+            }
+          } finally {
+            synchronized (task) {
+              task.thread = null;
+            }
+            task.state = State.FINISHED;
+            tasks.remove(task.token, task);
+            if (task.cancelRequested) {
+              metrics.recordNanosSince("cancel." + name, task.cancelledAt);
+            }
+            // xoá cờ interrupt để worker thread có thể dùng lại cho task khác
+            Thread.interrupted();
+            for (Runnable listener : task.markFinished()) {
+              listener.run();
+            }
+            onTaskFinished();
+          }
+        }
+      });
+    }
+  }
+
+  private synchronized void onTaskFinished() {
+    active--;
+    dispatchLocked();
+  }
+}
@@ -0,0 +1,14 @@
+package com.reactlibrary.ftpclient;
+
+import java.io.IOException;
+
+/**
+ * Server trả về lỗi tạm thời (4xx) cho lệnh transfer, có thể thử lại.
+ */
+class TransientTransferException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  TransientTransferException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,347 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Duyệt cây thư mục trên server song song: một hàng đợi công việc (LIST một thư mục, hoặc việc
+ * khác mà Listener thêm vào cho thư mục đó) được nhiều worker xử lý, mỗi worker giữ một session
+ * riêng của pool. Thư mục chỉ "xong" khi mọi công việc của nó và của các thư mục con đã xong,
+ * lúc đó tổng của nhánh được cộng dồn lên thư mục cha (bottom-up).
+ */
+class TreeWalker {
+
+  private static final String TAG = "RNFtpClient";
+
+  static final int DEFAULT_PARALLELISM = 4;
+  static final int MAX_PARALLELISM = 8;
+
+  /**
+   * Một thư mục trong cây. Các tổng là của cả nhánh, chỉ đầy đủ sau khi thư mục đã xong.
+   */
+  static class Node {
+    final String path;
+    final Node parent;
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong files = new AtomicLong();
+    final AtomicLong dirs = new AtomicLong();
+    // số việc chưa xong: LIST của chính nó + mỗi thư mục con chưa xong + việc Listener thêm vào
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    Node(String path, Node parent) {
+      this.path = path;
+      this.parent = parent;
+    }
+  }
+
+  /**
+   * Một việc chạy trên session của worker.
+   */
+  interface Job {
+    void run(FTPClient client) throws IOException;
+  }
+
+  interface Listener {
+    /**
+     * Có thể trả về tổng đã biết của nhánh 'path' (ví dụ từ cache) để khỏi phải duyệt, null để duyệt.
+     */
+    Node lookup(String path, Node parent);
+
+    /** Đã LIST xong 'dir', có thể gọi walker.submit(dir, job) để thêm việc cho thư mục này. */
+    void onListed(TreeWalker walker, Node dir, FTPFile[] files) throws IOException;
+
+    /** 'dir' và toàn bộ nhánh bên dưới đã xong, chạy trên session của worker vừa xong việc cuối. */
+    void onCompleted(FTPClient client, Node dir) throws IOException;
+
+    /** Một việc của 'path' bị lỗi. Trả về true để bỏ qua và duyệt tiếp, false để dừng cả cây. */
+    boolean onFailure(String path, IOException e);
+  }
+
+  private static class Work {
+    final Node node;
+    final String path;
+    final Job job;
+
+    Work(Node node, String path, Job job) {
+      this.node = node;
+      this.path = path;
+      this.job = job;
+    }
+  }
+
+  private final FtpSessionPool pool;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final Listener listener;
+  private final LinkedBlockingQueue<Work> queue = new LinkedBlockingQueue<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicLong dirsScanned = new AtomicLong();
+  private final AtomicLong filesFound = new AtomicLong();
+  private final AtomicLong bytesFound = new AtomicLong();
+  private volatile boolean cancelled = false;
+  private volatile IOException failure;
+  private boolean useMlsd = false;
+
+  TreeWalker(FtpSessionPool pool, ExecutorService executor, int parallelism, Listener listener) {
+    this.pool = pool;
+    this.executor = executor;
+    this.parallelism = Math.max(1, Math.min(MAX_PARALLELISM, parallelism));
+    this.listener = listener;
+  }
+
+  /**
+   * Dùng MLSD thay cho LIST (server có MLST): thời gian sửa đổi chính xác tới giây, theo UTC.
+   */
+  void setUseMlsd(boolean useMlsd) {
+    this.useMlsd = useMlsd;
+  }
+
+  long getDirsScanned() {
+    return dirsScanned.get();
+  }
+
+  long getFilesFound() {
+    return filesFound.get();
+  }
+
+  long getBytesFound() {
+    return bytesFound.get();
+  }
+
+  void cancel() {
+    cancelled = true;
+  }
+
+  boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Duyệt cây từ 'rootPath' và chờ tới khi xong.
+   * @return node gốc với tổng của cả cây, null nếu bị huỷ.
+   */
+  Node walk(String rootPath) throws IOException, InterruptedException {
+    Node known = listener.lookup(rootPath, null);
+    if (known != null) {
+      return known;
+    }
+    Node root = new Node(rootPath, null);
+    return run(root, listJob(root));
+  }
+
+  /**
+   * Như walk(rootPath) nhưng việc đầu tiên là 'rootJob' thay cho LIST của 'root': người gọi tự quyết định
+   * thư mục nào cần LIST và thêm việc bằng submit(root, ...). Listener.lookup/onListed không được gọi.
+   * @return 'root' (không có tổng), null nếu bị huỷ.
+   */
+  Node walk(Node root, Job rootJob) throws IOException, InterruptedException {
+    return run(root, rootJob);
+  }
+
+  private Node run(Node root, Job rootJob) throws IOException, InterruptedException {
+    enqueue(new Work(root, root.path, rootJob));
+
+    List<Future<?>> workers = new ArrayList<>();
+    for (int i = 0; i < parallelism; i++) {
+      workers.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      }));
+    }
+    try {
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      cancelled = true;
+      for (Future<?> worker : workers) {
+        worker.cancel(true);
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      cancelled = true;
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return cancelled ? null : root;
+  }
+
+  /**
+   * Thêm một việc cho thư mục 'dir', thư mục chỉ xong sau khi việc này xong.
+   */
+  void submit(Node dir, String path, Job job) {
+    dir.pending.incrementAndGet();
+    enqueue(new Work(dir, path, job));
+  }
+
+  private void enqueue(Work work) {
+    outstanding.incrementAndGet();
+    queue.add(work);
+  }
+
+  private Job listJob(final Node dir) {
+    return new Job() {
+      @Override
+      public void run(FTPClient client) throws IOException {
+        FTPFile[] files = useMlsd ? client.mlistDir(dir.path) : client.listFiles(dir.path);
+        dirsScanned.incrementAndGet();
+        for (FTPFile file : files) {
+          if (file == null) {
+            continue;
+          }
+          String name = file.getName();
+          if (file.isDirectory()) {
+            if (name.equals(".") || name.equals("..") || isSelfOrParent(file)) {
+              continue;
+            }
+            String childPath = childPath(dir.path, name);
+            Node known = listener.lookup(childPath, dir);
+            if (known != null) {
+              addTotals(dir, known);
+              dir.dirs.incrementAndGet();
+              continue;
+            }
+            Node child = new Node(childPath, dir);
+            dir.pending.incrementAndGet();
+            enqueue(new Work(child, childPath, listJob(child)));
+          } else if (file.isFile()) {
+            dir.files.incrementAndGet();
+            dir.bytes.addAndGet(file.getSize());
+            filesFound.incrementAndGet();
+            bytesFound.addAndGet(file.getSize());
+          }
+        }
+        listener.onListed(TreeWalker.this, dir, files);
+      }
+    };
+  }
+
+  // MLSD có thể trả entry type=cdir/pdir cho chính thư mục và thư mục cha, với tên bất kỳ
+  static boolean isSelfOrParent(FTPFile file) {
+    String raw = file.getRawListing();
+    if (raw == null) {
+      return false;
+    }
+    raw = raw.toLowerCase(Locale.US);
+    return raw.startsWith("type=cdir;") || raw.startsWith("type=pdir;")
+            || raw.contains(";type=cdir;") || raw.contains(";type=pdir;");
+  }
+
+  static String childPath(String dir, String name) {
+    return dir.endsWith("/") ? dir + name : dir + "/" + name;
+  }
+
+  private void addTotals(Node into, Node from) {
+    into.bytes.addAndGet(from.bytes.get());
+    into.files.addAndGet(from.files.get());
+    into.dirs.addAndGet(from.dirs.get());
+  }
+
+  private void work() {
+    FTPClient client = null;
+    try {
+      while (!cancelled && !Thread.currentThread().isInterrupted()) {
+        Work work = queue.poll(50, TimeUnit.MILLISECONDS);
+        if (work == null) {
+          if (outstanding.get() == 0) {
+            return;
+          }
+          continue;
+        }
+        try {
+          if (client == null) {
+            client = pool.borrow();
+          }
+          client = runWork(client, work);
+        } finally {
+          outstanding.decrementAndGet();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      fail(e);
+    } finally {
+      if (client != null) {
+        if (cancelled) {
+          pool.invalidate(client);
+        } else {
+          pool.release(client);
+        }
+      }
+    }
+  }
+
+  /**
+   * Chạy 'work', session bị mất kết nối thì mở session khác và chạy lại một lần.
+   * @return session để dùng cho việc tiếp theo.
+   */
+  private FTPClient runWork(FTPClient client, Work work) throws IOException {
+    try {
+      try {
+        work.job.run(client);
+      } catch (FTPConnectionClosedException | SocketException e) {
+        FtpLog.d(TAG, "walker session lost, reconnecting", e);
+        pool.invalidate(client);
+        client = null;
+        client = pool.borrow();
+        work.job.run(client);
+      }
+    } catch (IOException e) {
+      if (!listener.onFailure(work.path, e)) {
+        fail(e);
+        return client;
+      }
+      if (client == null) {
+        client = pool.borrow();
+      }
+    }
+    complete(client, work.node);
+    return client;
+  }
+
+  private void complete(FTPClient client, Node node) throws IOException {
+    while (node != null && node.pending.decrementAndGet() == 0) {
+      try {
+        listener.onCompleted(client, node);
+      } catch (IOException e) {
+        if (!listener.onFailure(node.path, e)) {
+          fail(e);
+          return;
+        }
+      }
+      Node parent = node.parent;
+      if (parent != null) {
+        addTotals(parent, node);
+        parent.dirs.incrementAndGet();
+      }
+      node = parent;
+    }
+  }
+
+  private void fail(IOException e) {
+    if (failure == null) {
+      failure = e;
+    }
+    cancelled = true;
+  }
+}
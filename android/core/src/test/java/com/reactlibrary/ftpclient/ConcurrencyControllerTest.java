@@ -0,0 +1,86 @@
+package com.reactlibrary.ftpclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConcurrencyControllerTest {
+
+  private Metrics metrics;
+  private TransferScheduler lane;
+  private ConcurrencyController controller;
+
+  @Before
+  public void setUp() {
+    metrics = new Metrics(snapshot -> { });
+    lane = new TransferScheduler("upload", ConcurrencyController.DEFAULT_INITIAL, metrics);
+    controller = new ConcurrencyController("upload", lane, metrics, () -> 0, null);
+  }
+
+  @After
+  public void tearDown() {
+    controller.shutdown();
+    lane.shutdown();
+    metrics.shutdown();
+  }
+
+  @Test
+  public void growsWhileThroughputGrowsThenStepsBackOnPlateau() {
+    // lane đầy và còn task chờ, mỗi slot thêm 1 MB/s cho tới 5 slot
+    assertEquals(5, controller.decide(4e6, 10, 0, 0, 4, 20).to);
+    assertEquals(6, controller.decide(5e6, 10, 0, 0, 5, 20).to);
+    double throughput = 5e6;
+    ConcurrencyController.Decision plateau = controller.decide(throughput + 1e4, 10, 0, 0, 6, 20);
+    assertEquals(ConcurrencyController.REASON_PLATEAU, plateau.reason);
+    assertEquals(5, lane.getMaxActive());
+
+    // giữ nguyên một lúc trước khi thử lại
+    for (int i = 0; i < ConcurrencyController.HOLD_TICKS; i++) {
+      assertNull(controller.decide(throughput, 10, 0, 0, 5, 20));
+    }
+    assertEquals(ConcurrencyController.REASON_INCREASE, controller.decide(throughput, 10, 0, 0, 5, 20).reason);
+  }
+
+  @Test
+  public void doesNotGrowWithoutQueuedTasks() {
+    assertNull(controller.decide(1e6, 10, 0, 0, 2, 0));
+    assertNull(controller.decide(1e6, 10, 0, 0, 4, 0));
+    assertEquals(4, lane.getMaxActive());
+  }
+
+  @Test
+  public void backsOffMultiplicativelyOnErrorsAndRttSpike() {
+    ConcurrencyController.Options options = controller.getOptions();
+    options.max = 10;
+    controller.setOptions(options);
+    for (int level = 4; level < 10; level++) {
+      controller.decide(level * 1e6, 10, 0, 0, level, 20);
+    }
+    assertEquals(10, lane.getMaxActive());
+
+    assertEquals(ConcurrencyController.REASON_TIMEOUT, controller.decide(5e6, 10, 1, 1, 10, 20).reason);
+    assertEquals(7, lane.getMaxActive());
+    // RTT nền 10 ms, 200 ms là hàng đợi đã đầy
+    assertEquals(ConcurrencyController.REASON_RTT, controller.decide(5e6, 200, 0, 0, 7, 20).reason);
+    assertEquals(4, lane.getMaxActive());
+    // không xuống dưới min
+    controller.decide(5e6, 10, 3, 0, 4, 20);
+    controller.decide(5e6, 10, 3, 0, 2, 20);
+    controller.decide(5e6, 10, 3, 0, 1, 20);
+    assertEquals(1, lane.getMaxActive());
+    assertEquals(Long.valueOf(1), metrics.snapshot().counters.get("concurrency.upload.timeout"));
+  }
+
+  @Test
+  public void fixedModeUsesMax() {
+    ConcurrencyController.Options options = controller.getOptions();
+    options.adaptive = false;
+    options.max = 2;
+    controller.setOptions(options);
+    assertEquals(2, lane.getMaxActive());
+    assertEquals(ConcurrencyController.REASON_CONFIG, controller.status().decisions.get(0).reason);
+  }
+}
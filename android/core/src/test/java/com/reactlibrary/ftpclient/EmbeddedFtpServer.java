@@ -0,0 +1,216 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.ssl.SslConfigurationFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * FTP server chạy trong cùng process (Apache MINA FtpServer) trên một thư mục tạm, dùng cho
+ * integration test và benchmark. Dữ liệu mẫu được ghi thẳng vào thư mục gốc của server.
+ */
+class EmbeddedFtpServer implements Closeable {
+
+  static final String USERNAME = "rnftp";
+  static final String PASSWORD = "rnftp";
+  // user mà server chỉ gửi SLOW_DOWNLOAD_RATE byte/s, để client bị block trên socket như mạng kẹt
+  static final String SLOW_USERNAME = "slow";
+  static final int SLOW_DOWNLOAD_RATE = 1024;
+  // chứng chỉ tự ký cho CN/SAN 127.0.0.1 trong src/test/resources, dùng cho startTls()
+  static final String KEYSTORE = "ftps-server.p12";
+  static final String KEYSTORE_PASSWORD = "rnftp-test";
+
+  final File root;
+  final int port;
+  private final FtpServer server;
+
+  private EmbeddedFtpServer(File root, int port, FtpServer server) {
+    this.root = root;
+    this.port = port;
+    this.server = server;
+  }
+
+  static EmbeddedFtpServer start() throws IOException, FtpException {
+    return start(null);
+  }
+
+  /**
+   * Server nhận AUTH TLS (explicit FTPS) với chứng chỉ KEYSTORE, vẫn cho phép client không dùng TLS.
+   */
+  static EmbeddedFtpServer startTls() throws IOException, FtpException {
+    return start(keystore());
+  }
+
+  private static EmbeddedFtpServer start(File keystore) throws IOException, FtpException {
+    File root = Files.createTempDirectory("rnftp-server").toFile();
+    int port = freePort();
+
+    FtpServerFactory serverFactory = new FtpServerFactory();
+    ListenerFactory listenerFactory = new ListenerFactory();
+    listenerFactory.setPort(port);
+    if (keystore != null) {
+      SslConfigurationFactory ssl = new SslConfigurationFactory();
+      ssl.setKeystoreFile(keystore);
+      ssl.setKeystoreType("PKCS12");
+      ssl.setKeystorePassword(KEYSTORE_PASSWORD);
+      ssl.setKeyPassword(KEYSTORE_PASSWORD);
+      listenerFactory.setSslConfiguration(ssl.createSslConfiguration());
+      listenerFactory.setImplicitSsl(false);
+    }
+    serverFactory.addListener("default", listenerFactory.createListener());
+    ConnectionConfigFactory connectionConfig = new ConnectionConfigFactory();
+    connectionConfig.setMaxLogins(200);
+    connectionConfig.setMaxThreads(0);
+    serverFactory.setConnectionConfig(connectionConfig.createConnectionConfig());
+
+    serverFactory.getUserManager().save(user(USERNAME, root, 0));
+    serverFactory.getUserManager().save(user(SLOW_USERNAME, root, SLOW_DOWNLOAD_RATE));
+
+    FtpServer server = serverFactory.createServer();
+    server.start();
+    return new EmbeddedFtpServer(root, port, server);
+  }
+
+  private static BaseUser user(String name, File root, int maxDownloadRate) {
+    BaseUser user = new BaseUser();
+    user.setName(name);
+    user.setPassword(PASSWORD);
+    user.setHomeDirectory(root.getAbsolutePath());
+    List<Authority> authorities = new ArrayList<>();
+    authorities.add(new WritePermission());
+    authorities.add(new ConcurrentLoginPermission(0, 0));
+    authorities.add(new TransferRatePermission(maxDownloadRate, 0));
+    user.setAuthorities(authorities);
+    return user;
+  }
+
+  /**
+   * MINA cần đường dẫn file nên chép keystore từ classpath ra file tạm.
+   */
+  private static File keystore() throws IOException {
+    File file = File.createTempFile("rnftp-server", ".p12");
+    file.deleteOnExit();
+    InputStream in = EmbeddedFtpServer.class.getClassLoader().getResourceAsStream(KEYSTORE);
+    if (in == null) {
+      throw new IOException("missing test resource " + KEYSTORE);
+    }
+    try {
+      Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      in.close();
+    }
+    return file;
+  }
+
+  private static int freePort() throws IOException {
+    ServerSocket socket = new ServerSocket(0);
+    try {
+      return socket.getLocalPort();
+    } finally {
+      socket.close();
+    }
+  }
+
+  FtpConfig config() {
+    return new FtpConfig("127.0.0.1", port, USERNAME, PASSWORD);
+  }
+
+  /**
+   * Config FTPS (PROT P) chỉ tin chứng chỉ có SHA-256 là 'certificateSha256'.
+   */
+  FtpConfig tlsConfig(String certificateSha256) {
+    return new FtpConfig("127.0.0.1", port, USERNAME, PASSWORD, true, true, certificateSha256);
+  }
+
+  FtpConfig slowConfig() {
+    return new FtpConfig("127.0.0.1", port, SLOW_USERNAME, PASSWORD);
+  }
+
+  File file(String remotePath) {
+    return new File(root, remotePath);
+  }
+
+  /**
+   * Ghi 'size' byte ngẫu nhiên vào 'remotePath' trên server.
+   */
+  File createFile(String remotePath, long size) throws IOException {
+    File file = file(remotePath);
+    file.getParentFile().mkdirs();
+    writeRandom(file, size, remotePath.hashCode());
+    return file;
+  }
+
+  /**
+   * Cây mẫu dưới 'remotePath': 'fanout' thư mục con mỗi tầng, sâu 'depth' tầng, mỗi thư mục
+   * 'filesPerDir' file 'fileSize' byte.
+   * @return tổng số byte của cây.
+   */
+  long createTree(String remotePath, int depth, int fanout, int filesPerDir, int fileSize) throws IOException {
+    File dir = file(remotePath);
+    dir.mkdirs();
+    long bytes = 0;
+    for (int i = 0; i < filesPerDir; i++) {
+      writeRandom(new File(dir, "file-" + i + ".bin"), fileSize, i);
+      bytes += fileSize;
+    }
+    if (depth > 0) {
+      for (int i = 0; i < fanout; i++) {
+        bytes += createTree(remotePath + "/dir-" + i, depth - 1, fanout, filesPerDir, fileSize);
+      }
+    }
+    return bytes;
+  }
+
+  static void writeRandom(File file, long size, long seed) throws IOException {
+    Random random = new Random(seed);
+    byte[] buffer = new byte[64 * 1024];
+    OutputStream out = new FileOutputStream(file);
+    try {
+      long left = size;
+      while (left > 0) {
+        random.nextBytes(buffer);
+        int count = (int) Math.min(buffer.length, left);
+        out.write(buffer, 0, count);
+        left -= count;
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
+  @Override
+  public void close() {
+    server.stop();
+    deleteRecursively(root);
+  }
+}
@@ -0,0 +1,352 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FtpCoreIntegrationTest {
+
+  @Rule
+  public TemporaryFolder local = new TemporaryFolder();
+
+  private EmbeddedFtpServer server;
+  private ExecutorService executor;
+  private Metrics metrics;
+  private FtpCore core;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EmbeddedFtpServer.start();
+    executor = Executors.newSingleThreadExecutor();
+    metrics = new Metrics(snapshot -> { });
+    core = new FtpCore(metrics, executor);
+    core.setup(server.config());
+  }
+
+  @After
+  public void tearDown() {
+    core.shutdown();
+    metrics.shutdown();
+    executor.shutdownNow();
+    server.close();
+  }
+
+  @Test
+  public void uploadThenDownloadRoundTrips() throws Exception {
+    File source = local.newFile("source.bin");
+    EmbeddedFtpServer.writeRandom(source, 3 * 1024 * 1024 + 17, 1);
+
+    core.upload(source, "/round-trip.bin");
+    assertArrayEquals(Files.readAllBytes(source.toPath()),
+            Files.readAllBytes(server.file("round-trip.bin").toPath()));
+
+    File target = new File(local.getRoot(), "target.bin");
+    core.download("/round-trip.bin", target);
+    assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void uploadRespectsGlobalBandwidthLimit() throws Exception {
+    File source = local.newFile("throttled.bin");
+    EmbeddedFtpServer.writeRandom(source, 512 * 1024, 4);
+
+    core.getTransferEngine().getUploadLimit().setRate(256 * 1024);
+    long start = System.nanoTime();
+    core.upload(source, "/throttled.bin");
+    long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+    // 512 KB ở 256 KB/s: khoảng 2 giây
+    assertTrue("upload took " + elapsedMs + " ms", elapsedMs >= 1500);
+    assertEquals(512 * 1024, server.file("throttled.bin").length());
+  }
+
+  @Test
+  public void compressedTransfersRoundTripAndSkipIncompressibleFiles() throws Exception {
+    File text = local.newFile("log.txt");
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      content.append("line ").append(i).append(": nothing happened\n");
+    }
+    Files.write(text.toPath(), content.toString().getBytes("UTF-8"));
+
+    core.upload(text, "/log.txt", Compression.AUTO, null);
+    assertArrayEquals(Files.readAllBytes(text.toPath()), Files.readAllBytes(server.file("log.txt").toPath()));
+    File target = new File(local.getRoot(), "log-download.txt");
+    core.download("/log.txt", target, Compression.AUTO, null);
+    assertArrayEquals(Files.readAllBytes(text.toPath()), Files.readAllBytes(target.toPath()));
+
+    Metrics.Snapshot snapshot = metrics.snapshot();
+    assertEquals(Long.valueOf(1), snapshot.counters.get("upload.compressedTransfers"));
+    assertEquals(Long.valueOf(1), snapshot.counters.get("download.compressedTransfers"));
+    assertTrue(snapshot.counters.get("upload.wireBytes") < text.length() / 4);
+
+    // dữ liệu ngẫu nhiên không nén được, AUTO gửi bình thường
+    File random = local.newFile("random.bin");
+    EmbeddedFtpServer.writeRandom(random, 256 * 1024, 5);
+    core.upload(random, "/random.bin", Compression.AUTO, null);
+    assertArrayEquals(Files.readAllBytes(random.toPath()), Files.readAllBytes(server.file("random.bin").toPath()));
+    assertEquals(Long.valueOf(1), metrics.snapshot().counters.get("upload.compressedTransfers"));
+
+    // session đã về MODE S, transfer thường sau đó vẫn đúng
+    core.download("/random.bin", target);
+    assertArrayEquals(Files.readAllBytes(random.toPath()), Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void checksumIsComputedInlineAndVerifiedWithServer() throws Exception {
+    File source = local.newFile("checked.bin");
+    EmbeddedFtpServer.writeRandom(source, 1024 * 1024 + 3, 6);
+    String md5 = Checksum.toHex(MessageDigest.getInstance("MD5").digest(Files.readAllBytes(source.toPath())));
+
+    // server nhúng hỗ trợ lệnh MD5 nên so được
+    Checksum upload = Checksum.create(Checksum.MD5);
+    core.upload(source, "/checked.bin", Compression.OFF, upload);
+    assertEquals(md5, upload.hex());
+    assertEquals(Boolean.TRUE, upload.isVerified());
+
+    Checksum download = Checksum.create(Checksum.MD5);
+    core.download("/checked.bin", new File(local.getRoot(), "checked-download.bin"), Compression.AUTO, download);
+    assertEquals(md5, download.hex());
+    assertEquals(Boolean.TRUE, download.isVerified());
+
+    // không có XCRC: vẫn tính được nhưng không so được
+    Checksum crc = Checksum.create(Checksum.CRC32);
+    core.upload(source, "/checked.bin", Compression.OFF, crc);
+    CRC32 expected = new CRC32();
+    expected.update(Files.readAllBytes(source.toPath()));
+    assertEquals(String.format("%08x", expected.getValue()), crc.hex());
+    assertNull(crc.isVerified());
+  }
+
+  @Test
+  public void cancelUnblocksStalledDownloadWithoutWaitingForServer() throws Exception {
+    server.createFile("big.bin", 8 * 1024 * 1024);
+    // server gửi rất chậm: worker nằm trong read() của socket, interrupt không làm nó thoát ra
+    core.setup(server.slowConfig());
+    final File target = new File(local.getRoot(), "big.bin");
+    final AtomicReference<Object> result = new AtomicReference<>();
+    final CountDownLatch started = new CountDownLatch(1);
+    TransferOptions options = new TransferOptions();
+
+    TransferScheduler lane = new TransferScheduler("download", 1, metrics);
+    lane.submit(new TransferScheduler.Task("big", options) {
+      @Override
+      void execute() {
+        try {
+          FtpSessionPool pool = core.getPool();
+          FTPClient client = pool.borrow();
+          boolean finished = core.retrieve(pool, client, this, "/big.bin", target, 0, Compression.OFF, null,
+                  bytes -> started.countDown());
+          FtpCore.release(pool, client, finished);
+          result.set(finished);
+        } catch (IOException e) {
+          result.set(e);
+        }
+      }
+
+      @Override
+      void onCancelledBeforeStart() {
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    Thread.sleep(200);
+
+    CountDownLatch stopped = new CountDownLatch(1);
+    long start = System.nanoTime();
+    assertTrue(lane.cancel("big", stopped::countDown));
+    assertTrue(stopped.await(2, TimeUnit.SECONDS));
+    long elapsedMs = (System.nanoTime() - start) / 1000000;
+    lane.shutdown();
+
+    assertTrue("cancel took " + elapsedMs + " ms", elapsedMs < 1000);
+    assertEquals(Boolean.FALSE, result.get());
+    assertTrue(target.length() < 8 * 1024 * 1024);
+    assertTrue(histogramCount(metrics.snapshot(), "cancel.download") >= 1);
+    assertFalse(lane.cancel("big", stopped::countDown));
+  }
+
+  @Test
+  public void readRangeStopsEarlyAndKeepsSession() throws Exception {
+    File source = local.newFile("range.bin");
+    EmbeddedFtpServer.writeRandom(source, 4 * 1024 * 1024, 7);
+    core.upload(source, "/range.bin");
+    byte[] content = Files.readAllBytes(source.toPath());
+
+    byte[] middle = core.readRange("/range.bin", 1000000, 5000);
+    assertArrayEquals(Arrays.copyOfRange(content, 1000000, 1005000), middle);
+    assertEquals(Long.valueOf(1), metrics.snapshot().counters.get("range.aborts"));
+    // sau ABOR session vẫn đồng bộ và được dùng lại cho lệnh tiếp theo
+    assertArrayEquals(Arrays.copyOfRange(content, 0, 10), core.readRange("/range.bin", 0, 10));
+
+    byte[] tail = core.tail("/range.bin", 3000);
+    assertArrayEquals(Arrays.copyOfRange(content, content.length - 3000, content.length), tail);
+    // đoạn cuối file không cần ABOR
+    assertEquals(Long.valueOf(2), metrics.snapshot().counters.get("range.aborts"));
+
+    File target = new File(local.getRoot(), "range-part.bin");
+    assertEquals(2 * 1024 * 1024, core.readRange("/range.bin", 123, 2 * 1024 * 1024, target));
+    assertArrayEquals(Arrays.copyOfRange(content, 123, 123 + 2 * 1024 * 1024), Files.readAllBytes(target.toPath()));
+    assertEquals(1, histogramCount(metrics.snapshot(), "connect"));
+  }
+
+  @Test
+  public void smallRangesAreCachedUntilFileChanges() throws Exception {
+    File source = local.newFile("cached.bin");
+    EmbeddedFtpServer.writeRandom(source, 100000, 8);
+    core.upload(source, "/cached.bin");
+    byte[] content = Files.readAllBytes(source.toPath());
+
+    core.readRange("/cached.bin", 1000, 4000);
+    // đoạn nằm trong đoạn đã đọc lấy từ cache
+    assertArrayEquals(Arrays.copyOfRange(content, 2000, 3000), core.readRange("/cached.bin", 2000, 1000));
+    assertEquals(Long.valueOf(1), metrics.snapshot().counters.get("range.cacheHits"));
+
+    EmbeddedFtpServer.writeRandom(source, 100000, 9);
+    core.upload(source, "/cached.bin");
+    byte[] changed = Files.readAllBytes(source.toPath());
+    assertArrayEquals(Arrays.copyOfRange(changed, 2000, 3000), core.readRange("/cached.bin", 2000, 1000));
+    assertEquals(Long.valueOf(1), metrics.snapshot().counters.get("range.cacheHits"));
+  }
+
+  @Test
+  public void listPagedStreamsPagesAndSharesListingCache() throws Exception {
+    server.createTree("paged", 0, 0, 450, 10);
+    final List<Integer> cursors = new ArrayList<>();
+    final List<Integer> sizes = new ArrayList<>();
+    final List<Boolean> dones = new ArrayList<>();
+    FtpCore.ListPageListener listener = (entries, cursor, done) -> {
+      cursors.add(cursor);
+      sizes.add(entries.length);
+      dones.add(done);
+      return true;
+    };
+    assertEquals(450, core.listPaged("/paged", 200, listener));
+    assertEquals(Arrays.asList(0, 200, 400), cursors);
+    assertEquals(Arrays.asList(200, 200, 50), sizes);
+    assertEquals(Arrays.asList(false, false, true), dones);
+
+    // lần sau và list() lấy từ cache, không LIST lại
+    cursors.clear();
+    assertEquals(450, core.listPaged("/paged", 300, listener));
+    assertEquals(Arrays.asList(0, 300), cursors);
+    assertEquals(450, core.list("/paged").length);
+    assertEquals(1, histogramCount(metrics.snapshot(), "command.LIST"));
+
+    // dừng sau trang đầu: LIST bị ABOR, session vẫn được dùng lại
+    core.clearListCache();
+    assertEquals(-1, core.listPaged("/paged", 100, (entries, cursor, done) -> false));
+    assertEquals(450, core.list("/paged").length);
+    assertEquals(1, histogramCount(metrics.snapshot(), "connect"));
+  }
+
+  @Test
+  public void listIsInvalidatedByUpload() throws Exception {
+    server.createFile("listing/a.bin", 10);
+    assertEquals(Arrays.asList("a.bin"), names(core.list("/listing")));
+
+    File source = local.newFile("b.bin");
+    EmbeddedFtpServer.writeRandom(source, 20, 2);
+    core.upload(source, "/listing/b.bin");
+    assertEquals(Arrays.asList("a.bin", "b.bin"), names(core.list("/listing")));
+  }
+
+  @Test
+  public void statFindsFilesAndDirectories() throws Exception {
+    server.createFile("stat/file.bin", 1234);
+
+    FTPFile file = core.stat("/stat/file.bin");
+    assertNotNull(file);
+    assertTrue(file.isFile());
+    assertEquals(1234, file.getSize());
+    assertEquals("file.bin", file.getName());
+
+    FTPFile dir = core.stat("/stat");
+    assertNotNull(dir);
+    assertTrue(dir.isDirectory());
+    assertEquals("stat", dir.getName());
+
+    assertNull(core.stat("/stat/missing.bin"));
+  }
+
+  @Test
+  public void scanFolderSumsWholeTree() throws Exception {
+    long bytes = server.createTree("tree", 2, 3, 4, 100);
+
+    TreeWalker.Node root = core.scanFolder("/tree", 4, false, null);
+    assertEquals(bytes, root.bytes.get());
+    // 3 + 9 thư mục con, mỗi thư mục (kể cả gốc) 4 file
+    assertEquals(12, root.dirs.get());
+    assertEquals(13 * 4, root.files.get());
+  }
+
+  @Test
+  public void removeTreeDeletesEverything() throws Exception {
+    server.createTree("doomed", 2, 3, 40, 10);
+
+    FtpCore.RemoveReport report = core.removeTree("/doomed", 4, null);
+    assertNotNull(report);
+    assertEquals(0, report.failureCount.get());
+    assertEquals(13 * 40, report.deletedFiles.get());
+    assertEquals(13, report.deletedDirs.get());
+    assertFalse(server.file("doomed").exists());
+  }
+
+  @Test
+  public void metricsRecordSessionsCommandsAndTransfers() throws Exception {
+    File source = local.newFile("metrics.bin");
+    EmbeddedFtpServer.writeRandom(source, 4096, 3);
+    core.upload(source, "/metrics.bin");
+    core.list("/");
+
+    Metrics.Snapshot snapshot = metrics.snapshot();
+    assertTrue(histogramCount(snapshot, "connect") >= 1);
+    assertTrue(histogramCount(snapshot, "login") >= 1);
+    assertTrue(histogramCount(snapshot, "command.STOR") >= 1);
+    assertTrue(histogramCount(snapshot, "command.LIST") >= 1);
+    assertEquals(Long.valueOf(4096), snapshot.counters.get("upload.totalBytes"));
+  }
+
+  private static List<String> names(FTPFile[] files) {
+    List<String> names = new ArrayList<>();
+    for (FTPFile file : files) {
+      names.add(file.getName());
+    }
+    Collections.sort(names);
+    return names;
+  }
+
+  private static long histogramCount(Metrics.Snapshot snapshot, String name) {
+    for (Metrics.HistogramSnapshot histogram : snapshot.histograms) {
+      if (histogram.name.equals(name)) {
+        return histogram.count;
+      }
+    }
+    return 0;
+  }
+}
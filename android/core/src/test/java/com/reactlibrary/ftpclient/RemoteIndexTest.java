@@ -0,0 +1,120 @@
+package com.reactlibrary.ftpclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteIndexTest {
+
+  @Rule
+  public TemporaryFolder local = new TemporaryFolder();
+
+  private EmbeddedFtpServer server;
+  private ExecutorService executor;
+  private Metrics metrics;
+  private FtpCore core;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EmbeddedFtpServer.start();
+    executor = Executors.newSingleThreadExecutor();
+    metrics = new Metrics(snapshot -> { });
+    core = new FtpCore(metrics, executor);
+    core.setup(server.config());
+  }
+
+  @After
+  public void tearDown() {
+    core.shutdown();
+    metrics.shutdown();
+    executor.shutdownNow();
+    server.close();
+  }
+
+  @Test
+  public void buildsThenRefreshesOnlyChangedDirectories() throws Exception {
+    long bytes = server.createTree("tree", 2, 3, 4, 100);
+    File indexFile = new File(local.getRoot(), "index/tree.idx");
+    RemoteIndex index = RemoteIndex.open(indexFile, "/tree/");
+
+    RemoteIndex.Update first = index.update(core, 4, false);
+    assertTrue(first.full);
+    assertEquals(13, first.dirsListed.get());
+    RemoteIndex.Info info = index.info();
+    assertEquals(12, info.dirs);
+    assertEquals(13 * 4, info.files);
+    assertEquals(bytes, info.bytes);
+
+    // thêm một file: chỉ thư mục chứa nó có mtime khác nên chỉ nó bị LIST lại
+    File added = server.createFile("tree/dir-2/dir-0/report-2024.pdf", 5000);
+    File dir = added.getParentFile();
+    assertTrue(dir.setLastModified(dir.lastModified() + 60000));
+    RemoteIndex.Update second = index.update(core, 4, false);
+    assertFalse(second.full);
+    assertEquals(13, second.dirsChecked.get());
+    assertEquals(1, second.dirsListed.get());
+
+    RemoteIndex.Query query = new RemoteIndex.Query();
+    query.prefix = "REPORT";
+    query.minSize = 4000;
+    List<RemoteIndex.Hit> hits = index.search(query);
+    assertEquals(1, hits.size());
+    assertEquals("/tree/dir-2/dir-0/report-2024.pdf", hits.get(0).path);
+    assertEquals(5000, hits.get(0).size);
+
+    // đọc lại từ file; ghi đè qua module không đổi mtime thư mục nhưng invalidate() bắt LIST lại
+    RemoteIndex reopened = RemoteIndex.open(indexFile, "/tree");
+    assertEquals(13 * 4 + 1, reopened.info().files);
+    reopened.invalidate("/tree/dir-0/file-1.bin");
+    assertEquals(1, reopened.update(core, 4, false).dirsListed.get());
+  }
+
+  @Test
+  public void searchFiltersByBranchGlobTypeAndDate() throws Exception {
+    server.createTree("photos", 1, 2, 3, 10);
+    File old = server.createFile("photos/dir-1/IMG_0001.JPG", 10);
+    assertTrue(old.setLastModified(1000000000000L));
+    RemoteIndex index = RemoteIndex.open(new File(local.getRoot(), "photos.idx"), "/photos");
+    index.update(core, 2, false);
+
+    RemoteIndex.Query query = new RemoteIndex.Query();
+    query.glob = "*.bin";
+    assertEquals(9, index.search(query).size());
+    query.under = "/photos/dir-1";
+    List<RemoteIndex.Hit> hits = index.search(query);
+    assertEquals(3, hits.size());
+    assertEquals("/photos/dir-1/file-0.bin", hits.get(0).path);
+    // limit giữ các đường dẫn đầu tiên theo thứ tự, không phải các entry gặp trước khi duyệt
+    query.limit = 2;
+    hits = index.search(query);
+    assertEquals(2, hits.size());
+    assertEquals("/photos/dir-1/file-0.bin", hits.get(0).path);
+    assertEquals("/photos/dir-1/file-1.bin", hits.get(1).path);
+    query.under = null;
+    query.limit = 1;
+    assertEquals("/photos/dir-0/file-0.bin", index.search(query).get(0).path);
+
+    query = new RemoteIndex.Query();
+    query.glob = "img_????.jpg";
+    query.modifiedBefore = 1500000000000L;
+    assertEquals(1, index.search(query).size());
+    query.modifiedBefore = -1;
+    query.modifiedAfter = 1500000000000L;
+    assertEquals(0, index.search(query).size());
+
+    query = new RemoteIndex.Query();
+    query.type = RemoteIndex.TYPE_DIR;
+    assertEquals(2, index.search(query).size());
+  }
+}
@@ -0,0 +1,113 @@
+package com.reactlibrary.ftpclient;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TlsFtpClientTest {
+
+  @Rule
+  public TemporaryFolder local = new TemporaryFolder();
+
+  private EmbeddedFtpServer server;
+  private ExecutorService executor;
+  private Metrics metrics;
+  private FtpCore core;
+
+  @Before
+  public void setUp() throws Exception {
+    server = EmbeddedFtpServer.startTls();
+    executor = Executors.newSingleThreadExecutor();
+    metrics = new Metrics(snapshot -> { });
+    core = new FtpCore(metrics, executor);
+  }
+
+  @After
+  public void tearDown() {
+    core.shutdown();
+    metrics.shutdown();
+    executor.shutdownNow();
+    server.close();
+  }
+
+  @Test
+  public void dataConnectionsResumeControlSession() throws Exception {
+    core.setup(server.tlsConfig(serverCertificateSha256()));
+    File source = local.newFile("source.bin");
+    EmbeddedFtpServer.writeRandom(source, 512 * 1024 + 3, 7);
+
+    core.upload(source, "/secure.bin");
+    File target = new File(local.getRoot(), "target.bin");
+    core.download("/secure.bin", target);
+    assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+    assertEquals(1, core.list("/").length);
+
+    Metrics.Snapshot snapshot = metrics.snapshot();
+    assertEquals(1, histogramCount(snapshot, TlsFtpClient.HANDSHAKE_CONTROL));
+    assertEquals(3, histogramCount(snapshot, TlsFtpClient.HANDSHAKE_DATA));
+    assertEquals(Long.valueOf(3), snapshot.counters.get(TlsFtpClient.HANDSHAKE_DATA + ".resumed"));
+  }
+
+  @Test
+  public void pooledSessionsResumeEachOther() throws Exception {
+    core.setup(server.tlsConfig(serverCertificateSha256()));
+    FtpSessionPool pool = core.getPool();
+    FTPClient first = pool.borrow();
+    FTPClient second = pool.borrow();
+    pool.release(first);
+    pool.release(second);
+
+    Metrics.Snapshot snapshot = metrics.snapshot();
+    assertEquals(2, histogramCount(snapshot, TlsFtpClient.HANDSHAKE_CONTROL));
+    assertEquals(Long.valueOf(1), snapshot.counters.get(TlsFtpClient.HANDSHAKE_CONTROL + ".full"));
+    assertEquals(Long.valueOf(1), snapshot.counters.get(TlsFtpClient.HANDSHAKE_CONTROL + ".resumed"));
+  }
+
+  @Test
+  public void rejectsServerWithOtherCertificate() throws Exception {
+    core.setup(server.tlsConfig("00:11:22:33"));
+    try {
+      core.list("/");
+      fail("connected to a server whose certificate is not pinned");
+    } catch (IOException e) {
+      assertEquals(0, histogramCount(metrics.snapshot(), TlsFtpClient.HANDSHAKE_CONTROL));
+    }
+  }
+
+  private static String serverCertificateSha256() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    InputStream in = TlsFtpClientTest.class.getClassLoader().getResourceAsStream(EmbeddedFtpServer.KEYSTORE);
+    try {
+      keyStore.load(in, EmbeddedFtpServer.KEYSTORE_PASSWORD.toCharArray());
+    } finally {
+      in.close();
+    }
+    byte[] encoded = keyStore.getCertificate(keyStore.aliases().nextElement()).getEncoded();
+    return Checksum.toHex(MessageDigest.getInstance("SHA-256").digest(encoded));
+  }
+
+  private static long histogramCount(Metrics.Snapshot snapshot, String name) {
+    for (Metrics.HistogramSnapshot histogram : snapshot.histograms) {
+      if (histogram.name.equals(name)) {
+        return histogram.count;
+      }
+    }
+    return 0;
+  }
+}
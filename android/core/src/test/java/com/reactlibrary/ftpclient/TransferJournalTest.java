@@ -0,0 +1,107 @@
+package com.reactlibrary.ftpclient;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransferJournalTest {
+
+  @Rule
+  public TemporaryFolder local = new TemporaryFolder();
+
+  private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+
+  private TransferJournal open(File file) {
+    return TransferJournal.open(file, token -> offsets.containsKey(token) ? offsets.get(token) : -1);
+  }
+
+  private static TransferJournal.Job job(String token, String type) {
+    TransferOptions options = new TransferOptions();
+    options.resume = true;
+    options.persistent = true;
+    options.checksumAlgorithm = Checksum.SHA256;
+    options.compression = Compression.AUTO;
+    return new TransferJournal.Job(token, type, "/sdcard/" + token, "/backup/" + token, "user@nas:21", options);
+  }
+
+  @Test
+  public void pendingJobsAndOffsetsSurviveReopen() throws Exception {
+    File file = new File(local.getRoot(), "journal/transfers.log");
+    TransferJournal journal = open(file);
+    journal.add(job("a", TransferJournal.UPLOAD));
+    journal.add(job("b", TransferJournal.DOWNLOAD));
+    journal.add(job("c", TransferJournal.UPLOAD));
+    offsets.put("a", 4096L);
+    offsets.put("b", 123L);
+    journal.checkpoint();
+    journal.end("c", TransferJournal.END_DONE);
+    offsets.put("a", 8192L);
+    journal.checkpoint();
+    journal.flush();
+    // không close(): giống app bị kill sau lần ghi cuối
+
+    TransferJournal reopened = open(file);
+    List<TransferJournal.Job> pending = reopened.pending();
+    assertEquals(2, pending.size());
+    assertEquals("a", pending.get(0).token);
+    assertEquals(8192, pending.get(0).offset);
+    assertEquals("b", pending.get(1).token);
+    assertEquals(TransferJournal.DOWNLOAD, pending.get(1).type);
+    assertEquals(123, pending.get(1).offset);
+    assertEquals("/backup/b", pending.get(1).remotePath);
+    assertEquals("user@nas:21", pending.get(1).server);
+    assertEquals(Checksum.SHA256, pending.get(1).options.checksumAlgorithm);
+    assertEquals(Compression.AUTO, pending.get(1).options.compression);
+    assertTrue(pending.get(1).options.resume);
+    // lúc mở đã viết gọn: mỗi job một dòng
+    assertEquals(2, Files.readAllLines(file.toPath()).size());
+    reopened.close();
+    journal.close();
+  }
+
+  @Test
+  public void brokenLastLineIsIgnored() throws Exception {
+    File file = new File(local.getRoot(), "transfers.log");
+    TransferJournal journal = open(file);
+    journal.add(job("a", TransferJournal.UPLOAD));
+    journal.flush();
+    FileOutputStream out = new FileOutputStream(file, true);
+    out.write("{\"op\":\"end\",\"tok".getBytes("UTF-8"));
+    out.close();
+
+    TransferJournal reopened = open(file);
+    assertEquals(1, reopened.pending().size());
+    reopened.close();
+    journal.close();
+  }
+
+  @Test
+  public void longJournalIsCompacted() throws Exception {
+    File file = new File(local.getRoot(), "transfers.log");
+    TransferJournal journal = open(file);
+    journal.add(job("kept", TransferJournal.UPLOAD));
+    for (int i = 0; i < TransferJournal.COMPACT_MIN_LINES; i++) {
+      journal.add(job("done" + i, TransferJournal.UPLOAD));
+      journal.end("done" + i, TransferJournal.END_DONE);
+      if (i % 100 == 0) {
+        journal.flush();
+      }
+    }
+    journal.flush();
+    assertTrue(Files.readAllLines(file.toPath()).size() < TransferJournal.COMPACT_MIN_LINES);
+    assertEquals(1, journal.pending().size());
+    journal.close();
+
+    assertEquals("kept", open(file).pending().get(0).token);
+  }
+}
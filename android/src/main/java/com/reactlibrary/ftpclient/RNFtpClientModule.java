@@ -1,7 +1,7 @@
-
 package com.reactlibrary.ftpclient;
 
 import androidx.annotation.Nullable;
+import android.util.Base64;
 import android.util.Log;
 
 import com.facebook.react.bridge.Promise;
@@ -10,6 +10,8 @@ import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableArray;
@@ -17,41 +19,117 @@ import com.facebook.react.bridge.Arguments;
 
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.io.CopyStreamException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class RNFtpClientModule extends ReactContextBaseJavaModule {
 
   private static final String TAG = "RNFtpClient";
   private final ReactApplicationContext reactContext;
-  private String ip_address;
-  private int port;
-  private String username;
-  private String password;
-  private HashMap<String,Thread> uploadingTasks = new HashMap<>();
-  private final static int MAX_UPLOAD_COUNT = 10;
-
-  private HashMap<String,Thread> downloadingTasks = new HashMap<>();
-  private final static int MAX_DOWNLOAD_COUNT = 10;
-
-  private final static String RNFTPCLIENT_PROGRESS_EVENT_NAME = "Progress";
+  // histogram độ trễ/tốc độ và bộ đếm lỗi, đọc qua getMetrics() hoặc event định kỳ
+  private final Metrics metrics = new Metrics(new Metrics.Sink() {
+    @Override
+    public void onMetrics(Metrics.Snapshot snapshot) {
+      sendEvent(reactContext, RNFTPCLIENT_METRICS_EVENT_NAME, metricsToMap(snapshot));
+    }
+  });
+  // số transfer chạy đồng thời của mỗi lane do ConcurrencyController chỉnh, bắt đầu từ DEFAULT_INITIAL
+  private final TransferScheduler uploadLane = new TransferScheduler("upload", ConcurrencyController.DEFAULT_INITIAL, metrics);
+  private final TransferScheduler downloadLane = new TransferScheduler("download", ConcurrencyController.DEFAULT_INITIAL, metrics);
+
+  // lane riêng cho list/checkFileExists/makeDir... (một vài lệnh FTP) để không phải chờ sau các transfer lớn
+  private final static int MAX_METADATA_COUNT = 4;
+  private final ExecutorService metadataExecutor = Executors.newFixedThreadPool(MAX_METADATA_COUNT);
+  // lane cho thao tác chạy lâu: duyệt cây (getFolderSize/getFolderStats, xoá thư mục, updateIndex) và
+  // readRange/tail ghi ra file, để chúng không chiếm hết thread của metadataExecutor
+  private final static int MAX_TREE_OPERATION_COUNT = 2;
+  private final ExecutorService treeExecutor = Executors.newFixedThreadPool(MAX_TREE_OPERATION_COUNT);
+  // pool session, cache, duyệt cây và STOR/RETR; module chỉ chuyển tham số/kết quả qua bridge
+  private final FtpCore core = new FtpCore(metrics, metadataExecutor);
+  private final ConcurrencyController.Listener concurrencyListener = new ConcurrencyController.Listener() {
+    @Override
+    public void onDecision(String lane, ConcurrencyController.Decision decision) {
+      WritableMap params = decisionToMap(decision);
+      params.putString("lane", lane);
+      sendEvent(reactContext, RNFTPCLIENT_CONCURRENCY_EVENT_NAME, params);
+    }
+  };
+  private final ConcurrencyController uploadConcurrency = new ConcurrencyController("upload", uploadLane, metrics,
+          () -> core.getTransferEngine().getUploadedBytes(), concurrencyListener);
+  private final ConcurrencyController downloadConcurrency = new ConcurrencyController("download", downloadLane, metrics,
+          () -> core.getTransferEngine().getDownloadedBytes(), concurrencyListener);
+  // thread cho từng segment của download nhiều kết nối, số lượng bị giới hạn bởi MAX_DOWNLOAD_SEGMENTS mỗi download
+  private final ExecutorService segmentExecutor = Executors.newCachedThreadPool();
+
+  private final static String RNFTPCLIENT_PROGRESS_BATCH_EVENT_NAME = "ProgressBatch";
+  private final static String RNFTPCLIENT_LIST_PAGE_EVENT_NAME = "ListPage";
+  private final static String RNFTPCLIENT_FOLDER_SCAN_EVENT_NAME = "FolderScanProgress";
+  private final static String RNFTPCLIENT_REMOVE_PROGRESS_EVENT_NAME = "RemoveProgress";
+  private final static String RNFTPCLIENT_METRICS_EVENT_NAME = "Metrics";
+  private final static String RNFTPCLIENT_CONCURRENCY_EVENT_NAME = "ConcurrencyChange";
+  private final static String RNFTPCLIENT_TRANSFER_FINISHED_EVENT_NAME = "TransferFinished";
+  private final static int DEFAULT_LIST_PAGE_SIZE = 200;
+  private final static int MAX_LIST_PAGE_SIZE = 5000;
+  // các listId của listPaged đang chạy, cancelList() bỏ listId ra để dừng
+  private final Set<String> activeLists = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  // SimpleDateFormat không thread-safe, mỗi thread giữ một bản dùng lại thay vì tạo mới cho từng file
+  private final static ThreadLocal<SimpleDateFormat> ISO8601_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+    @Override
+    protected SimpleDateFormat initialValue() {
+      SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+      sdf.setTimeZone(TimeZone.getTimeZone("CET"));
+      return sdf;
+    }
+  };
+  // gom tiến độ của mọi transfer, gửi lên JS một event mỗi interval thay vì mỗi 1%
+  private final ProgressAggregator progressAggregator = new ProgressAggregator(new ProgressAggregator.Sink() {
+    @Override
+    public void onProgress(List<ProgressAggregator.Snapshot> batch) {
+      sendProgressBatch(batch);
+    }
+  });
+  // upload/download với persistent: true, đọc lại khi khởi động và chạy tiếp sau setup() với cùng server
+  private final TransferJournal journal;
+  // chỉ mục cây thư mục theo "config.key()|gốc", đọc từ file ở lần dùng đầu tiên
+  private final ConcurrentHashMap<String, RemoteIndex> indexes = new ConcurrentHashMap<>();
 
   private final static String RNFTPCLIENT_ERROR_CODE_LOGIN = "RNFTPCLIENT_ERROR_CODE_LOGIN";
   private final static String RNFTPCLIENT_ERROR_CODE_LIST = "RNFTPCLIENT_ERROR_CODE_LIST";
@@ -60,12 +138,39 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
   private final static String RNFTPCLIENT_ERROR_CODE_REMOVE = "RNFTPCLIENT_ERROR_CODE_REMOVE";
   private final static String RNFTPCLIENT_ERROR_CODE_LOGOUT = "RNFTPCLIENT_ERROR_CODE_LOGOUT";
   private final static String RNFTPCLIENT_ERROR_CODE_DOWNLOAD = "RNFTPCLIENT_ERROR_CODE_DOWNLOAD";
+  private final static String RNFTPCLIENT_ERROR_CODE_TRANSFER = "RNFTPCLIENT_ERROR_CODE_TRANSFER";
+  private final static String RNFTPCLIENT_ERROR_CODE_SYNC = "RNFTPCLIENT_ERROR_CODE_SYNC";
 
   private final static String ERROR_MESSAGE_CANCELLED = "ERROR_MESSAGE_CANCELLED";
 
+  private final static int DEFAULT_RESUME_RETRIES = 3;
+  private final static long MAX_RETRY_DELAY = 30000;
+  private final static String RESUME_MARKER_SUFFIX = ".rnftp-resume";
+  private final static int MAX_DOWNLOAD_SEGMENTS = 8;
+  private final static long MIN_SEGMENT_SIZE = 1024 * 1024;
+  private final static String BATCH_TOKEN_PREFIX = "batch:";
+  private final static String PART_FILE_SUFFIX = ".rnftp-part";
+  private final static String SYNC_MANIFEST_DIR = "rnftp-sync";
+  private final static String JOURNAL_DIR = "rnftp-journal";
+  private final static String INDEX_DIR = "rnftp-index";
+  private final static String UPLOAD_MARKER_DIR = "rnftp-upload";
+  private final static int DEFAULT_BATCH_PARALLELISM = 3;
+  private final static int MAX_BATCH_PARALLELISM = 8;
+  private final static long LARGE_FILE_THRESHOLD = 8 * 1024 * 1024;
+
   public RNFtpClientModule(ReactApplicationContext reactContext) {
     super(reactContext);
     this.reactContext = reactContext;
+    FtpLog.setPrinter(new FtpLog.Printer() {
+      @Override
+      public void d(String tag, String message, Throwable error) {
+        Log.d(tag, message, error);
+      }
+    });
+    uploadConcurrency.start();
+    downloadConcurrency.start();
+    journal = TransferJournal.open(new File(new File(reactContext.getFilesDir(), JOURNAL_DIR), "transfers.log"),
+            progressAggregator::transferred);
   }
 
   /**
@@ -76,34 +181,201 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    * @param password
    */
   @ReactMethod
-  public void setup(String ip_address, int port, String username, String password){
-    this.ip_address = ip_address;
-    this.port = port;
-    this.username = username;
-    this.password = password;
+  public synchronized void setup(String ip_address, int port, String username, String password){
+    FtpConfig config = new FtpConfig(ip_address, port, username, password);
+    core.setup(config);
+    resumeJournal(config);
+  }
+
+  /**
+   * Như setup() nhưng dùng FTPS kiểu explicit (AUTH TLS).
+   * options: protectData (mặc định true: PROT P, mã hoá cả data connection), certificateSha256 (hex của
+   * chứng chỉ server được tin, cho server dùng chứng chỉ tự ký; không có thì kiểm tra theo hệ thống và tên host).
+   */
+  @ReactMethod
+  public synchronized void setupTls(String ip_address, int port, String username, String password, @Nullable ReadableMap options){
+    boolean protectData = options == null || !options.hasKey("protectData") || options.isNull("protectData")
+            || options.getBoolean("protectData");
+    String certificateSha256 = options != null && options.hasKey("certificateSha256") && !options.isNull("certificateSha256")
+            ? options.getString("certificateSha256") : null;
+    FtpConfig config = new FtpConfig(ip_address, port, username, password, true, protectData, certificateSha256);
+    core.setup(config);
+    resumeJournal(config);
+  }
+
+  /**
+   * Đưa lại vào hàng đợi các transfer persistent của server 'config' còn dang dở từ lần chạy trước.
+   * Không còn promise nào chờ nên kết quả được gửi qua event "TransferFinished".
+   */
+  private void resumeJournal(FtpConfig config){
+    String server = TransferJournal.serverOf(config);
+    for (TransferJournal.Job job : journal.pending()) {
+      if(!server.equals(job.server) || uploadLane.contains(job.token) || downloadLane.contains(job.token)){
+        continue;
+      }
+      Log.d(TAG, "resume " + job.type + " " + job.token + " from journal, offset " + job.offset);
+      // job đã chạy trước khi app bị kill: tiếp tục phần đã truyền, marker vẫn quyết định có ghép tiếp được không
+      job.options.resume = true;
+      TransferCallback callback = restoredCallback(job);
+      if(TransferJournal.UPLOAD.equals(job.type)){
+        submitUpload(job.token, job.localPath, job.remotePath, job.options, callback);
+      }else{
+        submitDownload(job.token, job.localPath, job.remotePath, job.options, callback);
+      }
+    }
   }
 
+  private TransferCallback restoredCallback(final TransferJournal.Job job){
+    return new TransferCallback() {
+      @Override
+      public void resolve(WritableMap result) {
+        WritableMap params = restoredEvent(job, TransferJournal.END_DONE);
+        params.putMap("result", result);
+        sendEvent(reactContext, RNFTPCLIENT_TRANSFER_FINISHED_EVENT_NAME, params);
+      }
+
+      @Override
+      public void reject(String code, String message) {
+        WritableMap params = restoredEvent(job,
+                ERROR_MESSAGE_CANCELLED.equals(message) ? TransferJournal.END_CANCELLED : TransferJournal.END_FAILED);
+        params.putString("code", code);
+        params.putString("error", message);
+        sendEvent(reactContext, RNFTPCLIENT_TRANSFER_FINISHED_EVENT_NAME, params);
+      }
+    };
+  }
 
-  private void login(FTPClient client) throws IOException{
-    client.connect(this.ip_address,this.port);
-    client.enterLocalPassiveMode();
-    client.login(this.username, this.password);
+  private WritableMap restoredEvent(TransferJournal.Job job, String status){
+    WritableMap params = Arguments.createMap();
+    params.putString("token", job.token);
+    params.putString("type", job.type);
+    params.putString("localPath", job.localPath);
+    params.putString("remotePath", job.remotePath);
+    params.putString("status", status);
+    return params;
   }
 
-  private void logout(FTPClient client) {
-    try {
-      client.logout();
-    }catch (IOException e){
-      Log.d(TAG,"logout error",e);
+  /**
+   * Các transfer persistent còn dang dở trong journal (của mọi server), mỗi cái có token, type,
+   * localPath, remotePath, server và offset đã ghi gần nhất.
+   * @param promise
+   */
+  @ReactMethod
+  public void getPersistentTransfers(final Promise promise){
+    WritableArray result = Arguments.createArray();
+    for (TransferJournal.Job job : journal.pending()) {
+      WritableMap item = Arguments.createMap();
+      item.putString("token", job.token);
+      item.putString("type", job.type);
+      item.putString("localPath", job.localPath);
+      item.putString("remotePath", job.remotePath);
+      item.putString("server", job.server);
+      item.putDouble("offset", job.offset);
+      result.pushMap(item);
     }
-    try {
-      if(client.isConnected()){
-        client.disconnect();
+    promise.resolve(result);
+  }
+
+  /**
+   * Bỏ transfer 'token' khỏi journal để nó không được chạy tiếp ở lần khởi động sau,
+   * transfer đang chạy (nếu có) vẫn chạy tiếp, dùng cancelUploadFile/cancelDownloadFile để dừng.
+   * @param token
+   */
+  @ReactMethod
+  public void removePersistentTransfer(String token){
+    journal.end(token, TransferJournal.END_CANCELLED);
+  }
+
+  /**
+   * Cấu hình pool session: minIdle, maxIdle, idleTimeout (ms), validateAfter (ms).
+   * @param options
+   */
+  @ReactMethod
+  public synchronized void setPoolOptions(ReadableMap options){
+    FtpSessionPool.Options opts = core.getPoolOptions();
+    if(options.hasKey("minIdle")){
+      opts.minIdle = Math.max(0, options.getInt("minIdle"));
+    }
+    if(options.hasKey("maxIdle")){
+      opts.maxIdle = Math.max(opts.minIdle, options.getInt("maxIdle"));
+    }
+    if(options.hasKey("idleTimeout")){
+      opts.idleTimeoutMs = (long)options.getDouble("idleTimeout");
+    }
+    if(options.hasKey("validateAfter")){
+      opts.validateAfterMs = (long)options.getDouble("validateAfter");
+    }
+    core.setPoolOptions(opts);
+  }
+
+  /**
+   * Cấu hình buffer cho transfer: bufferSize là buffer của vòng lặp copy (64 KB - 1 MB),
+   * sendBufferSize/receiveBufferSize là SO_SNDBUF/SO_RCVBUF của data connection (0 = mặc định của hệ thống).
+   * @param options
+   */
+  @ReactMethod
+  public synchronized void setBufferSizes(ReadableMap options){
+    FtpSessionPool.Options opts = core.getPoolOptions();
+    if(options.hasKey("bufferSize")){
+      core.getTransferEngine().setBufferSize(options.getInt("bufferSize"));
+      opts.bufferSize = core.getTransferEngine().getBufferSize();
+    }
+    if(options.hasKey("sendBufferSize")){
+      opts.sendBufferSize = Math.max(0, options.getInt("sendBufferSize"));
+    }
+    if(options.hasKey("receiveBufferSize")){
+      opts.receiveBufferSize = Math.max(0, options.getInt("receiveBufferSize"));
+    }
+    core.setPoolOptions(opts);
+  }
+
+  /**
+   * Cấu hình cache listing: ttl (ms, 0 = tắt), maxEntries, staleWhileRevalidate.
+   * @param options
+   */
+  @ReactMethod
+  public synchronized void setListCacheOptions(ReadableMap options){
+    ListingCache.Options opts = core.getListCacheOptions();
+    if(options.hasKey("ttl")){
+      opts.ttlMs = Math.max(0, (long)options.getDouble("ttl"));
+    }
+    if(options.hasKey("maxEntries")){
+      opts.maxEntries = Math.max(1, options.getInt("maxEntries"));
+    }
+    if(options.hasKey("staleWhileRevalidate")){
+      opts.staleWhileRevalidate = options.getBoolean("staleWhileRevalidate");
+    }
+    core.setListCacheOptions(opts);
+  }
+
+  /**
+   * Xoá toàn bộ listing đã cache, dùng khi thư mục trên server bị thay đổi từ nơi khác.
+   */
+  @ReactMethod
+  public void clearListCache(){
+    core.clearListCache();
+  }
+
+  /**
+   * Đường dẫn 'path' trên server vừa bị thay đổi: bỏ các listing và tổng thư mục bị ảnh hưởng,
+   * đánh dấu thư mục chứa nó trong các chỉ mục của server hiện tại để LIST lại.
+   */
+  private void invalidateRemote(String path){
+    core.invalidate(path);
+    FtpConfig config = core.getConfig();
+    if(config == null){
+      return;
+    }
+    String prefix = config.key() + "|";
+    for (Map.Entry<String, RemoteIndex> entry : indexes.entrySet()) {
+      if(entry.getKey().startsWith(prefix)){
+        entry.getValue().invalidate(path);
       }
-    }catch (IOException e){
-      Log.d(TAG,"logout disconnect error",e);
     }
+  }
 
+  private FtpSessionPool getPool() throws IOException {
+    return core.getPool();
   }
 
   private String getStringByType(int type){
@@ -123,11 +395,21 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
 
   private String ISO8601StringFromCalender(Calendar calendar){
     Date date = calendar.getTime();
+    return ISO8601_FORMAT.get().format(date);
+  }
 
-    SimpleDateFormat sdf;
-    sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
-    sdf.setTimeZone(TimeZone.getTimeZone("CET"));
-    return sdf.format(date);
+  private WritableMap fileToMap(FTPFile file){
+    WritableMap tmp = Arguments.createMap();
+    tmp.putString("name",file.getName());
+    // double để giữ đúng kích thước file > 2 GB
+    tmp.putDouble("size",(double)file.getSize());
+    Calendar timestamp = file.getTimestamp();
+    if(timestamp != null){
+      tmp.putString("timestamp",ISO8601StringFromCalender(timestamp));
+      tmp.putDouble("modifiedAt",(double)timestamp.getTimeInMillis());
+    }
+    tmp.putString("type",getStringByType(file.getType()));
+    return tmp;
   }
 
   /**
@@ -137,99 +419,238 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void list(final String path, final Promise promise){
-    new Thread(new Runnable() {
+    metadataExecutor.execute(new Runnable() {
       @Override
       public void run() {
-        FTPFile[] files = new FTPFile[0];
-        FTPClient client = new FTPClient();
         try {
-          login(client);
-          files = client.listFiles(path);
+          FTPFile[] files = core.list(path);
           WritableArray arrfiles = Arguments.createArray();
           for (FTPFile file : files) {
-            WritableMap tmp = Arguments.createMap();
-            tmp.putString("name",file.getName());
-            tmp.putInt("size",(int)file.getSize());
-            tmp.putString("timestamp",ISO8601StringFromCalender(file.getTimestamp()));
-            tmp.putString("type",getStringByType(file.getType()));
-            arrfiles.pushMap(tmp);
+            arrfiles.pushMap(fileToMap(file));
           }
           promise.resolve(arrfiles);
         } catch (Exception e) {
           promise.reject(RNFTPCLIENT_ERROR_CODE_LIST, e.getMessage());
+        }
+      }
+    });
+  }
+
+  /**
+   * List thư mục lớn theo từng trang: mỗi trang 'pageSize' entry được gửi qua event ListPage
+   * {listId, path, cursor, entries, done} ngay khi đọc và parse xong từ data stream, thay vì dựng một mảng
+   * lớn rồi mới resolve. Dùng chung cache listing với list().
+   * 'cursor' là vị trí của entry đầu tiên trong trang. Promise resolve với tổng số entry.
+   * @param listId: id do JS tạo để lọc event và để huỷ bằng cancelList().
+   * @param path
+   * @param pageSize
+   * @param promise
+   */
+  @ReactMethod
+  public void listPaged(final String listId, final String path, int pageSize, final Promise promise){
+    final int size = pageSize <= 0 ? DEFAULT_LIST_PAGE_SIZE : Math.min(pageSize, MAX_LIST_PAGE_SIZE);
+    if(!activeLists.add(listId)){
+      promise.reject(RNFTPCLIENT_ERROR_CODE_LIST, "same list is running");
+      return;
+    }
+    metadataExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // trang được gửi ngay khi parse đủ từ data stream của LIST, không chờ server gửi hết
+          int count = core.listPaged(path, size, new FtpCore.ListPageListener() {
+            @Override
+            public boolean onPage(FTPFile[] files, int cursor, boolean done) {
+              if(!activeLists.contains(listId)){
+                return false;
+              }
+              WritableArray entries = Arguments.createArray();
+              for (FTPFile file : files) {
+                entries.pushMap(fileToMap(file));
+              }
+              WritableMap page = Arguments.createMap();
+              page.putString("listId", listId);
+              page.putString("path", path);
+              page.putInt("cursor", cursor);
+              page.putArray("entries", entries);
+              page.putBoolean("done", done);
+              sendEvent(reactContext, RNFTPCLIENT_LIST_PAGE_EVENT_NAME, page);
+              return true;
+            }
+          });
+          if(count < 0){
+            promise.reject(RNFTPCLIENT_ERROR_CODE_LIST, ERROR_MESSAGE_CANCELLED);
+          }else{
+            promise.resolve(count);
+          }
+        } catch (Exception e) {
+          promise.reject(RNFTPCLIENT_ERROR_CODE_LIST, e.getMessage());
         } finally {
-          logout(client);
+          activeLists.remove(listId);
         }
       }
-    }).start();
+    });
+  }
+
+  /**
+   * Dừng listPaged() đang chạy, trang tiếp theo sẽ không được gửi nữa.
+   * @param listId
+   * @param promise
+   */
+  @ReactMethod
+  public void cancelList(final String listId, final Promise promise){
+    promise.resolve(activeLists.remove(listId));
   }
 
   /**
    * Xoá đi file hoặc thư mục được chỉ định ở 'path', khi xoá sẽ phân biệt xoá
    * file hay thư mục bằng cách nhận biết kí tự '/' ở cuối cùng nếu là thư mục.
+   * Thư mục được xoá song song bằng removeTree(); nếu có đường dẫn không xoá được thì reject
+   * với userInfo {deletedFiles, deletedDirs, failures: [{path, error}]}.
    * @param path
    * @param promise
    */
   @ReactMethod
   public void remove(final String path, final Promise promise){
-    new Thread(new Runnable() {
+    (path.endsWith(File.separator) ? treeExecutor : metadataExecutor).execute(new Runnable() {
       @Override
       public void run() {
-        FTPClient client = new FTPClient();
         try {
-          login(client);
           if(path.endsWith(File.separator)){
-            if(isEmptyDirectory(client, path)) {
-              boolean deleted = client.removeDirectory(path);
-              if (deleted) {
-                promise.resolve(true);
-              } else {
-                promise.reject("ERROR", "Failed to delete empty directory.");
-              }
-            } else {
-              boolean success = removeDirectoryRecursively(client, path);
-              if (success) {
-                promise.resolve(true);
-              } else {
-                promise.reject("ERROR", "Failed to delete non-empty directory.");
+            FtpCore.RemoveReport report = core.removeTree(path, TreeWalker.DEFAULT_PARALLELISM, new FtpCore.RemoveListener() {
+              @Override
+              public void onProgress(FtpCore.RemoveReport report, boolean done) {
+                sendRemoveProgress(path, report, done);
               }
+            });
+            if(report == null){
+              promise.reject("ERROR", ERROR_MESSAGE_CANCELLED);
+            }else if(report.failureCount.get() == 0){
+              promise.resolve(true);
+            }else{
+              promise.reject("ERROR", "Failed to delete " + report.failureCount.get() + " path(s) in directory.", removeReportToMap(report));
             }
           }else{
-            client.deleteFile(path);
+            boolean deleted = getPool().execute(client -> client.deleteFile(path));
+            if(deleted){
+              promise.resolve(true);
+            }else{
+              promise.reject("ERROR", "Failed to delete file " + path);
+            }
           }
-          promise.resolve(true);
-        } catch (IOException e) {
+        } catch (IOException | InterruptedException e) {
           promise.reject("ERROR",e.getMessage());
         } finally {
-          logout(client);
+          invalidateRemote(path);
         }
       }
-    }).start();
+    });
   }
 
-  // Hàm đệ quy xóa thư mục không rỗng, vì phải xoá cả các file lẫn thu mục con.
-  private boolean removeDirectoryRecursively(FTPClient client, String remotePath) throws IOException {
-    FTPFile[] files = client.listFiles(remotePath);
+  /**
+   * Kết quả của enqueueUpload/enqueueDownload: {checksum: {algorithm, value, verified}} nếu có tính checksum,
+   * verified là null khi server không có lệnh hash để so.
+   */
+  private WritableMap transferResultToMap(@Nullable Checksum checksum){
+    WritableMap map = Arguments.createMap();
+    if(checksum != null){
+      map.putMap("checksum", checksumToMap(checksum));
+    }
+    return map;
+  }
 
-    for (FTPFile file : files) {
-      String fullPath = remotePath + "/" + file.getName();
-      if (file.isDirectory()) {
-        if (!removeDirectoryRecursively(client, fullPath)) {
-          return false;
-        }
-      } else {
-        if (!client.deleteFile(fullPath)) {
-          return false;
-        }
+  private WritableMap checksumToMap(Checksum checksum){
+    WritableMap map = Arguments.createMap();
+    map.putString("algorithm", checksum.algorithm);
+    map.putString("value", checksum.hex());
+    Boolean verified = checksum.isVerified();
+    if(verified == null){
+      map.putNull("verified");
+    }else{
+      map.putBoolean("verified", verified);
+    }
+    return map;
+  }
+
+  private WritableMap removeReportToMap(FtpCore.RemoveReport report){
+    WritableMap map = Arguments.createMap();
+    map.putDouble("deletedFiles", (double) report.deletedFiles.get());
+    map.putDouble("deletedDirs", (double) report.deletedDirs.get());
+    WritableArray items = Arguments.createArray();
+    synchronized (report.failures) {
+      for (String[] failure : report.failures) {
+        WritableMap item = Arguments.createMap();
+        item.putString("path", failure[0]);
+        item.putString("error", failure[1]);
+        items.pushMap(item);
+      }
+    }
+    map.putArray("failures", items);
+    return map;
+  }
+
+  private void sendRemoveProgress(String remotePath, FtpCore.RemoveReport report, boolean done){
+    WritableMap params = Arguments.createMap();
+    params.putString("path", remotePath);
+    params.putDouble("deletedFiles", (double)report.deletedFiles.get());
+    params.putDouble("deletedDirs", (double)report.deletedDirs.get());
+    params.putDouble("failed", (double)report.failureCount.get());
+    params.putBoolean("done", done);
+    sendEvent(reactContext, RNFTPCLIENT_REMOVE_PROGRESS_EVENT_NAME, params);
+  }
+
+  /**
+   * Nơi nhận kết quả của một upload/download: promise của JS, hoặc event "TransferFinished" với
+   * transfer được khôi phục từ journal.
+   */
+  private interface TransferCallback {
+    void resolve(WritableMap result);
+    void reject(String code, String message);
+  }
+
+  private TransferCallback callbackOf(final Promise promise){
+    return new TransferCallback() {
+      @Override
+      public void resolve(WritableMap result) {
+        promise.resolve(result);
+      }
+
+      @Override
+      public void reject(String code, String message) {
+        promise.reject(code, message);
       }
+    };
+  }
+
+  /**
+   * Ghi transfer persistent vào journal.
+   * @return false nếu không phải persistent hoặc journal đã có token này (transfer được khôi phục).
+   */
+  private boolean addToJournal(String token, String type, String path, String remotePath, TransferOptions options){
+    FtpConfig config = core.getConfig();
+    if(!options.persistent || config == null){
+      return false;
     }
-    return client.removeDirectory(remotePath);
+    return journal.add(new TransferJournal.Job(token, type, path, remotePath, TransferJournal.serverOf(config), options));
   }
 
-  //check xem có phải thư mục rỗng không.
-  private boolean isEmptyDirectory(FTPClient client, String remotePath) throws IOException {
-    FTPFile[] files = client.listFiles(remotePath);
-    return files.length == 0;
+  /**
+   * Bỏ transfer khỏi journal khi nó kết thúc (xong, lỗi hoặc huỷ) rồi mới báo kết quả.
+   */
+  private TransferCallback endingJournal(final String token, final TransferCallback callback){
+    return new TransferCallback() {
+      @Override
+      public void resolve(WritableMap result) {
+        journal.end(token, TransferJournal.END_DONE);
+        callback.resolve(result);
+      }
+
+      @Override
+      public void reject(String code, String message) {
+        journal.end(token, ERROR_MESSAGE_CANCELLED.equals(message) ? TransferJournal.END_CANCELLED : TransferJournal.END_FAILED);
+        callback.reject(code, message);
+      }
+    };
   }
 
   private String makeToken(final String path,final String remoteDestinationDir ){
@@ -248,19 +669,91 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
             .emit(eventName, params);
   }
 
-  private void sendProgressEventToToken(String token, int percentage){
+  private void sendProgressBatch(List<ProgressAggregator.Snapshot> batch){
+    WritableArray transfers = Arguments.createArray();
+    for (ProgressAggregator.Snapshot snapshot : batch) {
+      WritableMap item = Arguments.createMap();
+      item.putString("token", snapshot.token);
+      item.putInt("percentage", snapshot.percentage);
+      // double để không bị tràn với file > 2 GB
+      item.putDouble("bytesTransferred", (double) snapshot.bytesTransferred);
+      item.putDouble("totalBytes", (double) snapshot.totalBytes);
+      item.putDouble("throughput", snapshot.throughput);
+      item.putDouble("averageThroughput", snapshot.averageThroughput);
+      item.putDouble("eta", (double) snapshot.eta);
+      transfers.pushMap(item);
+    }
     WritableMap params = Arguments.createMap();
-    params.putString("token", token);
-    params.putInt("percentage", percentage);
+    params.putArray("transfers", transfers);
+    this.sendEvent(this.reactContext,RNFTPCLIENT_PROGRESS_BATCH_EVENT_NAME,params);
+  }
+
+  /**
+   * Khoảng thời gian (ms) giữa hai lần gửi event tiến độ, mặc định 250 ms.
+   * @param intervalMs
+   */
+  @ReactMethod
+  public void setProgressInterval(int intervalMs){
+    progressAggregator.setInterval(intervalMs);
+  }
 
-    Log.d(TAG,"send progress "+percentage+" to:"+token);
-    this.sendEvent(this.reactContext,RNFTPCLIENT_PROGRESS_EVENT_NAME,params);
+  /**
+   * Số liệu đo từ lúc khởi động (hoặc resetMetrics): counters (retries, reconnects, error.<Exception>,
+   * reply.<code>, <upload|download>.totalBytes...) và histograms (connect, login, command.<LỆNH>,
+   * rtt, queueWait.<lane>, <upload|download>.bytes/.throughput), mỗi histogram có count, mean, min, max, p50, p90, p99.
+   * @param promise
+   */
+  @ReactMethod
+  public void getMetrics(final Promise promise){
+    promise.resolve(metricsToMap(metrics.snapshot()));
+  }
+
+  @ReactMethod
+  public void resetMetrics(){
+    metrics.reset();
+  }
+
+  /**
+   * Gửi event "Metrics" sau mỗi 'intervalMs' (tối thiểu 1000 ms), 0 để tắt (mặc định).
+   * @param intervalMs
+   */
+  @ReactMethod
+  public void setMetricsInterval(int intervalMs){
+    metrics.setInterval(intervalMs);
+  }
+
+  private WritableMap metricsToMap(Metrics.Snapshot snapshot){
+    WritableMap map = Arguments.createMap();
+    map.putDouble("since", snapshot.since);
+    WritableMap counters = Arguments.createMap();
+    for (Map.Entry<String, Long> entry : snapshot.counters.entrySet()) {
+      counters.putDouble(entry.getKey(), entry.getValue());
+    }
+    map.putMap("counters", counters);
+    WritableMap histograms = Arguments.createMap();
+    for (Metrics.HistogramSnapshot histogram : snapshot.histograms) {
+      WritableMap item = Arguments.createMap();
+      item.putString("unit", histogram.unit);
+      item.putDouble("count", histogram.count);
+      item.putDouble("mean", histogram.mean);
+      item.putDouble("min", histogram.min);
+      item.putDouble("max", histogram.max);
+      item.putDouble("p50", histogram.p50);
+      item.putDouble("p90", histogram.p90);
+      item.putDouble("p99", histogram.p99);
+      histograms.putMap(histogram.name, item);
+    }
+    map.putMap("histograms", histograms);
+    return map;
   }
 
   @Override
   public Map<String, Object> getConstants() {
     final Map<String, Object> constants = new HashMap();
     constants.put(ERROR_MESSAGE_CANCELLED, ERROR_MESSAGE_CANCELLED);
+    constants.put("PRIORITY_LOW", TransferScheduler.PRIORITY_LOW);
+    constants.put("PRIORITY_NORMAL", TransferScheduler.PRIORITY_NORMAL);
+    constants.put("PRIORITY_HIGH", TransferScheduler.PRIORITY_HIGH);
     return constants;
   }
 
@@ -272,185 +765,1432 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void uploadFile(final String path,final String remoteDestinationPath, final Promise promise){
-    final String token = makeToken(path,remoteDestinationPath);
-    if(uploadingTasks.containsKey(token)){
-      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,"same upload is runing");
-      return;
-    }
-    if(uploadingTasks.size() >= MAX_UPLOAD_COUNT){
-      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,"has reach max uploading tasks");
-      return;
-    }
-    final Thread t =
-            new Thread(new Runnable() {
-              @Override
-              public void run() {
-                FTPClient client = new FTPClient();
-                try {
-                  login(client);
-                  client.setFileType(FTP.BINARY_FILE_TYPE);
-                  client.setConnectTimeout(10000);  // timeout khi connect
-                  client.setSoTimeout(10000);       // timeout khi đọc ghi stream
-                  client.setDataTimeout(10000);     // timeout khi chờ server response
-
-                  long finishBytes = 0;
+    enqueueUpload(path, remoteDestinationPath, null, promise);
+  }
 
-                  String remoteFile = remoteDestinationPath;
+  /**
+   * Đưa file vào hàng đợi upload. Khi lane upload đã đủ số slot (xem setConcurrencyOptions) thì file sẽ
+   * chờ tới lượt theo 'priority' thay vì bị từ chối.
+   * Với resume: true, phần đã gửi lên server được giữ lại khi lỗi/huỷ và lần sau gửi tiếp
+   * phần còn lại; lỗi mạng tạm thời được tự động thử lại.
+   * @param path: đường dẫn file local ở máy điện thoại
+   * @param remoteDestinationPath: đường dẫn file trên FTP server
+   * Với checksumAlgorithm: "crc32" | "md5" | "sha256", checksum được tính trong lúc gửi và so với hash
+   * của server (nếu có lệnh HASH/XCRC/XMD5...), resolve {checksum: {algorithm, value, verified}}.
+   * Với persistent: true, upload được ghi vào journal và nếu app bị kill thì chạy tiếp (như resume)
+   * sau lần setup() kế tiếp với cùng server, kết quả khi đó gửi qua event "TransferFinished".
+   * @param options: {priority, resume, retries, retryDelay, checksumAlgorithm, persistent}
+   * @param promise
+   */
+  @ReactMethod
+  public void enqueueUpload(final String path,final String remoteDestinationPath, @Nullable ReadableMap options, final Promise promise){
+    submitUpload(makeToken(path,remoteDestinationPath), path, remoteDestinationPath, parseTransferOptions(options),
+            callbackOf(promise));
+  }
 
-                  String remoteFileConvert = URLDecoder.decode(remoteFile, "UTF-8");
-                  String localPathFileConvert = URLDecoder.decode(path, "UTF-8");
-                  File localFile = new File(localPathFileConvert);
-                  InputStream inputStream = new FileInputStream(localPathFileConvert);
+  private void submitUpload(final String token, final String path, final String remoteDestinationPath,
+                            final TransferOptions transferOptions, TransferCallback result){
+    boolean journaled = addToJournal(token, TransferJournal.UPLOAD, path, remoteDestinationPath, transferOptions);
+    final TransferCallback callback = transferOptions.persistent ? endingJournal(token, result) : result;
+    final TransferScheduler.Task task =
+            new TransferScheduler.Task(token, transferOptions) {
+              @Override
+              void execute() {
+                String remoteFile = null;
+                try {
+                  final String remoteFileConvert = URLDecoder.decode(remoteDestinationPath, "UTF-8");
+                  remoteFile = remoteFileConvert;
+                  final String localPathFileConvert = URLDecoder.decode(path, "UTF-8");
                   Log.d(TAG, "remoteFileConvert: " + remoteFileConvert + ", localPathFileConvert: " + localPathFileConvert);
-                  long totalBytes = localFile.length();
-                  Log.d(TAG,"Start uploading file: " + totalBytes);
-
-                  OutputStream outputStream = client.storeFileStream(remoteFileConvert);
-                  byte[] bytesIn = new byte[4096];
-                  int read = 0;
-
-                  sendProgressEventToToken(token,0);
-                  Log.d(TAG,"Resolve token:"+token);
-                  int lastPercentage = 0;
-                  while ((read = inputStream.read(bytesIn)) != -1 && !Thread.currentThread().isInterrupted()) {
-                    outputStream.write(bytesIn, 0, read);
-                    finishBytes += read;
-                    int newPercentage = (int)(finishBytes*100/totalBytes);
-                    if(newPercentage>lastPercentage){
-                      sendProgressEventToToken(token,newPercentage);
-                      lastPercentage = newPercentage;
-                    }
-                  }
-                  inputStream.close();
-                  outputStream.close();
-                  Log.d(TAG,"Finish uploading");
-
-                  //if not interrupted
-                  if(!Thread.currentThread().isInterrupted()) {
-                    boolean done = client.completePendingCommand();
-
-                    if (done) {
-                      promise.resolve(true);
-                    } else {
-                      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD, localFile.getName() + " is not uploaded successfully.");
-                      client.deleteFile(remoteFile);
-                    }
+                  final File localFile = new File(localPathFileConvert);
+                  final Checksum checksum = Checksum.create(transferOptions.checksumAlgorithm);
+                  if(runWithRetries(this, transferOptions, "upload",
+                          () -> uploadOnce(this, token, localFile, remoteFileConvert, transferOptions.resume, checksum))){
+                    callback.resolve(transferResultToMap(checksum));
                   }else{
-                    //interupted, the file will deleted by cancel update operation
-                    promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,ERROR_MESSAGE_CANCELLED);
+                    //interupted, remove the partial file unless it is kept for resume
+                    deleteRemotePartial(transferOptions, remoteFileConvert);
+                    callback.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,ERROR_MESSAGE_CANCELLED);
                   }
+                } catch (InterruptedException e) {
+                  if(remoteFile != null){
+                    deleteRemotePartial(transferOptions, remoteFile);
+                  }
+                  callback.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,ERROR_MESSAGE_CANCELLED);
                 } catch (Exception e) {
-                  promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,e.getMessage());
+                  callback.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,e.getMessage());
                 } finally {
-                  uploadingTasks.remove(token);
-                  logout(client);
+                  progressAggregator.finish(token);
                 }
               }
-            });
-    t.start();
-    uploadingTasks.put(token,t);
+
+              @Override
+              void onCancelledBeforeStart() {
+                callback.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,ERROR_MESSAGE_CANCELLED);
+              }
+            };
+    if(!uploadLane.submit(task)){
+      if(journaled){
+        journal.end(token, TransferJournal.END_FAILED);
+      }
+      result.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,"same upload is runing");
+    }
   }
 
   /**
-   * Kiểm tra file có tên 'remoteFileName' đã tồn tại trên FTP server chưa.
-   * @param remoteDirectory: đường dẫn file trên FTP server.
-   * @param remoteFileName: tên file.
+   * Upload nhiều file trong một lần: 'files' là mảng {localPath, remotePath}.
+   * Toàn bộ batch chiếm một chỗ trong lane upload, tiến độ chung báo theo một token
+   * (options.token, luôn bắt đầu bằng "batch:"). Resolve {token, uploaded, failed, results}.
+   * @param files
+   * @param options: token, parallelism, priority, retries, retryDelay.
    * @param promise
    */
   @ReactMethod
-  public void checkFileExists(String remoteDirectory, String remoteFileName, Promise promise) {
-    new Thread(() -> {
-      Log.d(TAG, "checkFileExists: ");
-      FTPClient client = new FTPClient();
-      try {
-        login(client);
-        FTPFile[] files = client.listFiles(remoteDirectory);
-
-        boolean fileExists = false;
-        for (FTPFile file : files) {
-          if (file.getName().equals(remoteFileName)) {
-            fileExists = true;
-            break;
-          }
-        }
-        promise.resolve(fileExists);
-      } catch (IOException e) {
-        promise.reject("FTP_ERROR", e.getMessage());
-      } finally {
-        logout(client);
+  public void uploadFiles(final ReadableArray files, @Nullable final ReadableMap options, final Promise promise){
+    List<BatchFile> batch = new ArrayList<>();
+    Set<String> remoteDirs = new TreeSet<>();
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        ReadableMap item = files.getMap(i);
+        String remotePath = URLDecoder.decode(item.getString("remotePath"), "UTF-8");
+        batch.add(new BatchFile(new File(URLDecoder.decode(item.getString("localPath"), "UTF-8")), remotePath));
+        // mọi thư mục cha, TreeSet đưa cha lên trước con để MKD lần lượt từ trên xuống
+        addRemoteAncestors(remotePath, remoteDirs);
       }
-    }).start();
+    } catch (IOException e) {
+      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD, e.getMessage());
+      return;
+    }
+    submitUploadBatch(batch, new ArrayList<>(remoteDirs), options, promise);
   }
 
   /**
-   * Tạo thư mục mới theo đường dẫn 'path'.
-   * @param path
+   * Upload cả thư mục 'localDir' (kể cả thư mục con) lên 'remoteDir', giữ nguyên cấu trúc.
+   * @param localDir
+   * @param remoteDir
+   * @param options: như uploadFiles.
    * @param promise
    */
   @ReactMethod
-  public void makeDir(final String path, final Promise promise){
-    new Thread(new Runnable() {
-      @Override
-      public void run() {
-        FTPClient client = new FTPClient();
-        try {
-          login(client);
-          client.makeDirectory(path);
-          promise.resolve(true);
-        } catch (IOException e) {
-          promise.reject("ERROR",e.getMessage());
-        }
+  public void uploadDirectory(final String localDir, final String remoteDir, @Nullable final ReadableMap options, final Promise promise){
+    List<BatchFile> batch = new ArrayList<>();
+    Set<String> remoteDirs = new TreeSet<>();
+    try {
+      File root = new File(URLDecoder.decode(localDir, "UTF-8"));
+      if(!root.isDirectory()){
+        promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD, "local path is not a directory: " + root.getAbsolutePath());
+        return;
       }
-    }).start();
+      String remoteRoot = ListingCache.normalize(URLDecoder.decode(remoteDir, "UTF-8"));
+      // thư mục đích có thể nằm sâu dưới các thư mục chưa có, như uploadFiles
+      addRemoteAncestors(remoteRoot, remoteDirs);
+      collectLocalFiles(root, remoteRoot, batch, remoteDirs);
+    } catch (IOException e) {
+      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD, e.getMessage());
+      return;
+    }
+    submitUploadBatch(batch, new ArrayList<>(remoteDirs), options, promise);
   }
 
   /**
-   * Huỷ upload file khi file đang trong quá trình upload từ điện thoại lên server.
-   * @param token
-   * @param promise
+   * Một file trong batch (upload, hoặc download khi dùng cho sync) và kết quả của nó.
    */
-  @ReactMethod
-  public void cancelUploadFile(final String token, final Promise promise){
+  private static class BatchFile {
+    final File localFile;
+    final String remotePath;
+    final long size;
+    final boolean download;
+    volatile boolean succeeded = false;
+    volatile String error;
+    // chỉ có khi options.checksumAlgorithm được đặt
+    volatile Checksum checksum;
+
+    BatchFile(File localFile, String remotePath) {
+      this(localFile, remotePath, localFile.length(), false);
+    }
 
-    Thread upload = uploadingTasks.get(token);
+    BatchFile(File localFile, String remotePath, long size, boolean download) {
+      this.localFile = localFile;
+      this.remotePath = remotePath;
+      this.size = size;
+      this.download = download;
+    }
+  }
 
-    if(upload == null){
-      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,"token is wrong");
+  // thư mục cha đứng trước thư mục con để có thể MKD theo thứ tự
+  private void collectLocalFiles(File dir, String remoteDir, List<BatchFile> batch, Set<String> remoteDirs){
+    remoteDirs.add(remoteDir);
+    File[] children = dir.listFiles();
+    if(children == null){
       return;
     }
-    upload.interrupt();
-    FTPClient client = new FTPClient();
-    try{
-      upload.join();
-      login(client);
-      String remoteFile = token.split("=>")[1];
-      client.deleteFile(remoteFile);
-    }catch (Exception e){
-      Log.d(TAG,"cancel upload error",e);
-    }finally {
-      logout(client);
+    for (File child : children) {
+      String remotePath = TreeWalker.childPath(remoteDir, child.getName());
+      if(child.isDirectory()){
+        collectLocalFiles(child, remotePath, batch, remoteDirs);
+      }else if(child.isFile()){
+        batch.add(new BatchFile(child, remotePath));
+      }
     }
-    uploadingTasks.remove(token);
-    promise.resolve(true);
   }
 
-  private String getLocalFilePath(String path, String remotePath){
-    if(path.endsWith("/")){
-      int index = remotePath.lastIndexOf("/");
-      return path + remotePath.substring(index+1);
-    }else{
-      return path;
-    }
-  }
-  private long getRemoteSize(FTPClient client, String remoteFilePath) throws Exception {
-    client.sendCommand("SIZE", remoteFilePath);
-    String[] reply = client.getReplyStrings();
-    String[] response = reply[0].split(" ");
-    if(client.getReplyCode() != 213){
-      throw new Exception(String.format("ftp client size cmd response %d",client.getReplyCode()));
+  private void submitUploadBatch(final List<BatchFile> batch, final List<String> remoteDirs,
+                                 @Nullable ReadableMap options, final Promise promise){
+    String requested = options != null && options.hasKey("token")
+            ? options.getString("token") : String.valueOf(System.currentTimeMillis());
+    // token batch luôn có tiền tố riêng để cancelUploadFile() không xoá nhầm như upload đơn
+    final String token = requested.startsWith(BATCH_TOKEN_PREFIX) ? requested : BATCH_TOKEN_PREFIX + requested;
+    final int parallelism = options != null && options.hasKey("parallelism")
+            ? Math.max(1, Math.min(MAX_BATCH_PARALLELISM, options.getInt("parallelism"))) : DEFAULT_BATCH_PARALLELISM;
+    final TransferOptions transferOptions = parseTransferOptions(options);
+    final TransferScheduler.Task task =
+            new TransferScheduler.Task(token, transferOptions) {
+              @Override
+              void execute() {
+                try {
+                  if(runTransferBatch(this, token, batch, remoteDirs, transferOptions, parallelism)){
+                    promise.resolve(batchResultToMap(token, batch));
+                  }else{
+                    promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,ERROR_MESSAGE_CANCELLED);
+                  }
+                } catch (Exception e) {
+                  promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,e.getMessage());
+                } finally {
+                  progressAggregator.finish(token);
+                  for (String remoteDir : remoteDirs) {
+                    invalidateRemote(remoteDir);
+                  }
+                }
+              }
+
+              @Override
+              void onCancelledBeforeStart() {
+                promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,ERROR_MESSAGE_CANCELLED);
+              }
+            };
+    if(!uploadLane.submit(task)){
+      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,"same upload is runing");
+    }
+  }
+
+  /**
+   * Tạo các thư mục đích một lần, rồi cho 'parallelism' worker lấy file từ hàng đợi chung; mỗi
+   * worker giữ một session và gửi liên tiếp nhiều file trên đó. File lớn được xếp lên đầu hàng đợi
+   * để chạy song song với nhau, các file nhỏ lấp vào các worker còn lại.
+   * @return true khi đã xử lý hết (kể cả file lỗi), false khi bị huỷ.
+   */
+  private boolean runTransferBatch(final TransferScheduler.Task task, String token, List<BatchFile> batch,
+                                 final List<String> remoteDirs, final TransferOptions options, int parallelism) throws Exception {
+    final FtpSessionPool pool = getPool();
+    if(!remoteDirs.isEmpty()){
+      pool.execute(client -> {
+        for (String remoteDir : remoteDirs) {
+          // thư mục đã tồn tại thì MKD trả 550, bỏ qua
+          client.makeDirectory(remoteDir);
+        }
+        return null;
+      });
+    }
+
+    long totalBytes = 0;
+    List<BatchFile> ordered = new ArrayList<>();
+    List<BatchFile> small = new ArrayList<>();
+    for (BatchFile file : batch) {
+      totalBytes += file.size;
+      if(file.size >= LARGE_FILE_THRESHOLD){
+        ordered.add(file);
+      }else{
+        small.add(file);
+      }
+    }
+    ordered.addAll(small);
+    final ConcurrentLinkedQueue<BatchFile> queue = new ConcurrentLinkedQueue<>(ordered);
+    final ProgressAggregator.Entry progress = progressAggregator.track(token, totalBytes, 0);
+
+    List<Future<Boolean>> futures = new ArrayList<>();
+    for (int i = 0; i < Math.min(parallelism, batch.size()); i++) {
+      futures.add(segmentExecutor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return transferBatchWorker(task, pool, queue, options, progress);
+        }
+      }));
+    }
+    boolean completed = true;
+    try {
+      for (Future<Boolean> future : futures) {
+        completed &= future.get();
+      }
+    } catch (InterruptedException e) {
+      cancelAll(futures);
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return completed && !Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * Lấy lần lượt file từ 'queue' và upload/download trên cùng một session. Lỗi của từng file được ghi vào
+   * BatchFile.error, session lỗi thì bỏ đi và mượn session mới cho file sau.
+   * @return false nếu bị huỷ.
+   */
+  private boolean transferBatchWorker(final TransferScheduler.Task task, final FtpSessionPool pool,
+                                    ConcurrentLinkedQueue<BatchFile> queue,
+                                    TransferOptions options, final ProgressAggregator.Entry progress){
+    final FTPClient[] session = {null};
+    try {
+      BatchFile file;
+      while ((file = queue.poll()) != null) {
+        if(Thread.currentThread().isInterrupted()){
+          return false;
+        }
+        task.checkpoint();
+        final BatchFile current = file;
+        final long[] sent = {0};
+        try {
+          boolean finished = runWithRetries(task, options, current.download ? "batch download" : "batch upload", () -> {
+            // lần thử lại gửi lại từ đầu nên trừ phần đã tính vào tiến độ
+            progress.add(-sent[0]);
+            sent[0] = 0;
+            if(session[0] == null){
+              session[0] = pool.borrow();
+              session[0].setFileType(FTP.BINARY_FILE_TYPE);
+            }
+            if(current.checksum == null){
+              current.checksum = Checksum.create(options.checksumAlgorithm);
+            }
+            try {
+              TransferEngine.Progress counted = bytes -> {
+                sent[0] += bytes;
+                progress.add(bytes);
+              };
+              boolean stored = current.download
+                      ? retrieveBatchFile(pool, session[0], task, current, options, counted)
+                      : core.store(pool, session[0], task, current.localFile, current.remotePath, 0, false,
+                              options.compression, current.checksum, counted);
+              if(!stored){
+                pool.invalidate(session[0]);
+                session[0] = null;
+              }
+              return stored;
+            } catch (IOException e) {
+              pool.invalidate(session[0]);
+              session[0] = null;
+              throw e;
+            }
+          });
+          if(!finished){
+            return false;
+          }
+          current.succeeded = true;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        } catch (Exception e) {
+          current.error = e.getMessage();
+        }
+      }
+      return true;
+    } finally {
+      if(session[0] != null){
+        pool.release(session[0]);
+      }
+    }
+  }
+
+  /**
+   * Tải file của batch vào file tạm cạnh đích rồi mới đổi tên, để file local cũ không bị hỏng
+   * khi tải lỗi giữa chừng.
+   */
+  private boolean retrieveBatchFile(FtpSessionPool pool, FTPClient client, TransferScheduler.Task task, BatchFile file,
+                                    TransferOptions options, TransferEngine.Progress progress) throws IOException {
+    File parentDir = file.localFile.getParentFile();
+    if(parentDir != null && !parentDir.exists()){
+      parentDir.mkdirs();
+    }
+    File part = new File(file.localFile.getPath() + PART_FILE_SUFFIX);
+    if(!core.retrieve(pool, client, task, file.remotePath, part, 0, options.compression, file.checksum, progress)){
+      part.delete();
+      return false;
+    }
+    if(!part.renameTo(file.localFile)){
+      file.localFile.delete();
+      if(!part.renameTo(file.localFile)){
+        throw new IOException("can not replace local file " + file.localFile.getAbsolutePath());
+      }
+    }
+    return true;
+  }
+
+  private WritableMap batchResultToMap(String token, List<BatchFile> batch){
+    int uploaded = 0;
+    WritableArray results = Arguments.createArray();
+    for (BatchFile file : batch) {
+      WritableMap item = Arguments.createMap();
+      item.putString("localPath", file.localFile.getAbsolutePath());
+      item.putString("remotePath", file.remotePath);
+      item.putBoolean("success", file.succeeded);
+      if(file.error != null){
+        item.putString("error", file.error);
+      }
+      if(file.succeeded && file.checksum != null){
+        item.putMap("checksum", checksumToMap(file.checksum));
+      }
+      results.pushMap(item);
+      if(file.succeeded){
+        uploaded++;
+      }
+    }
+    WritableMap map = Arguments.createMap();
+    map.putString("token", token);
+    map.putInt("uploaded", uploaded);
+    map.putInt("failed", batch.size() - uploaded);
+    map.putArray("results", results);
+    return map;
+  }
+
+  /**
+   * Sync hai chiều (hoặc một chiều) giữa 'localDir' và 'remoteDir'. So size + thời gian sửa đổi
+   * (tuỳ chọn cả MD5) với manifest của lần sync trước để chỉ upload/download/xoá các file đã thay đổi.
+   * Phía server được đọc từ RemoteIndex của 'remoteDir' (dùng chung với updateIndex), chỉ các thư mục có mtime
+   * đã đổi mới bị LIST lại. Chạy như một batch trong lane upload (lane download nếu chỉ tải về), tiến độ theo options.token.
+   * @param localDir
+   * @param remoteDir
+   * @param direction: "upload", "download" hoặc "both".
+   * @param options: token, delete, conflict ("newer" | "local" | "remote" | "skip"), checksum, dryRun,
+   *               full (quét lại mọi thư mục trên server), parallelism, priority, retries, retryDelay.
+   * @param promise: resolve {token, uploaded, downloaded, deletedLocal, deletedRemote, unchanged, conflicts, failures}.
+   */
+  @ReactMethod
+  public void sync(final String localDir, final String remoteDir, final String direction,
+                   @Nullable final ReadableMap options, final Promise promise){
+    final SyncPlanner.Direction syncDirection;
+    final SyncPlanner.ConflictPolicy conflictPolicy;
+    final File localRoot;
+    final String remoteRoot;
+    try {
+      syncDirection = SyncPlanner.Direction.valueOf(direction.toUpperCase(Locale.US));
+      conflictPolicy = options != null && options.hasKey("conflict")
+              ? SyncPlanner.ConflictPolicy.valueOf(options.getString("conflict").toUpperCase(Locale.US))
+              : SyncPlanner.ConflictPolicy.NEWER;
+      localRoot = new File(URLDecoder.decode(localDir, "UTF-8"));
+      remoteRoot = ListingCache.normalize(URLDecoder.decode(remoteDir, "UTF-8"));
+    } catch (IllegalArgumentException | IOException e) {
+      promise.reject(RNFTPCLIENT_ERROR_CODE_SYNC, e.getMessage());
+      return;
+    }
+    final boolean propagateDeletes = options != null && options.hasKey("delete") && options.getBoolean("delete");
+    final boolean checksum = options != null && options.hasKey("checksum") && options.getBoolean("checksum");
+    final boolean dryRun = options != null && options.hasKey("dryRun") && options.getBoolean("dryRun");
+    final boolean fullScan = options != null && options.hasKey("full") && options.getBoolean("full");
+    final int parallelism = options != null && options.hasKey("parallelism")
+            ? Math.max(1, Math.min(MAX_BATCH_PARALLELISM, options.getInt("parallelism"))) : DEFAULT_BATCH_PARALLELISM;
+    String requested = options != null && options.hasKey("token")
+            ? options.getString("token") : String.valueOf(System.currentTimeMillis());
+    final String token = requested.startsWith(BATCH_TOKEN_PREFIX) ? requested : BATCH_TOKEN_PREFIX + requested;
+    final TransferOptions transferOptions = parseTransferOptions(options);
+
+    final TransferScheduler.Task task =
+            new TransferScheduler.Task(token, transferOptions) {
+              @Override
+              void execute() {
+                try {
+                  WritableMap result = runSync(this, token, localRoot, remoteRoot, syncDirection, conflictPolicy,
+                          propagateDeletes, checksum, dryRun, fullScan, transferOptions, parallelism);
+                  if(result == null){
+                    promise.reject(RNFTPCLIENT_ERROR_CODE_SYNC, ERROR_MESSAGE_CANCELLED);
+                  }else{
+                    promise.resolve(result);
+                  }
+                } catch (InterruptedException e) {
+                  promise.reject(RNFTPCLIENT_ERROR_CODE_SYNC, ERROR_MESSAGE_CANCELLED);
+                } catch (Exception e) {
+                  promise.reject(RNFTPCLIENT_ERROR_CODE_SYNC, e.getMessage());
+                } finally {
+                  progressAggregator.finish(token);
+                  invalidateRemote(remoteRoot);
+                }
+              }
+
+              @Override
+              void onCancelledBeforeStart() {
+                promise.reject(RNFTPCLIENT_ERROR_CODE_SYNC, ERROR_MESSAGE_CANCELLED);
+              }
+            };
+    // sync chỉ tải về thì chiếm chỗ trong lane download (huỷ bằng cancelDownloadFile), còn lại lane upload
+    TransferScheduler lane = syncDirection == SyncPlanner.Direction.DOWNLOAD ? downloadLane : uploadLane;
+    if(!lane.submit(task)){
+      promise.reject(RNFTPCLIENT_ERROR_CODE_SYNC, "same sync is runing");
+    }
+  }
+
+  /**
+   * Quét hai phía, lập kế hoạch, thực hiện rồi cập nhật manifest.
+   * @return null nếu bị huỷ.
+   */
+  private WritableMap runSync(TransferScheduler.Task task, String token, File localRoot, final String remoteRoot,
+                              SyncPlanner.Direction direction, SyncPlanner.ConflictPolicy conflictPolicy,
+                              boolean propagateDeletes, boolean checksum, boolean dryRun, boolean fullScan,
+                              TransferOptions options, int parallelism) throws Exception {
+    final FtpSessionPool pool = getPool();
+    if(!localRoot.exists() && direction != SyncPlanner.Direction.UPLOAD){
+      localRoot.mkdirs();
+    }
+    if(!localRoot.isDirectory()){
+      throw new IOException("local path is not a directory: " + localRoot.getAbsolutePath());
+    }
+    final boolean useMlsd = pool.execute(client -> {
+      // thư mục đích có thể chưa có, đã có thì MKD trả 550; chỉ tải về thì không tạo gì trên server
+      if(direction != SyncPlanner.Direction.DOWNLOAD){
+        client.makeDirectory(remoteRoot);
+      }
+      return pool.getFeatures(client).has("MLST");
+    });
+
+    Map<String, SyncPlanner.Stamp> local = new HashMap<>();
+    scanLocal(localRoot, "", local);
+    RemoteIndex index = indexOf(remoteRoot);
+    Map<String, SyncPlanner.Stamp> remote = scanRemote(index, fullScan, parallelism);
+    if(remote == null){
+      return null;
+    }
+
+    File manifestFile = syncManifestFile(pool.getConfig(), localRoot, remoteRoot);
+    SyncManifest manifest = SyncManifest.load(manifestFile);
+    SyncPlanner.Verifier verifier = checksum ? md5Verifier(pool, localRoot, remoteRoot) : null;
+    List<SyncPlanner.Action> actions = new SyncPlanner(direction, conflictPolicy, propagateDeletes, verifier)
+            .plan(local, remote, manifest);
+
+    SyncResult result = new SyncResult(token);
+    if(dryRun){
+      for (SyncPlanner.Action action : actions) {
+        result.count(action.type, action.path);
+      }
+      return result.toMap(true);
+    }
+
+    // xoá trước để không tải về/đẩy lên những thứ sắp bị xoá
+    List<SyncPlanner.Action> remoteDeletes = new ArrayList<>();
+    List<BatchFile> batch = new ArrayList<>();
+    Map<BatchFile, SyncPlanner.Action> transfers = new HashMap<>();
+    Set<String> remoteDirs = new TreeSet<>();
+    for (SyncPlanner.Action action : actions) {
+      File localFile = new File(localRoot, action.path);
+      String remotePath = TreeWalker.childPath(remoteRoot, action.path);
+      switch (action.type) {
+        case UPLOAD: {
+          BatchFile file = new BatchFile(localFile, remotePath);
+          batch.add(file);
+          transfers.put(file, action);
+          addRemoteParents(remoteRoot, action.path, remoteDirs);
+          break;
+        }
+        case DOWNLOAD: {
+          BatchFile file = new BatchFile(localFile, remotePath, action.remote.size, true);
+          batch.add(file);
+          transfers.put(file, action);
+          break;
+        }
+        case DELETE_LOCAL:
+          if(localFile.delete()){
+            manifest.remove(action.path);
+            result.count(action.type, action.path);
+          }else{
+            result.fail(action.path, "can not delete local file");
+          }
+          break;
+        case DELETE_REMOTE:
+          remoteDeletes.add(action);
+          break;
+        case RECORD:
+          manifest.put(action.path, action.local, action.remote);
+          result.count(action.type, action.path);
+          break;
+        case FORGET:
+          manifest.remove(action.path);
+          break;
+        case CONFLICT:
+          result.count(action.type, action.path);
+          break;
+      }
+    }
+    if(!remoteDeletes.isEmpty()){
+      deleteRemoteForSync(pool, remoteRoot, remoteDeletes, manifest, result);
+    }
+
+    boolean finished = batch.isEmpty()
+            || runTransferBatch(task, token, batch, new ArrayList<>(remoteDirs), options, parallelism);
+
+    // ghi lại trạng thái của các file đã chuyển xong, file lỗi/chưa chuyển giữ nguyên để lần sau làm lại
+    List<BatchFile> uploaded = new ArrayList<>();
+    for (BatchFile file : batch) {
+      SyncPlanner.Action action = transfers.get(file);
+      if(!file.succeeded){
+        if(file.error != null){
+          result.fail(action.path, file.error);
+        }
+        continue;
+      }
+      result.count(action.type, action.path);
+      if(file.download){
+        if(action.remote.mtime > 0){
+          file.localFile.setLastModified(action.remote.mtime);
+        }
+        manifest.put(action.path, new SyncPlanner.Stamp(file.localFile.length(), file.localFile.lastModified()), action.remote);
+      }else{
+        uploaded.add(file);
+      }
+    }
+    recordUploadedStamps(pool, remoteRoot, useMlsd, uploaded, transfers, manifest);
+    manifest.save();
+    // ghi đè tại chỗ không đổi mtime của thư mục: các thư mục vừa bị sync thay đổi được LIST lại ở lần sau
+    for (SyncPlanner.Action action : remoteDeletes) {
+      index.invalidate(TreeWalker.childPath(remoteRoot, action.path));
+    }
+    for (BatchFile file : uploaded) {
+      index.invalidate(file.remotePath);
+    }
+    index.save();
+    return finished ? result.toMap(false) : null;
+  }
+
+  private void scanLocal(File dir, String prefix, Map<String, SyncPlanner.Stamp> out){
+    File[] children = dir.listFiles();
+    if(children == null){
+      return;
+    }
+    for (File child : children) {
+      String path = prefix + child.getName();
+      if(child.isDirectory()){
+        scanLocal(child, path + "/", out);
+      }else if(child.isFile() && !child.getName().endsWith(PART_FILE_SUFFIX)
+              && !child.getName().endsWith(RESUME_MARKER_SUFFIX)){
+        out.put(path, new SyncPlanner.Stamp(child.length(), child.lastModified()));
+      }
+    }
+  }
+
+  /**
+   * Làm mới 'index' (lần đầu hoặc 'full' thì duyệt cả cây, còn lại chỉ LIST các thư mục có mtime đã đổi)
+   * rồi trả về đường dẫn tương đối -> size + mtime của mọi file.
+   * @return null nếu bị huỷ.
+   */
+  private Map<String, SyncPlanner.Stamp> scanRemote(RemoteIndex index, boolean full, int parallelism)
+          throws IOException, InterruptedException {
+    RemoteIndex.Update update = index.update(core, parallelism, full);
+    if(update == null){
+      return null;
+    }
+    // thư mục không LIST được thì không biết nó còn những file nào, sync trên đó có thể xoá nhầm
+    if(update.failures.get() > 0){
+      throw new IOException("can not list " + update.failures.get() + " remote director" + (update.failures.get() == 1 ? "y" : "ies"));
+    }
+    String root = index.getRootPath();
+    String prefix = root.endsWith("/") ? root : root + "/";
+    RemoteIndex.Query query = new RemoteIndex.Query();
+    query.type = RemoteIndex.TYPE_FILE;
+    query.limit = Integer.MAX_VALUE;
+    Map<String, SyncPlanner.Stamp> remote = new HashMap<>();
+    for (RemoteIndex.Hit hit : index.search(query)) {
+      remote.put(hit.path.substring(prefix.length()), new SyncPlanner.Stamp(hit.size, Math.max(0, hit.mtime)));
+    }
+    return remote;
+  }
+
+  private SyncPlanner.Stamp remoteStamp(FTPFile file){
+    Calendar timestamp = file.getTimestamp();
+    return new SyncPlanner.Stamp(file.getSize(), timestamp == null ? 0 : timestamp.getTimeInMillis());
+  }
+
+  // các thư mục từ remoteRoot xuống tới thư mục chứa 'path', cha đứng trước con khi sắp xếp
+  /**
+   * Mọi thư mục cha của 'remotePath' (không gồm chính nó), đường dẫn tuyệt đối hay tương đối.
+   */
+  private void addRemoteAncestors(String remotePath, Set<String> remoteDirs){
+    if(remotePath.startsWith("/")){
+      addRemoteParents("/", remotePath.substring(1), remoteDirs);
+    }else{
+      addRemoteParents(".", remotePath, remoteDirs);
+    }
+  }
+
+  private void addRemoteParents(String remoteRoot, String path, Set<String> remoteDirs){
+    int index = path.indexOf('/');
+    while (index > 0) {
+      remoteDirs.add(TreeWalker.childPath(remoteRoot, path.substring(0, index)));
+      index = path.indexOf('/', index + 1);
+    }
+  }
+
+  private void deleteRemoteForSync(FtpSessionPool pool, final String remoteRoot, final List<SyncPlanner.Action> deletes,
+                                   final SyncManifest manifest, final SyncResult result) throws IOException {
+    pool.execute(client -> {
+      for (SyncPlanner.Action action : deletes) {
+        if(client.deleteFile(TreeWalker.childPath(remoteRoot, action.path))){
+          manifest.remove(action.path);
+          result.count(action.type, action.path);
+        }else{
+          result.fail(action.path, client.getReplyString().trim());
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Sau khi upload, LIST lại các thư mục có file vừa upload để lấy size + mtime đúng như lần quét
+   * sau sẽ thấy, mỗi thư mục một lần.
+   */
+  private void recordUploadedStamps(FtpSessionPool pool, String remoteRoot, final boolean useMlsd, List<BatchFile> uploaded,
+                                    Map<BatchFile, SyncPlanner.Action> transfers, SyncManifest manifest){
+    Map<String, List<BatchFile>> byDir = new HashMap<>();
+    for (BatchFile file : uploaded) {
+      String dir = file.remotePath.substring(0, file.remotePath.lastIndexOf('/'));
+      List<BatchFile> files = byDir.get(dir);
+      if(files == null){
+        files = new ArrayList<>();
+        byDir.put(dir, files);
+      }
+      files.add(file);
+    }
+    for (Map.Entry<String, List<BatchFile>> entry : byDir.entrySet()) {
+      final String dir = entry.getKey().isEmpty() ? "/" : entry.getKey();
+      try {
+        FTPFile[] listing = pool.execute(client -> useMlsd ? client.mlistDir(dir) : client.listFiles(dir));
+        Map<String, FTPFile> byName = new HashMap<>();
+        for (FTPFile file : listing) {
+          if(file != null){
+            byName.put(file.getName(), file);
+          }
+        }
+        for (BatchFile file : entry.getValue()) {
+          FTPFile listed = byName.get(file.remotePath.substring(file.remotePath.lastIndexOf('/') + 1));
+          SyncPlanner.Action action = transfers.get(file);
+          if(listed != null){
+            manifest.put(action.path, action.local, remoteStamp(listed));
+          }
+        }
+      } catch (IOException e) {
+        Log.d(TAG, "sync can not read back uploaded stamps of " + dir, e);
+      }
+    }
+  }
+
+  private File syncManifestFile(FtpConfig config, File localRoot, String remoteRoot) throws IOException {
+    return new File(new File(reactContext.getFilesDir(), SYNC_MANIFEST_DIR),
+            md5Hex((config.key() + "|" + localRoot.getAbsolutePath() + "|" + remoteRoot).getBytes("UTF-8")) + ".json");
+  }
+
+  /**
+   * So MD5 của file local với MD5 do server tính (HASH, XMD5 hoặc MD5, như Checksum.verify).
+   * Server không có lệnh nào trong số đó thì không so được (trả null).
+   */
+  private SyncPlanner.Verifier md5Verifier(final FtpSessionPool pool, final File localRoot, final String remoteRoot) throws IOException {
+    final Checksum server = Checksum.create(Checksum.MD5);
+    boolean supported = pool.execute(client -> server.supportedBy(pool.getFeatures(client)));
+    if(!supported){
+      Log.d(TAG, "server has no MD5 hash command, sync compares size and mtime only");
+      return null;
+    }
+    return new SyncPlanner.Verifier() {
+      @Override
+      public boolean sameContent(String path) throws IOException {
+        final String remotePath = TreeWalker.childPath(remoteRoot, path);
+        String remoteHash = pool.execute(client -> server.queryServer(pool.getFeatures(client), client, remotePath));
+        return remoteHash != null && remoteHash.equals(localMd5(new File(localRoot, path)));
+      }
+    };
+  }
+
+  private String localMd5(File file) throws IOException {
+    Checksum checksum = Checksum.create(Checksum.MD5);
+    checksum.updateFromFile(file, file.length());
+    return checksum.hex();
+  }
+
+  private String md5Hex(byte[] data) throws IOException {
+    Checksum checksum = Checksum.create(Checksum.MD5);
+    checksum.update(data, 0, data.length);
+    return checksum.hex();
+  }
+
+  /**
+   * Tổng hợp kết quả sync, được ghi từ thread của sync và từ các lệnh xoá.
+   */
+  private static class SyncResult {
+    final String token;
+    int uploaded = 0;
+    int downloaded = 0;
+    int deletedLocal = 0;
+    int deletedRemote = 0;
+    int unchanged = 0;
+    final List<String> conflicts = new ArrayList<>();
+    final List<String[]> failures = new ArrayList<>();
+    // chỉ dùng cho dryRun: đường dẫn của từng loại việc
+    final List<String[]> planned = new ArrayList<>();
+
+    SyncResult(String token) {
+      this.token = token;
+    }
+
+    synchronized void count(SyncPlanner.ActionType type, String path) {
+      planned.add(new String[]{type.name().toLowerCase(Locale.US), path});
+      switch (type) {
+        case UPLOAD: uploaded++; break;
+        case DOWNLOAD: downloaded++; break;
+        case DELETE_LOCAL: deletedLocal++; break;
+        case DELETE_REMOTE: deletedRemote++; break;
+        case RECORD: unchanged++; break;
+        case CONFLICT: conflicts.add(path); break;
+        default: break;
+      }
+    }
+
+    synchronized void fail(String path, String error) {
+      failures.add(new String[]{path, error});
+    }
+
+    synchronized WritableMap toMap(boolean dryRun) {
+      WritableMap map = Arguments.createMap();
+      map.putString("token", token);
+      map.putInt("uploaded", uploaded);
+      map.putInt("downloaded", downloaded);
+      map.putInt("deletedLocal", deletedLocal);
+      map.putInt("deletedRemote", deletedRemote);
+      map.putInt("unchanged", unchanged);
+      WritableArray conflictArray = Arguments.createArray();
+      for (String path : conflicts) {
+        conflictArray.pushString(path);
+      }
+      map.putArray("conflicts", conflictArray);
+      WritableArray failureArray = Arguments.createArray();
+      for (String[] failure : failures) {
+        WritableMap item = Arguments.createMap();
+        item.putString("path", failure[0]);
+        item.putString("error", failure[1]);
+        failureArray.pushMap(item);
+      }
+      map.putArray("failures", failureArray);
+      if(dryRun){
+        WritableArray plan = Arguments.createArray();
+        for (String[] item : planned) {
+          WritableMap step = Arguments.createMap();
+          step.putString("action", item[0]);
+          step.putString("path", item[1]);
+          plan.pushMap(step);
+        }
+        map.putArray("plan", plan);
+      }
+      return map;
+    }
+  }
+
+  /**
+   * Kiểm tra file có tên 'remoteFileName' đã tồn tại trên FTP server chưa.
+   * @param remoteDirectory: đường dẫn file trên FTP server.
+   * @param remoteFileName: tên file.
+   * @param promise
+   */
+  @ReactMethod
+  public void checkFileExists(String remoteDirectory, String remoteFileName, Promise promise) {
+    metadataExecutor.execute(() -> {
+      try {
+        String remotePath = joinRemotePath(remoteDirectory, remoteFileName);
+        FTPFile file = core.stat(remotePath);
+        promise.resolve(file != null);
+      } catch (Exception e) {
+        promise.reject("FTP_ERROR", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Lấy thông tin một file/thư mục trên server: exists, name, size, timestamp, type.
+   * @param remotePath
+   * @param promise
+   */
+  @ReactMethod
+  public void statFile(final String remotePath, final Promise promise) {
+    metadataExecutor.execute(() -> {
+      try {
+        FTPFile file = core.stat(remotePath);
+        promise.resolve(statToMap(remotePath, file));
+      } catch (Exception e) {
+        promise.reject("FTP_ERROR", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Đọc 'length' byte của 'remotePath' từ 'offset' mà không tải cả file (REST + RETR rồi ABOR khi đủ).
+   * Đoạn nhỏ vừa đọc được giữ trong bộ nhớ một lúc.
+   * @param remotePath
+   * @param offset
+   * @param length
+   * @param options: localPath (tuỳ chọn) thì ghi đoạn đọc được vào file đó thay vì trả về base64.
+   * @param promise: {offset, length, data (base64) hoặc localPath}, length nhỏ hơn yêu cầu nếu file hết trước.
+   */
+  @ReactMethod
+  public void readRange(final String remotePath, final double offset, final double length, final ReadableMap options, final Promise promise){
+    final String localPath = options != null && options.hasKey("localPath") ? options.getString("localPath") : null;
+    (localPath != null ? treeExecutor : metadataExecutor).execute(() -> {
+      try {
+        if(localPath != null){
+          long written = core.readRange(remotePath, (long) offset, (long) length, new File(localPath));
+          promise.resolve(rangeToMap((long) offset, written, null, localPath));
+        } else {
+          byte[] data = core.readRange(remotePath, (long) offset, (int) length);
+          promise.resolve(rangeToMap((long) offset, data.length, data, null));
+        }
+      } catch (IllegalArgumentException | IOException e) {
+        promise.reject("FTP_ERROR", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Đọc 'bytes' byte cuối của 'remotePath' (cả file nếu nhỏ hơn), như readRange.
+   * @param remotePath
+   * @param bytes
+   * @param options: localPath (tuỳ chọn).
+   * @param promise: {offset, length, data (base64) hoặc localPath}.
+   */
+  @ReactMethod
+  public void tail(final String remotePath, final double bytes, final ReadableMap options, final Promise promise){
+    final String localPath = options != null && options.hasKey("localPath") ? options.getString("localPath") : null;
+    (localPath != null ? treeExecutor : metadataExecutor).execute(() -> {
+      try {
+        if(localPath != null){
+          long written = core.tail(remotePath, (long) bytes, new File(localPath));
+          promise.resolve(rangeToMap(-1, written, null, localPath));
+        } else {
+          byte[] data = core.tail(remotePath, (int) Math.min(bytes, FtpCore.MAX_RANGE_READ_BYTES));
+          promise.resolve(rangeToMap(-1, data.length, data, null));
+        }
+      } catch (IllegalArgumentException | IOException e) {
+        promise.reject("FTP_ERROR", e.getMessage());
+      }
+    });
+  }
+
+  private WritableMap rangeToMap(long offset, long length, byte[] data, String localPath){
+    WritableMap map = Arguments.createMap();
+    if(offset >= 0){
+      map.putDouble("offset", offset);
+    }
+    map.putDouble("length", length);
+    if(data != null){
+      map.putString("data", Base64.encodeToString(data, Base64.NO_WRAP));
+    }
+    if(localPath != null){
+      map.putString("localPath", localPath);
+    }
+    return map;
+  }
+
+  /**
+   * Kiểm tra nhiều file trong 'remoteDirectory' trên cùng một session, kết quả theo đúng thứ tự 'remoteFileNames'.
+   * @param remoteDirectory
+   * @param remoteFileNames
+   * @param promise
+   */
+  @ReactMethod
+  public void checkFilesExist(final String remoteDirectory, final ReadableArray remoteFileNames, final Promise promise) {
+    metadataExecutor.execute(() -> {
+      try {
+        WritableArray result = getPool().execute(client -> {
+          WritableArray items = Arguments.createArray();
+          for (int i = 0; i < remoteFileNames.size(); i++) {
+            String remotePath = joinRemotePath(remoteDirectory, remoteFileNames.getString(i));
+            items.pushMap(statToMap(remotePath, core.stat(client, remotePath)));
+          }
+          return items;
+        });
+        promise.resolve(result);
+      } catch (Exception e) {
+        promise.reject("FTP_ERROR", e.getMessage());
+      }
+    });
+  }
+
+  private String joinRemotePath(String directory, String name){
+    return directory.endsWith("/") ? directory + name : directory + "/" + name;
+  }
+
+  private WritableMap statToMap(String remotePath, FTPFile file){
+    WritableMap map = Arguments.createMap();
+    map.putString("path", remotePath);
+    map.putBoolean("exists", file != null);
+    if(file != null){
+      map.putString("name", file.getName());
+      map.putDouble("size", (double)file.getSize());
+      map.putString("type", getStringByType(file.getType()));
+      if(file.getTimestamp() != null){
+        map.putString("timestamp", ISO8601StringFromCalender(file.getTimestamp()));
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Tạo thư mục mới theo đường dẫn 'path'.
+   * @param path
+   * @param promise
+   */
+  @ReactMethod
+  public void makeDir(final String path, final Promise promise){
+    metadataExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          getPool().execute(client -> client.makeDirectory(path));
+          promise.resolve(true);
+        } catch (IOException e) {
+          promise.reject("ERROR",e.getMessage());
+        } finally {
+          invalidateRemote(path);
+        }
+      }
+    });
+  }
+
+  /**
+   * Huỷ upload file khi file đang trong quá trình upload từ điện thoại lên server.
+   * @param token
+   * @param promise
+   */
+  @ReactMethod
+  public void cancelUploadFile(final String token, final Promise promise){
+    // không chờ worker trên thread của bridge: data stream bị đóng ngay, promise resolve khi worker
+    // đã gửi ABOR và xoá file dở trên server
+    if(!uploadLane.cancel(token, () -> promise.resolve(true))){
+      promise.reject(RNFTPCLIENT_ERROR_CODE_UPLOAD,"token is wrong");
+    }
+  }
+
+  /**
+   * Xoá file upload dở trên server sau khi bị huỷ, trừ khi giữ lại để resume.
+   */
+  private void deleteRemotePartial(TransferOptions options, String remotePath){
+    if(options.resume){
+      return;
+    }
+    try {
+      getPool().execute(client -> client.deleteFile(remotePath));
+      invalidateRemote(remotePath);
+    } catch (Exception e) {
+      Log.d(TAG,"delete partial upload error",e);
+    }
+  }
+
+  /**
+   * Một lần thử upload/download. Trả về true khi xong, false khi bị huỷ.
+   */
+  private interface TransferAttempt {
+    boolean run() throws Exception;
+  }
+
+  /**
+   * Chạy 'attempt', nếu gặp lỗi mạng tạm thời thì chờ (retryDelay, nhân đôi sau mỗi lần)
+   * rồi thử lại, tối đa options.retries lần.
+   */
+  private boolean runWithRetries(TransferScheduler.Task task, TransferOptions options, String what,
+                                 TransferAttempt attempt) throws Exception {
+    int retried = 0;
+    while (true) {
+      try {
+        return attempt.run();
+      } catch (IOException e) {
+        metrics.countError(e);
+        if(!FtpCore.cancelled(task)){
+          task.reportError(e);
+        }
+        if (retried >= options.retries || !isTransientError(e) || Thread.currentThread().isInterrupted()) {
+          throw e;
+        }
+        long delay = Math.min(options.retryDelayMs << retried, MAX_RETRY_DELAY);
+        retried++;
+        metrics.count("retries");
+        Log.d(TAG, what + " failed, retry " + retried + " in " + delay + "ms", e);
+        Thread.sleep(delay);
+      }
+    }
+  }
+
+  private boolean isTransientError(IOException e){
+    return e instanceof SocketException
+            || e instanceof SocketTimeoutException
+            || e instanceof FTPConnectionClosedException
+            || e instanceof CopyStreamException
+            || e instanceof TransientTransferException;
+  }
+
+  /**
+   * SIZE của file trên server, 0 nếu file chưa tồn tại hoặc không đọc được (gửi lại từ đầu).
+   */
+  private long getRemoteSizeOrZero(FTPClient client, String remoteFilePath) throws IOException {
+    int code = client.sendCommand("SIZE", remoteFilePath);
+    if(code != 213){
+      return 0;
+    }
+    return Math.max(0, FtpCore.parseSize(client.getReplyStrings()[0]));
+  }
+
+  /**
+   * Upload file một lần trên một session của pool. Với 'resume' thì hỏi SIZE của file dở
+   * trên server (chỉ khi marker cho thấy nó do chính file local này gửi lên), bỏ qua bấy nhiêu byte
+   * ở file local rồi gửi tiếp bằng REST + STOR (nếu server hỗ trợ REST STREAM) hoặc APPE.
+   * @return true khi upload xong, false khi bị huỷ giữa chừng.
+   */
+  private boolean uploadOnce(TransferScheduler.Task task, String token, File localFile, String remotePath, boolean resume,
+                             @Nullable Checksum checksum) throws Exception {
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+
+      long totalBytes = localFile.length();
+      long offset = 0;
+      // job persistent luôn ghi marker để lần chạy lại từ journal biết file trên server có phải của nó không
+      boolean marked = resume || task.options.persistent;
+      if(marked){
+        offset = getUploadResumeOffset(client, localFile, remotePath, resume);
+      }
+      if(offset > 0 && offset == totalBytes){
+        progressAggregator.track(token, totalBytes, totalBytes);
+        verifyWholeFile(pool, client, checksum, localFile, remotePath);
+        reusable = true;
+        uploadMarkerOf(remotePath).delete();
+        return true;
+      }
+      Log.d(TAG,"Start uploading file: " + totalBytes + " from offset " + offset);
+      TransferEngine.Progress progress = progressAggregator.track(token, totalBytes, offset);
+      Log.d(TAG,"Resolve token:"+token);
+      boolean finished = core.store(pool, client, task, localFile, remotePath, offset, resume,
+              task.options.compression, checksum, progress);
+      reusable = finished;
+      Log.d(TAG,"Finish uploading");
+      if(finished && marked){
+        uploadMarkerOf(remotePath).delete();
+      }
+      return finished;
+    } finally {
+      invalidateRemote(remotePath);
+      FtpCore.release(pool, client, reusable);
+    }
+  }
+
+  /**
+   * Tính checksum trên cả file local (khi không có transfer nào để tính kèm) rồi so với server.
+   */
+  private void verifyWholeFile(FtpSessionPool pool, FTPClient client, @Nullable Checksum checksum,
+                               File localFile, String remotePath) throws IOException {
+    if(checksum == null){
+      return;
+    }
+    checksum.reset();
+    checksum.updateFromFile(localFile, localFile.length());
+    checksum.verify(pool, client, remotePath);
+  }
+
+  private String getLocalFilePath(String path, String remotePath){
+    if(path.endsWith("/")){
+      int index = remotePath.lastIndexOf("/");
+      return path + remotePath.substring(index+1);
+    }else{
+      return path;
+    }
+  }
+  private long getRemoteSize(FTPClient client, String remoteFilePath) throws Exception {
+    client.sendCommand("SIZE", remoteFilePath);
+    String[] reply = client.getReplyStrings();
+    String[] response = reply[0].split(" ");
+    if(client.getReplyCode() != 213){
+      throw new Exception(String.format("ftp client size cmd response %d",client.getReplyCode()));
+    }
+    return Long.parseLong(response[1]);
+  };
+
+  private String getRemoteModificationTime(FTPClient client, String remoteFilePath) throws IOException {
+    String reply = client.getModificationTime(remoteFilePath);
+    if(reply == null){
+      return "";
+    }
+    reply = reply.trim();
+    return reply.startsWith("213 ") ? reply.substring(4) : reply;
+  }
+
+  private File resumeMarkerOf(File localFile){
+    return new File(localFile.getPath() + RESUME_MARKER_SUFFIX);
+  }
+
+  /**
+   * Marker của upload lên 'remotePath' ở server hiện tại. Không ghi được cạnh file trên server
+   * nên đặt trong thư mục của app, tên theo hash, nội dung mới là thứ được so.
+   */
+  private File uploadMarkerOf(String remotePath){
+    String key = TransferJournal.serverOf(core.getConfig()) + "|" + remotePath;
+    return new File(new File(reactContext.getFilesDir(), UPLOAD_MARKER_DIR),
+            Integer.toHexString(key.hashCode()) + RESUME_MARKER_SUFFIX);
+  }
+
+  /**
+   * Offset để upload tiếp: SIZE của file trên server nếu marker ghi lúc bắt đầu upload vẫn khớp
+   * (cùng server, remotePath, đường dẫn, độ dài và thời gian sửa của file local). File trên server
+   * không có marker khớp (của file khác, hoặc file local đã bị sửa) thì gửi lại từ đầu bằng STOR,
+   * không ghép tiếp vào nó. Không 'resume' thì chỉ ghi marker mới và trả về 0.
+   */
+  private long getUploadResumeOffset(FTPClient client, File localFile, String remotePath, boolean resume) throws IOException {
+    File marker = uploadMarkerOf(remotePath);
+    String localStamp = TransferJournal.serverOf(core.getConfig()) + "|" + remotePath + "\n"
+            + localFile.getAbsolutePath() + "\n" + localFile.length() + " " + localFile.lastModified();
+    if(resume && marker.exists() && localStamp.equals(readSmallFile(marker))){
+      long remoteSize = getRemoteSizeOrZero(client, remotePath);
+      if(remoteSize <= localFile.length()){
+        return remoteSize;
+      }
+    }
+    writeSmallFile(marker, localStamp);
+    return 0;
+  }
+
+  /**
+   * Offset để tải tiếp: độ dài file local nếu file trên server vẫn là file lúc bắt đầu tải
+   * (cùng SIZE + MDTM lưu trong marker). File local không có marker (ví dụ lần tải trước đã xong) mà
+   * đủ 'totalBytes' và không cũ hơn file trên server thì coi là đã tải xong; còn lại tải lại từ đầu,
+   * không ghép tiếp vào file không chứng minh được là của file trên server này.
+   * Không 'resume' thì chỉ ghi marker mới và trả về 0.
+   */
+  private long getDownloadResumeOffset(File downloadFile, long totalBytes, String remoteModified, boolean resume) throws IOException {
+    File marker = resumeMarkerOf(downloadFile);
+    String remoteStamp = totalBytes + " " + remoteModified;
+    if(resume && downloadFile.exists() && marker.exists()){
+      if(downloadFile.length() <= totalBytes && remoteStamp.equals(readSmallFile(marker))){
+        return downloadFile.length();
+      }
+    }else if(resume && downloadFile.exists() && downloadFile.length() == totalBytes){
+      Calendar modified = FtpCore.parseMdtm(remoteModified);
+      if(modified != null && downloadFile.lastModified() >= modified.getTimeInMillis()){
+        return totalBytes;
+      }
+    }
+    writeSmallFile(marker, remoteStamp);
+    return 0;
+  }
+
+  private String readSmallFile(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[256];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toString("UTF-8");
+    } finally {
+      in.close();
     }
-    return Long.parseLong(response[1]);
-  };
+  }
+
+  private void writeSmallFile(File file, String content) throws IOException {
+    File parentDir = file.getParentFile();
+    if(parentDir != null && !parentDir.exists()){
+      parentDir.mkdirs();
+    }
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Tải file một lần trên một session của pool. Với 'resume' thì giữ phần đã tải và
+   * tiếp tục từ cuối file local bằng REST offset.
+   * @return true khi tải xong, false khi bị huỷ giữa chừng.
+   */
+  private boolean downloadOnce(TransferScheduler.Task task, String token, File downloadFile, String remotePath, boolean resume,
+                               @Nullable Checksum checksum) throws Exception {
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+
+      final long totalBytes = getRemoteSize(client,remotePath);
+      long offset = 0;
+      // như upload, job persistent luôn ghi marker cho lần chạy lại từ journal
+      boolean marked = resume || task.options.persistent;
+      if(marked){
+        offset = getDownloadResumeOffset(downloadFile, totalBytes, getRemoteModificationTime(client, remotePath), resume);
+      }
+      File parentDir = downloadFile.getParentFile();
+      if(parentDir != null && !parentDir.exists()){
+        parentDir.mkdirs();
+      }
+      if(offset > 0 && offset == totalBytes){
+        progressAggregator.track(token, totalBytes, totalBytes);
+        verifyWholeFile(pool, client, checksum, downloadFile, remotePath);
+        reusable = true;
+        resumeMarkerOf(downloadFile).delete();
+        return true;
+      }
+      Log.d(TAG,"Start downloading file from offset " + offset);
+      TransferEngine.Progress progress = progressAggregator.track(token, totalBytes, offset);
+      Log.d(TAG,"Resolve token:"+token);
+      boolean finished = core.retrieve(pool, client, task, remotePath, downloadFile, offset,
+              task.options.compression, checksum, progress);
+      reusable = finished;
+      Log.d(TAG,"Finish downloading");
+      if(finished && marked){
+        resumeMarkerOf(downloadFile).delete();
+      }
+      return finished;
+    } finally {
+      FtpCore.release(pool, client, reusable);
+    }
+  }
+
+  /**
+   * Tải file bằng nhiều kết nối song song: chia file thành các khoảng byte, mỗi khoảng tải qua
+   * một session riêng bằng REST offset và ghi thẳng vào đúng vị trí của file local đã cấp phát sẵn.
+   * @return null nếu server không hỗ trợ REST (hoặc file quá nhỏ) để bên gọi tải một luồng,
+   * true khi tải xong, false khi bị huỷ giữa chừng.
+   */
+  private Boolean downloadSegmented(final TransferScheduler.Task task, final String token, final File downloadFile,
+                                    final String remotePath, final TransferOptions options) throws Exception {
+    FtpSessionPool pool = getPool();
+    final long totalBytes;
+    boolean restSupported;
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+      totalBytes = getRemoteSize(client, remotePath);
+      restSupported = FTPReply.isPositiveIntermediate(client.sendCommand("REST", "0"));
+      reusable = true;
+    } finally {
+      FtpCore.release(pool, client, reusable);
+    }
+    int segments = (int)Math.min(options.segments, totalBytes / MIN_SEGMENT_SIZE);
+    if(!restSupported || segments < 2){
+      Log.d(TAG, "segmented download not possible, fall back to single stream");
+      return null;
+    }
+
+    File parentDir = downloadFile.getParentFile();
+    if(parentDir != null && !parentDir.exists()){
+      parentDir.mkdirs();
+    }
+    RandomAccessFile file = new RandomAccessFile(downloadFile, "rw");
+    try {
+      file.setLength(totalBytes);
+      final FileChannel channel = file.getChannel();
+      final TransferEngine.Progress progress = progressAggregator.track(token, totalBytes, 0);
+      Log.d(TAG,"Start downloading file in " + segments + " segments");
+
+      long segmentSize = totalBytes / segments;
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < segments; i++) {
+        final long start = i * segmentSize;
+        final boolean last = i == segments - 1;
+        final long end = last ? totalBytes : start + segmentSize;
+        futures.add(segmentExecutor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            // vị trí đã ghi tới, lần thử lại sẽ tiếp tục từ đây
+            final long[] position = {start};
+            return runWithRetries(task, options, "segment download",
+                    () -> downloadSegment(task, remotePath, channel, position, end, last, progress));
+          }
+        }));
+      }
+
+      boolean completed = true;
+      try {
+        for (Future<Boolean> future : futures) {
+          completed &= future.get();
+        }
+      } catch (InterruptedException e) {
+        cancelAll(futures);
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException e) {
+        cancelAll(futures);
+        Throwable cause = e.getCause();
+        throw cause instanceof Exception ? (Exception) cause : new IOException(cause);
+      }
+      return completed && !Thread.currentThread().isInterrupted();
+    } finally {
+      file.close();
+    }
+  }
+
+  private void cancelAll(List<Future<Boolean>> futures){
+    for (Future<Boolean> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Tải khoảng byte [position[0], end) của file trên một session riêng.
+   * Segment cuối đọc tới hết file nên kết thúc lệnh bình thường và trả session về pool; các
+   * segment khác phải đóng data connection giữa chừng nên session bị bỏ đi.
+   */
+  private boolean downloadSegment(TransferScheduler.Task task, String remotePath, FileChannel channel,
+                                  final long[] position, long end, boolean last, final TransferEngine.Progress progress) throws Exception {
+    if(position[0] >= end){
+      return true;
+    }
+    FtpSessionPool pool = getPool();
+    FTPClient client = pool.borrow();
+    boolean reusable = false;
+    try {
+      client.setFileType(FTP.BINARY_FILE_TYPE);
+      client.setRestartOffset(position[0]);
+      InputStream inputStream = client.retrieveFileStream(remotePath);
+      if(inputStream == null){
+        throw FtpCore.transferFailed(client, "ftp retrieve failed: " + client.getReplyString());
+      }
+      FtpCore.attach(task, inputStream);
+      try {
+        core.getTransferEngine().download(inputStream, channel, position[0], end - position[0], task, new TransferEngine.Progress() {
+          @Override
+          public void add(long bytes) {
+            position[0] += bytes;
+            progress.add(bytes);
+          }
+        });
+      } catch (IOException e) {
+        if(!FtpCore.cancelled(task)){
+          throw e;
+        }
+      } finally {
+        FtpCore.detach(task, inputStream);
+        FtpCore.closeQuietly(inputStream);
+      }
+      if(FtpCore.cancelled(task)){
+        FtpCore.abort(client);
+        return false;
+      }
+      if(position[0] < end){
+        throw new TransientTransferException("segment closed early at " + position[0]);
+      }
+      if(last){
+        boolean done = client.completePendingCommand();
+        reusable = true;
+        if(!done){
+          throw FtpCore.transferFailed(client, "segment is not download successfully.");
+        }
+      }
+      return true;
+    } finally {
+      FtpCore.release(pool, client, reusable);
+    }
+  }
 
   /**
    * Download file từ 'remoteDestinationPath' trên server về 'path' trên điện thoại.
@@ -460,90 +2200,100 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void downloadFile(final String path,final String remoteDestinationPath, final Promise promise){
-    final String token = makeDownloadToken(path,remoteDestinationPath);
-    if(downloadingTasks.containsKey(token)){
-      promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,"same downloading task is runing");
-      return;
-    }
-    if(downloadingTasks.size() >= MAX_DOWNLOAD_COUNT){
-      promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,"has reach max downloading tasks");
-      return;
-    }
+    enqueueDownload(path, remoteDestinationPath, null, promise);
+  }
+
+  /**
+   * Đưa file vào hàng đợi download, tương tự enqueueUpload.
+   * Với resume: true, file local đang tải dở được giữ lại khi lỗi/huỷ và lần sau tải tiếp
+   * từ chỗ đã dừng; lỗi mạng sẽ được tự động thử lại (retries, retryDelay tăng dần).
+   * @param path: đường dẫn trên điện thoại, nơi lưu file về.
+   * @param remoteDestinationPath: đường dẫn file trên FTP server.
+   * Với segments: N (không dùng cùng resume), file lớn được chia thành N khoảng byte và tải
+   * song song qua N session bằng REST offset; server không hỗ trợ REST thì tải một luồng.
+   * Với checksumAlgorithm, như enqueueUpload; download nhiều đoạn thì checksum được tính bằng cách đọc lại
+   * file sau khi tải xong vì các đoạn không về theo thứ tự.
+   * Với persistent: true, như enqueueUpload.
+   * @param options: {priority, resume, retries, retryDelay, segments, checksumAlgorithm, persistent}
+   * @param promise
+   */
+  @ReactMethod
+  public void enqueueDownload(final String path,final String remoteDestinationPath, @Nullable ReadableMap options, final Promise promise){
     if(remoteDestinationPath.endsWith("/")){
       promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,"remote path can not be a dir");
       return;
     }
+    submitDownload(makeDownloadToken(path,remoteDestinationPath), path, remoteDestinationPath,
+            parseTransferOptions(options), callbackOf(promise));
+  }
+
+  private void submitDownload(final String token, final String path, final String remoteDestinationPath,
+                              final TransferOptions transferOptions, TransferCallback result){
+    boolean journaled = addToJournal(token, TransferJournal.DOWNLOAD, path, remoteDestinationPath, transferOptions);
+    final TransferCallback callback = transferOptions.persistent ? endingJournal(token, result) : result;
 
-    final Thread t =
-            new Thread(new Runnable() {
+    final TransferScheduler.Task task =
+            new TransferScheduler.Task(token, transferOptions) {
               @Override
-              public void run() {
-                FTPClient client = new FTPClient();
+              void execute() {
+                File downloadFile = new File(getLocalFilePath(path,remoteDestinationPath));
+                if(!transferOptions.resume && downloadFile.exists()){
+                  callback.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD, String.format("local file exist: %s", downloadFile.getAbsolutePath()));
+                  return;
+                }
                 try {
-                  login(client);
-                  client.setFileType(FTP.BINARY_FILE_TYPE);
-
-                  final long totalBytes = getRemoteSize(client,remoteDestinationPath);
-                  File downloadFile = new File(getLocalFilePath(path,remoteDestinationPath));
-                  if(downloadFile.exists()){
-                    throw new Error(String.format("local file exist",downloadFile.getAbsolutePath()));
-                  }
-                  File parentDir = downloadFile.getParentFile();
-                  if(parentDir != null && !parentDir.exists()){
-                    parentDir.mkdirs();
-                  }
-                  downloadFile.createNewFile();
-                  long finishBytes = 0;
-
-                  Log.d(TAG,"Start downloading file");
-
-                  OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(downloadFile));
-                  InputStream inputStream = client.retrieveFileStream(remoteDestinationPath);
-                  byte[] bytesIn = new byte[4096];
-                  int read = 0;
-
-                  sendProgressEventToToken(token,0);
-                  Log.d(TAG,"Resolve token:"+token);
-                  int lastPercentage = 0;
-
-                  while ((read = inputStream.read(bytesIn)) != -1 && !Thread.currentThread().isInterrupted()) {
-                    outputStream.write(bytesIn, 0, read);
-                    finishBytes += read;
-                    int newPercentage = (int)(finishBytes*100/totalBytes);
-                    if(newPercentage>lastPercentage){
-                      sendProgressEventToToken(token,newPercentage);
-                      lastPercentage = newPercentage;
+                  final Checksum checksum = Checksum.create(transferOptions.checksumAlgorithm);
+                  Boolean segmented = null;
+                  // file chia đoạn được cấp phát đủ độ dài ngay từ đầu nên không chạy tiếp được từ journal
+                  if(transferOptions.segments > 1 && !transferOptions.resume && !transferOptions.persistent){
+                    segmented = downloadSegmented(this, token, downloadFile, remoteDestinationPath, transferOptions);
+                    if(segmented != null && segmented && checksum != null){
+                      final FtpSessionPool pool = getPool();
+                      pool.execute(client -> {
+                        verifyWholeFile(pool, client, checksum, downloadFile, remoteDestinationPath);
+                        return null;
+                      });
                     }
                   }
-                  inputStream.close();
-                  outputStream.close();
-                  Log.d(TAG,"Finish uploading");
-
-                  //if not interrupted
-                  if(!Thread.currentThread().isInterrupted()) {
-                    boolean done = client.completePendingCommand();
-
-                    if (done) {
-                      promise.resolve(true);
-                    } else {
-                      promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD, downloadFile.getName() + " is not download successfully.");
+                  boolean finished = segmented != null
+                          ? segmented
+                          : runWithRetries(this, transferOptions, "download",
+                              () -> downloadOnce(this, token, downloadFile, remoteDestinationPath, transferOptions.resume, checksum));
+                  if(finished){
+                    callback.resolve(transferResultToMap(checksum));
+                  }else{
+                    //interupted, cancel download operation
+                    callback.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,ERROR_MESSAGE_CANCELLED);
+                    if(!transferOptions.resume){
                       downloadFile.delete();
                     }
-                  }else{
-                    //interupted, the file will deleted by cancel download operation
-                    promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,ERROR_MESSAGE_CANCELLED);
+                  }
+                } catch (InterruptedException e) {
+                  callback.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,ERROR_MESSAGE_CANCELLED);
+                  if(!transferOptions.resume){
                     downloadFile.delete();
                   }
                 } catch (Exception e) {
-                  promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,e.getMessage());
+                  callback.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,e.getMessage());
+                  if(!transferOptions.resume){
+                    downloadFile.delete();
+                  }
                 } finally {
-                  downloadingTasks.remove(token);
-                  logout(client);
+                  progressAggregator.finish(token);
                 }
               }
-            });
-    t.start();
-    downloadingTasks.put(token,t);
+
+              @Override
+              void onCancelledBeforeStart() {
+                callback.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,ERROR_MESSAGE_CANCELLED);
+              }
+            };
+    if(!downloadLane.submit(task)){
+      if(journaled){
+        journal.end(token, TransferJournal.END_FAILED);
+      }
+      result.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,"same downloading task is runing");
+    }
   }
 
   /**
@@ -553,22 +2303,226 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void cancelDownloadFile(final String token, final Promise promise){
+    // như cancelUploadFile, file local dở bị xoá trên worker
+    if(!downloadLane.cancel(token, () -> promise.resolve(true))){
+      promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,"token is wrong");
+    }
+  }
 
-    Thread download = downloadingTasks.get(token);
+  private TransferScheduler laneOf(String token){
+    return uploadLane.contains(token) ? uploadLane : downloadLane;
+  }
 
-    if(download == null){
-      promise.reject(RNFTPCLIENT_ERROR_CODE_DOWNLOAD,"token is wrong");
-      return;
+  private TransferOptions parseTransferOptions(@Nullable ReadableMap options){
+    TransferOptions transferOptions = new TransferOptions();
+    if(options == null){
+      return transferOptions;
+    }
+    if(options.hasKey("priority")){
+      transferOptions.priority = options.getInt("priority");
+    }
+    if(options.hasKey("resume")){
+      transferOptions.resume = options.getBoolean("resume");
+      if(transferOptions.resume){
+        transferOptions.retries = DEFAULT_RESUME_RETRIES;
+      }
+    }
+    if(options.hasKey("persistent")){
+      // chỉ lần chạy lại từ journal mới tiếp tục phần đã truyền, lần đầu theo 'resume' như transfer thường
+      transferOptions.persistent = options.getBoolean("persistent");
+    }
+    if(options.hasKey("segments")){
+      transferOptions.segments = Math.max(1, Math.min(MAX_DOWNLOAD_SEGMENTS, options.getInt("segments")));
+      if(transferOptions.segments > 1){
+        transferOptions.retries = DEFAULT_RESUME_RETRIES;
+      }
+    }
+    if(options.hasKey("retries")){
+      transferOptions.retries = Math.max(0, options.getInt("retries"));
+    }
+    if(options.hasKey("retryDelay")){
+      transferOptions.retryDelayMs = Math.max(0, (long)options.getDouble("retryDelay"));
+    }
+    if(options.hasKey("maxBytesPerSecond")){
+      transferOptions.maxBytesPerSecond = Math.max(BandwidthLimiter.UNLIMITED, (long)options.getDouble("maxBytesPerSecond"));
+    }
+    if(options.hasKey("checksumAlgorithm")){
+      transferOptions.checksumAlgorithm = options.getString("checksumAlgorithm");
+    }
+    if(options.hasKey("compression")){
+      // giá trị lạ được coi như "off"
+      String compression = options.getString("compression");
+      transferOptions.compression = Compression.isValidMode(compression) ? compression : Compression.OFF;
+    }
+    return transferOptions;
+  }
+
+  /**
+   * Tạm dừng upload/download theo token. Task đang chờ sẽ không được chạy,
+   * task đang chạy sẽ dừng ở lần đọc/ghi kế tiếp cho tới khi resume.
+   * @param token
+   * @param promise
+   */
+  @ReactMethod
+  public void pauseTransfer(final String token, final Promise promise){
+    if(laneOf(token).pause(token)){
+      promise.resolve(true);
+    }else{
+      promise.reject(RNFTPCLIENT_ERROR_CODE_TRANSFER,"token is wrong");
+    }
+  }
+
+  /**
+   * Tiếp tục upload/download đã bị pause.
+   * @param token
+   * @param promise
+   */
+  @ReactMethod
+  public void resumeTransfer(final String token, final Promise promise){
+    if(laneOf(token).resume(token)){
+      promise.resolve(true);
+    }else{
+      promise.reject(RNFTPCLIENT_ERROR_CODE_TRANSFER,"token is wrong");
+    }
+  }
+
+  /**
+   * Đổi priority của upload/download đang chờ trong hàng đợi.
+   * @param token
+   * @param priority: số càng lớn càng được chạy trước.
+   * @param promise
+   */
+  @ReactMethod
+  public void setTransferPriority(final String token, int priority, final Promise promise){
+    if(laneOf(token).reprioritize(token, priority)){
+      promise.resolve(true);
+    }else{
+      promise.reject(RNFTPCLIENT_ERROR_CODE_TRANSFER,"token is wrong");
+    }
+  }
+
+  /**
+   * Đổi giới hạn tốc độ của một upload/download (kể cả khi đang chạy).
+   * @param token
+   * @param bytesPerSecond: 0 là không giới hạn.
+   * @param promise
+   */
+  @ReactMethod
+  public void setTransferBandwidth(final String token, double bytesPerSecond, final Promise promise){
+    if(laneOf(token).setBandwidth(token, (long)bytesPerSecond)){
+      promise.resolve(true);
+    }else{
+      promise.reject(RNFTPCLIENT_ERROR_CODE_TRANSFER,"token is wrong");
+    }
+  }
+
+  /**
+   * Giới hạn tốc độ chung cho tất cả upload và tất cả download, có hiệu lực ngay với các transfer đang chạy.
+   * list/stat/makeDir... không bị giới hạn.
+   * @param options: upload, download (byte/s, 0 là không giới hạn).
+   */
+  @ReactMethod
+  public void setBandwidthLimit(ReadableMap options){
+    TransferEngine engine = core.getTransferEngine();
+    if(options.hasKey("upload")){
+      engine.getUploadLimit().setRate((long)options.getDouble("upload"));
+    }
+    if(options.hasKey("download")){
+      engine.getDownloadLimit().setRate((long)options.getDouble("download"));
+    }
+  }
+
+  /**
+   * Cấu hình số transfer chạy đồng thời của lane 'lane' ("upload" hoặc "download"): adaptive (mặc định true,
+   * false là chạy cố định 'max'), min, max (giới hạn của controller), interval (ms giữa hai lần đo).
+   * @param lane
+   * @param options
+   */
+  @ReactMethod
+  public void setConcurrencyOptions(String lane, ReadableMap options){
+    ConcurrencyController controller = "download".equals(lane) ? downloadConcurrency : uploadConcurrency;
+    ConcurrencyController.Options opts = controller.getOptions();
+    if(options.hasKey("adaptive")){
+      opts.adaptive = options.getBoolean("adaptive");
+    }
+    if(options.hasKey("min")){
+      opts.min = options.getInt("min");
+    }
+    if(options.hasKey("max")){
+      opts.max = options.getInt("max");
+    }
+    if(options.hasKey("interval")){
+      opts.intervalMs = (long)options.getDouble("interval");
+    }
+    controller.setOptions(opts);
+  }
+
+  /**
+   * Trạng thái của hai lane: {upload, download}, mỗi lane có số slot hiện tại (level), số task đang chạy/chờ,
+   * số liệu đo lần gần nhất và các lần đổi số slot gần đây (decisions).
+   * @param promise
+   */
+  @ReactMethod
+  public void getConcurrency(final Promise promise){
+    WritableMap result = Arguments.createMap();
+    result.putMap("upload", concurrencyStatusToMap(uploadConcurrency.status()));
+    result.putMap("download", concurrencyStatusToMap(downloadConcurrency.status()));
+    promise.resolve(result);
+  }
+
+  private WritableMap concurrencyStatusToMap(ConcurrencyController.Status status){
+    WritableMap map = Arguments.createMap();
+    map.putBoolean("adaptive", status.options.adaptive);
+    map.putInt("min", status.options.min);
+    map.putInt("max", status.options.max);
+    map.putInt("level", status.level);
+    map.putInt("active", status.active);
+    map.putInt("queued", status.queued);
+    map.putDouble("throughput", status.throughput);
+    map.putDouble("rtt", status.rttMs);
+    map.putDouble("baseRtt", status.baseRttMs);
+    WritableArray decisions = Arguments.createArray();
+    for (ConcurrencyController.Decision decision : status.decisions) {
+      decisions.pushMap(decisionToMap(decision));
     }
-    download.interrupt();
-    FTPClient client = new FTPClient();
-    try{
-      download.join();
-    }catch (Exception e){
-      Log.d(TAG,"cancel download error",e);
+    map.putArray("decisions", decisions);
+    return map;
+  }
+
+  private WritableMap decisionToMap(ConcurrencyController.Decision decision){
+    WritableMap map = Arguments.createMap();
+    map.putDouble("time", decision.time);
+    map.putInt("from", decision.from);
+    map.putInt("to", decision.to);
+    map.putString("reason", decision.reason);
+    map.putDouble("throughput", decision.throughput);
+    map.putDouble("rtt", decision.rttMs);
+    map.putDouble("errors", decision.errors);
+    map.putDouble("timeouts", decision.timeouts);
+    return map;
+  }
+
+  /**
+   * Danh sách các upload/download đang chờ hoặc đang chạy.
+   * @param promise
+   */
+  @ReactMethod
+  public void getTransfers(final Promise promise){
+    WritableArray result = Arguments.createArray();
+    pushTransfers(result, uploadLane, "upload");
+    pushTransfers(result, downloadLane, "download");
+    promise.resolve(result);
+  }
+
+  private void pushTransfers(WritableArray result, TransferScheduler lane, String type){
+    for (TransferScheduler.Task task : lane.snapshot()) {
+      WritableMap tmp = Arguments.createMap();
+      tmp.putString("token", task.token);
+      tmp.putString("type", type);
+      tmp.putString("state", task.getState().name().toLowerCase());
+      tmp.putInt("priority", task.getPriority());
+      result.pushMap(tmp);
     }
-    downloadingTasks.remove(token);
-    promise.resolve(true);
   }
 
   /**
@@ -579,14 +2533,11 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void moveFileOrDirectory(final String sourcePath, final String destinationPath, final Promise promise) {
-    new Thread(new Runnable() {
+    metadataExecutor.execute(new Runnable() {
       @Override
       public void run() {
-        FTPClient client = new FTPClient();
         try {
-          login(client); // Đăng nhập FTP server
-
-          boolean success = client.rename(sourcePath, destinationPath);
+          boolean success = getPool().execute(client -> client.rename(sourcePath, destinationPath));
 
           if (success) {
             promise.resolve(true);
@@ -596,27 +2547,34 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
         } catch (IOException e) {
           promise.reject("ERROR", e.getMessage());
         } finally {
-          logout(client); // Đăng xuất
+          invalidateRemote(sourcePath);
+          invalidateRemote(destinationPath);
         }
       }
-    }).start();
+    });
   }
 
-  private long calculateFolderSize(FTPClient client, String remotePath) throws IOException {
-    long totalSize = 0;
-
-    FTPFile[] files = client.listFiles(remotePath);
-
-    for (FTPFile file : files) {
-      String filePath = remotePath + "/" + file.getName();
-      if (file.isFile()) {
-        totalSize += file.getSize();
-      } else if (file.isDirectory() && !file.getName().equals(".") && !file.getName().equals("..")) {
-        totalSize += calculateFolderSize(client, filePath); // đệ quy
+  /**
+   * Tính tổng của cây 'remotePath' qua core, gửi event FolderScanProgress trong lúc duyệt.
+   * @return node gốc, null nếu bị huỷ.
+   */
+  private TreeWalker.Node scanFolder(final String remotePath, int parallelism, boolean useCache) throws IOException, InterruptedException {
+    return core.scanFolder(remotePath, parallelism, useCache, new FtpCore.ScanListener() {
+      @Override
+      public void onProgress(TreeWalker walker, boolean done) {
+        sendFolderScanProgress(remotePath, walker, done);
       }
-    }
+    });
+  }
 
-    return totalSize;
+  private void sendFolderScanProgress(String remotePath, TreeWalker walker, boolean done){
+    WritableMap params = Arguments.createMap();
+    params.putString("path", remotePath);
+    params.putDouble("dirsScanned", (double)walker.getDirsScanned());
+    params.putDouble("files", (double)walker.getFilesFound());
+    params.putDouble("bytes", (double)walker.getBytesFound());
+    params.putBoolean("done", done);
+    sendEvent(reactContext, RNFTPCLIENT_FOLDER_SCAN_EVENT_NAME, params);
   }
 
   /**
@@ -626,21 +2584,218 @@ public class RNFtpClientModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void getFolderSize(String remotePath, Promise promise) {
-    new Thread(new Runnable() {
+    treeExecutor.execute(new Runnable() {
       @Override
       public void run() {
-        FTPClient client = new FTPClient();
         try {
-          login(client);
-          long size = calculateFolderSize(client, remotePath);
-          promise.resolve((double)size); // trả về byte
-        } catch (IOException e) {
+          TreeWalker.Node root = scanFolder(remotePath, TreeWalker.DEFAULT_PARALLELISM, true);
+          if(root == null){
+            promise.reject("ERROR", ERROR_MESSAGE_CANCELLED);
+            return;
+          }
+          promise.resolve((double)root.bytes.get()); // trả về byte
+        } catch (IOException | InterruptedException e) {
           promise.reject("ERROR", e.getMessage());
-        } finally {
-          logout(client);
         }
       }
-    }).start();
+    });
+  }
+
+  /**
+   * Như getFolderSize nhưng trả về {bytes, files, dirs}.
+   * @param remotePath
+   * @param options: parallelism (số session duyệt song song, tối đa 8), useCache (mặc định true).
+   * @param promise
+   */
+  @ReactMethod
+  public void getFolderStats(final String remotePath, @Nullable final ReadableMap options, final Promise promise) {
+    final int parallelism = options != null && options.hasKey("parallelism")
+            ? options.getInt("parallelism") : TreeWalker.DEFAULT_PARALLELISM;
+    final boolean useCache = options == null || !options.hasKey("useCache") || options.getBoolean("useCache");
+    treeExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          TreeWalker.Node root = scanFolder(remotePath, parallelism, useCache);
+          if(root == null){
+            promise.reject("ERROR", ERROR_MESSAGE_CANCELLED);
+            return;
+          }
+          WritableMap stats = Arguments.createMap();
+          stats.putDouble("bytes", (double)root.bytes.get());
+          stats.putDouble("files", (double)root.files.get());
+          stats.putDouble("dirs", (double)root.dirs.get());
+          promise.resolve(stats);
+        } catch (IOException | InterruptedException e) {
+          promise.reject("ERROR", e.getMessage());
+        }
+      }
+    });
+  }
+
+  /**
+   * Dừng getFolderSize/getFolderStats hoặc remove thư mục đang duyệt 'remotePath'.
+   * @param remotePath
+   * @param promise
+   */
+  @ReactMethod
+  public void cancelFolderScan(final String remotePath, final Promise promise) {
+    promise.resolve(core.cancelScan(remotePath));
+  }
+
+  /**
+   * Tạo hoặc làm mới chỉ mục của cây 'remoteRoot' (lưu trong app storage, mỗi server một chỉ mục cho mỗi gốc).
+   * Lần đầu duyệt song song cả cây, các lần sau chỉ LIST lại thư mục có mtime đã đổi.
+   * cancelFolderScan(remoteRoot) dừng được, chỉ mục cũ được giữ nguyên.
+   * @param remoteRoot
+   * @param options: parallelism (mặc định 4, tối đa 8), full (true: duyệt lại cả cây).
+   * @param promise: {root, dirs, files, bytes, updatedAt, full, dirsChecked, dirsListed, failures, durationMs}.
+   */
+  @ReactMethod
+  public void updateIndex(final String remoteRoot, @Nullable final ReadableMap options, final Promise promise) {
+    final int parallelism = options != null && options.hasKey("parallelism")
+            ? options.getInt("parallelism") : TreeWalker.DEFAULT_PARALLELISM;
+    final boolean full = options != null && options.hasKey("full") && options.getBoolean("full");
+    treeExecutor.execute(() -> {
+      try {
+        RemoteIndex index = indexOf(remoteRoot);
+        RemoteIndex.Update update = index.update(core, parallelism, full);
+        if(update == null){
+          promise.reject("ERROR", ERROR_MESSAGE_CANCELLED);
+          return;
+        }
+        WritableMap result = indexInfoToMap(index.info());
+        result.putBoolean("full", update.full);
+        result.putDouble("dirsChecked", (double)update.dirsChecked.get());
+        result.putDouble("dirsListed", (double)update.dirsListed.get());
+        result.putDouble("failures", (double)update.failures.get());
+        result.putDouble("durationMs", (double)update.durationMs);
+        promise.resolve(result);
+      } catch (IOException | InterruptedException e) {
+        promise.reject("ERROR", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Tìm trong chỉ mục của 'remoteRoot' mà không gửi lệnh nào lên server.
+   * @param remoteRoot
+   * @param query: under, prefix, glob (* và ?), caseSensitive, type ("file"/"dir"), minSize, maxSize,
+   *             modifiedAfter, modifiedBefore (ms), limit (mặc định 500).
+   * @param promise: mảng {path, type, size, timestamp, modifiedAt} theo thứ tự đường dẫn.
+   */
+  @ReactMethod
+  public void searchIndex(final String remoteRoot, final ReadableMap query, final Promise promise) {
+    metadataExecutor.execute(() -> {
+      try {
+        RemoteIndex.Query q = new RemoteIndex.Query();
+        q.under = query.hasKey("under") ? query.getString("under") : null;
+        q.prefix = query.hasKey("prefix") ? query.getString("prefix") : null;
+        q.glob = query.hasKey("glob") ? query.getString("glob") : null;
+        q.caseSensitive = query.hasKey("caseSensitive") && query.getBoolean("caseSensitive");
+        q.type = query.hasKey("type") ? query.getString("type") : null;
+        q.minSize = query.hasKey("minSize") ? (long) query.getDouble("minSize") : -1;
+        q.maxSize = query.hasKey("maxSize") ? (long) query.getDouble("maxSize") : -1;
+        q.modifiedAfter = query.hasKey("modifiedAfter") ? (long) query.getDouble("modifiedAfter") : -1;
+        q.modifiedBefore = query.hasKey("modifiedBefore") ? (long) query.getDouble("modifiedBefore") : -1;
+        q.limit = query.hasKey("limit") ? query.getInt("limit") : RemoteIndex.DEFAULT_SEARCH_LIMIT;
+        WritableArray result = Arguments.createArray();
+        for (RemoteIndex.Hit hit : indexOf(remoteRoot).search(q)) {
+          WritableMap item = Arguments.createMap();
+          item.putString("path", hit.path);
+          item.putString("type", hit.directory ? "dir" : "file");
+          item.putDouble("size", (double)hit.size);
+          if(hit.mtime != RemoteIndex.UNKNOWN){
+            Calendar timestamp = Calendar.getInstance();
+            timestamp.setTimeInMillis(hit.mtime);
+            item.putString("timestamp", ISO8601StringFromCalender(timestamp));
+            item.putDouble("modifiedAt", (double)hit.mtime);
+          }
+          result.pushMap(item);
+        }
+        promise.resolve(result);
+      } catch (IOException e) {
+        promise.reject("ERROR", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Thông tin chỉ mục của 'remoteRoot': {root, built, dirs, files, bytes, updatedAt}.
+   * @param remoteRoot
+   * @param promise
+   */
+  @ReactMethod
+  public void getIndexInfo(final String remoteRoot, final Promise promise) {
+    metadataExecutor.execute(() -> {
+      try {
+        promise.resolve(indexInfoToMap(indexOf(remoteRoot).info()));
+      } catch (IOException e) {
+        promise.reject("ERROR", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Xoá chỉ mục của 'remoteRoot' cả trong bộ nhớ lẫn file.
+   * @param remoteRoot
+   * @param promise
+   */
+  @ReactMethod
+  public void removeIndex(final String remoteRoot, final Promise promise) {
+    metadataExecutor.execute(() -> {
+      try {
+        indexOf(remoteRoot).delete();
+        promise.resolve(true);
+      } catch (IOException e) {
+        promise.reject("ERROR", e.getMessage());
+      }
+    });
+  }
+
+  private RemoteIndex indexOf(String remoteRoot) throws IOException {
+    FtpConfig config = core.getConfig();
+    if(config == null){
+      throw new IOException("ftp client is not setup");
+    }
+    String root = ListingCache.normalize(remoteRoot);
+    String key = config.key() + "|" + root;
+    RemoteIndex index = indexes.get(key);
+    if(index == null){
+      File file = new File(new File(reactContext.getFilesDir(), INDEX_DIR), md5Hex(key.getBytes("UTF-8")) + ".idx");
+      index = RemoteIndex.open(file, root);
+      RemoteIndex previous = indexes.putIfAbsent(key, index);
+      if(previous != null){
+        index = previous;
+      }
+    }
+    return index;
+  }
+
+  private WritableMap indexInfoToMap(RemoteIndex.Info info){
+    WritableMap map = Arguments.createMap();
+    map.putString("root", info.root);
+    map.putBoolean("built", info.built);
+    map.putDouble("dirs", (double)info.dirs);
+    map.putDouble("files", (double)info.files);
+    map.putDouble("bytes", (double)info.bytes);
+    map.putDouble("updatedAt", (double)info.updatedAt);
+    return map;
+  }
+
+  @Override
+  public void onCatalystInstanceDestroy() {
+    uploadConcurrency.shutdown();
+    downloadConcurrency.shutdown();
+    uploadLane.shutdown();
+    downloadLane.shutdown();
+    metadataExecutor.shutdownNow();
+    treeExecutor.shutdownNow();
+    segmentExecutor.shutdownNow();
+    progressAggregator.shutdown();
+    metrics.shutdown();
+    journal.close();
+    core.shutdown();
   }
 
   @Override
@@ -13,21 +13,309 @@ export interface ListItem {
     size: number;
     timestamp: Date;
 }
+export interface ListPage {
+    listId: string;
+    path: string;
+    cursor: number;
+    entries: Array<ListItem>;
+    done: boolean;
+}
 export interface FtpSetupConfiguration {
     ip_address: string;
     port: number;
     username: string;
     password: string;
+    tls?: boolean;
+    protectData?: boolean;
+    certificateSha256?: string;
+}
+export declare const enum TransferPriority {
+    Low = -10,
+    Normal = 0,
+    High = 10
+}
+export interface TransferOptions {
+    priority?: number;
+    resume?: boolean;
+    retries?: number;
+    retryDelay?: number;
+    segments?: number;
+    maxBytesPerSecond?: number;
+    compression?: 'off' | 'auto' | 'on';
+    checksumAlgorithm?: 'crc32' | 'md5' | 'sha256';
+    persistent?: boolean;
+}
+export interface TransferChecksum {
+    algorithm: 'crc32' | 'md5' | 'sha256';
+    value: string;
+    verified: boolean | null;
+}
+export interface TransferResult {
+    checksum?: TransferChecksum;
+}
+export interface BandwidthLimit {
+    upload?: number;
+    download?: number;
+}
+export interface ConcurrencyOptions {
+    adaptive?: boolean;
+    min?: number;
+    max?: number;
+    interval?: number;
+}
+export interface ConcurrencyDecision {
+    time: number;
+    from: number;
+    to: number;
+    reason: 'increase' | 'plateau' | 'rtt' | 'error' | 'timeout' | 'config';
+    throughput: number;
+    rtt: number;
+    errors: number;
+    timeouts: number;
+}
+export interface ConcurrencyChange extends ConcurrencyDecision {
+    lane: 'upload' | 'download';
+}
+export interface LaneConcurrency {
+    adaptive: boolean;
+    min: number;
+    max: number;
+    level: number;
+    active: number;
+    queued: number;
+    throughput: number;
+    rtt: number;
+    baseRtt: number;
+    decisions: Array<ConcurrencyDecision>;
+}
+export interface FtpConcurrency {
+    upload: LaneConcurrency;
+    download: LaneConcurrency;
+}
+export interface TransferInfo {
+    token: string;
+    type: "upload" | "download";
+    state: "queued" | "running" | "paused" | "finished";
+    priority: number;
+}
+export interface PersistentTransfer {
+    token: string;
+    type: "upload" | "download";
+    localPath: string;
+    remotePath: string;
+    server: string;
+    offset: number;
+}
+export interface TransferFinished {
+    token: string;
+    type: "upload" | "download";
+    localPath: string;
+    remotePath: string;
+    status: "done" | "failed" | "cancelled";
+    result?: TransferResult;
+    code?: string;
+    error?: string;
+}
+export interface FolderStats {
+    bytes: number;
+    files: number;
+    dirs: number;
+}
+export interface FolderStatsOptions {
+    parallelism?: number;
+    useCache?: boolean;
+}
+export interface IndexInfo {
+    root: string;
+    built: boolean;
+    dirs: number;
+    files: number;
+    bytes: number;
+    updatedAt: number;
+}
+export interface IndexUpdate extends IndexInfo {
+    full: boolean;
+    dirsChecked: number;
+    dirsListed: number;
+    failures: number;
+    durationMs: number;
+}
+export interface IndexUpdateOptions {
+    parallelism?: number;
+    full?: boolean;
+}
+export interface IndexQuery {
+    under?: string;
+    prefix?: string;
+    glob?: string;
+    caseSensitive?: boolean;
+    type?: "file" | "dir";
+    minSize?: number;
+    maxSize?: number;
+    modifiedAfter?: number;
+    modifiedBefore?: number;
+    limit?: number;
+}
+export interface IndexEntry {
+    path: string;
+    type: "file" | "dir";
+    size: number;
+    timestamp?: string;
+    modifiedAt?: number;
+}
+export interface FolderScanProgress {
+    path: string;
+    dirsScanned: number;
+    files: number;
+    bytes: number;
+    done: boolean;
+}
+export interface RemoveProgress {
+    path: string;
+    deletedFiles: number;
+    deletedDirs: number;
+    failed: number;
+    done: boolean;
+}
+export interface MetricsHistogram {
+    unit: string;
+    count: number;
+    mean: number;
+    min: number;
+    max: number;
+    p50: number;
+    p90: number;
+    p99: number;
+}
+export interface FtpMetrics {
+    since: number;
+    counters: {
+        [name: string]: number;
+    };
+    histograms: {
+        [name: string]: MetricsHistogram;
+    };
+}
+export interface RemoteFileStat {
+    path: string;
+    exists: boolean;
+    name?: string;
+    type?: FtpFileType;
+    size?: number;
+    timestamp?: string;
+}
+export interface RangeOptions {
+    localPath?: string;
+}
+export interface RangeResult {
+    offset?: number;
+    length: number;
+    data?: string;
+    localPath?: string;
+}
+export interface FtpListCacheOptions {
+    ttl?: number;
+    maxEntries?: number;
+    staleWhileRevalidate?: boolean;
+}
+export interface TransferProgress {
+    token: string;
+    percentage: number;
+    bytesTransferred: number;
+    totalBytes: number;
+    throughput: number;
+    averageThroughput: number;
+    eta: number;
+}
+export interface BatchUploadFile {
+    localPath: string;
+    remotePath: string;
+}
+export interface BatchUploadOptions extends TransferOptions {
+    token?: string;
+    parallelism?: number;
+}
+export interface SyncOptions extends TransferOptions {
+    token?: string;
+    delete?: boolean;
+    conflict?: "newer" | "local" | "remote" | "skip";
+    checksum?: boolean;
+    dryRun?: boolean;
+    full?: boolean;
+    parallelism?: number;
+}
+export interface SyncResult {
+    token: string;
+    uploaded: number;
+    downloaded: number;
+    deletedLocal: number;
+    deletedRemote: number;
+    unchanged: number;
+    conflicts: Array<string>;
+    failures: Array<{
+        path: string;
+        error: string;
+    }>;
+    plan?: Array<{
+        action: string;
+        path: string;
+    }>;
+}
+export interface BatchUploadResult {
+    token: string;
+    uploaded: number;
+    failed: number;
+    results: Array<{
+        localPath: string;
+        remotePath: string;
+        success: boolean;
+        error?: string;
+        checksum?: TransferChecksum;
+    }>;
+}
+export interface FtpBufferSizes {
+    bufferSize?: number;
+    sendBufferSize?: number;
+    receiveBufferSize?: number;
+}
+export interface FtpPoolOptions {
+    minIdle?: number;
+    maxIdle?: number;
+    idleTimeout?: number;
+    validateAfter?: number;
 }
 declare module FtpClient {
     function setup(config: FtpSetupConfiguration): void;
+    function setPoolOptions(options: FtpPoolOptions): void;
+    function setBufferSizes(sizes: FtpBufferSizes): void;
+    function setProgressInterval(interval_ms: number): void;
+    function setListCacheOptions(options: FtpListCacheOptions): void;
+    function clearListCache(): void;
     function list(remote_path: string): Promise<Array<ListItem>>;
+    function listPaged(remote_path: string, on_page: (page: ListPage) => void, page_size?: number): Promise<number>;
+    function cancelList(list_id: string): Promise<boolean>;
     function uploadFile(local_path: string, remote_path: string): Promise<void>;
     function cancelUploadFile(token: string): Promise<void>;
-    function addProgressListener(listener: (data: {
-        token: string;
-        percentage: number;
-    }) => void): EmitterSubscription;
+    function enqueueUpload(local_path: string, remote_path: string, options?: TransferOptions): Promise<TransferResult>;
+    function makeBatchToken(): string;
+    function uploadFiles(files: Array<BatchUploadFile>, options?: BatchUploadOptions): Promise<BatchUploadResult>;
+    function uploadDirectory(local_dir: string, remote_dir: string, options?: BatchUploadOptions): Promise<BatchUploadResult>;
+    function sync(local_dir: string, remote_dir: string, direction: "upload" | "download" | "both", options?: SyncOptions): Promise<SyncResult>;
+    function enqueueDownload(local_path: string, remote_path: string, options?: TransferOptions): Promise<TransferResult>;
+    function pauseTransfer(token: string): Promise<void>;
+    function resumeTransfer(token: string): Promise<void>;
+    function setTransferPriority(token: string, priority: number): Promise<void>;
+    function setTransferBandwidth(token: string, bytes_per_second: number): Promise<void>;
+    function setBandwidthLimit(limit: BandwidthLimit): void;
+    function getTransfers(): Promise<Array<TransferInfo>>;
+    function getPersistentTransfers(): Promise<Array<PersistentTransfer>>;
+    function removePersistentTransfer(token: string): void;
+    function addTransferFinishedListener(listener: (data: TransferFinished) => void): EmitterSubscription;
+    function setConcurrencyOptions(lane: "upload" | "download", options: ConcurrencyOptions): void;
+    function getConcurrency(): Promise<FtpConcurrency>;
+    function addConcurrencyListener(listener: (data: ConcurrencyChange) => void): EmitterSubscription;
+    function addProgressListener(listener: (data: TransferProgress) => void): EmitterSubscription;
+    function addProgressBatchListener(listener: (transfers: Array<TransferProgress>) => void): EmitterSubscription;
     function remove(remote_path: string): Promise<void>;
     const ERROR_MESSAGE_CANCELLED: string;
     function downloadFile(local_path: string, remote_path: string): Promise<void>;
@@ -36,5 +324,21 @@ declare module FtpClient {
     function moveFileOrDirectory(remote_path: string, new_remote_path: string): Promise<void>;
     function checkFileExists(remote_path: string, remove_file_name: string): Promise<boolean>;
     function getFolderSize(remote_path: string): Promise<number>;
+    function getFolderStats(remote_path: string, options?: FolderStatsOptions): Promise<FolderStats>;
+    function cancelFolderScan(remote_path: string): Promise<boolean>;
+    function updateIndex(remote_root: string, options?: IndexUpdateOptions): Promise<IndexUpdate>;
+    function searchIndex(remote_root: string, query: IndexQuery): Promise<Array<IndexEntry>>;
+    function getIndexInfo(remote_root: string): Promise<IndexInfo>;
+    function removeIndex(remote_root: string): Promise<boolean>;
+    function addFolderScanListener(listener: (data: FolderScanProgress) => void): EmitterSubscription;
+    function addRemoveProgressListener(listener: (data: RemoveProgress) => void): EmitterSubscription;
+    function getMetrics(): Promise<FtpMetrics>;
+    function resetMetrics(): void;
+    function setMetricsInterval(interval_ms: number): void;
+    function addMetricsListener(listener: (data: FtpMetrics) => void): EmitterSubscription;
+    function statFile(remote_path: string): Promise<RemoteFileStat>;
+    function checkFilesExist(remote_dir: string, file_names: Array<string>): Promise<Array<RemoteFileStat>>;
+    function readRange(remote_path: string, offset: number, length: number, options?: RangeOptions): Promise<RangeResult>;
+    function tail(remote_path: string, bytes: number, options?: RangeOptions): Promise<RangeResult>;
 }
 export default FtpClient;
@@ -1,4 +1,4 @@
-import { NativeModules, NativeEventEmitter } from 'react-native';
+import { NativeModules, NativeEventEmitter, Platform } from 'react-native';
 import { get } from 'react-native/Libraries/TurboModule/TurboModuleRegistry';
 const { RNFtpClient } = NativeModules;
 const RNFtpClientEventEmitter = new NativeEventEmitter(RNFtpClient);
@@ -10,6 +10,14 @@ export var FtpFileType;
     FtpFileType["Unknown"] = "unknown";
 })(FtpFileType || (FtpFileType = {}));
 ;
+export var TransferPriority;
+(function (TransferPriority) {
+    TransferPriority[TransferPriority["Low"] = -10] = "Low";
+    TransferPriority[TransferPriority["Normal"] = 0] = "Normal";
+    TransferPriority[TransferPriority["High"] = 10] = "High";
+})(TransferPriority || (TransferPriority = {}));
+;
+;
 ;
 ;
 var FtpClient;
@@ -28,21 +36,66 @@ var FtpClient;
         }
     }
     function setup(config) {
+        if (config.tls) {
+            RNFtpClient.setupTls(config.ip_address, config.port, config.username, config.password, { protectData: config.protectData, certificateSha256: config.certificateSha256 });
+            return;
+        }
         RNFtpClient.setup(config.ip_address, config.port, config.username, config.password);
     }
     FtpClient.setup = setup;
+    function setPoolOptions(options) {
+        RNFtpClient.setPoolOptions(options);
+    }
+    FtpClient.setPoolOptions = setPoolOptions;
+    function setBufferSizes(sizes) {
+        RNFtpClient.setBufferSizes(sizes);
+    }
+    FtpClient.setBufferSizes = setBufferSizes;
+    function setProgressInterval(interval_ms) {
+        RNFtpClient.setProgressInterval(interval_ms);
+    }
+    FtpClient.setProgressInterval = setProgressInterval;
+    function setListCacheOptions(options) {
+        RNFtpClient.setListCacheOptions(options);
+    }
+    FtpClient.setListCacheOptions = setListCacheOptions;
+    function clearListCache() {
+        RNFtpClient.clearListCache();
+    }
+    FtpClient.clearListCache = clearListCache;
+    function toListItem(f) {
+        return {
+            name: f.name,
+            type: getEnumFromString(f.type),
+            size: +f.size,
+            timestamp: f.modifiedAt !== undefined ? new Date(f.modifiedAt) : new Date(f.timestamp)
+        };
+    }
     async function list(remote_path) {
         const files = await RNFtpClient.list(remote_path);
-        return files.map((f) => {
-            return {
-                name: f.name,
-                type: getEnumFromString(f.type),
-                size: +f.size,
-                timestamp: new Date(f.timestamp)
-            };
-        });
+        return files.map(toListItem);
     }
     FtpClient.list = list;
+    let listCount = 0;
+    async function listPaged(remote_path, on_page, page_size = 200) {
+        const listId = `list-${Date.now()}-${listCount++}`;
+        const subscription = RNFtpClientEventEmitter.addListener("ListPage", (page) => {
+            if (page.listId === listId) {
+                on_page({ ...page, entries: page.entries.map(toListItem) });
+            }
+        });
+        try {
+            return await RNFtpClient.listPaged(listId, remote_path, page_size);
+        }
+        finally {
+            subscription.remove();
+        }
+    }
+    FtpClient.listPaged = listPaged;
+    async function cancelList(list_id) {
+        return RNFtpClient.cancelList(list_id);
+    }
+    FtpClient.cancelList = cancelList;
     async function uploadFile(local_path, remote_path) {
         return RNFtpClient.uploadFile(local_path, remote_path);
     }
@@ -51,10 +104,106 @@ var FtpClient;
         return RNFtpClient.cancelUploadFile(token);
     }
     FtpClient.cancelUploadFile = cancelUploadFile;
+    async function enqueueUpload(local_path, remote_path, options = {}) {
+        return RNFtpClient.enqueueUpload(local_path, remote_path, options);
+    }
+    FtpClient.enqueueUpload = enqueueUpload;
+    let batchCount = 0;
+    function makeBatchToken() {
+        return `batch:${Date.now()}-${batchCount++}`;
+    }
+    FtpClient.makeBatchToken = makeBatchToken;
+    async function uploadFiles(files, options = {}) {
+        return RNFtpClient.uploadFiles(files, { token: makeBatchToken(), ...options });
+    }
+    FtpClient.uploadFiles = uploadFiles;
+    async function uploadDirectory(local_dir, remote_dir, options = {}) {
+        return RNFtpClient.uploadDirectory(local_dir, remote_dir, { token: makeBatchToken(), ...options });
+    }
+    FtpClient.uploadDirectory = uploadDirectory;
+    async function sync(local_dir, remote_dir, direction, options = {}) {
+        return RNFtpClient.sync(local_dir, remote_dir, direction, { token: makeBatchToken(), ...options });
+    }
+    FtpClient.sync = sync;
+    async function enqueueDownload(local_path, remote_path, options = {}) {
+        return RNFtpClient.enqueueDownload(local_path, remote_path, options);
+    }
+    FtpClient.enqueueDownload = enqueueDownload;
+    async function pauseTransfer(token) {
+        return RNFtpClient.pauseTransfer(token);
+    }
+    FtpClient.pauseTransfer = pauseTransfer;
+    async function resumeTransfer(token) {
+        return RNFtpClient.resumeTransfer(token);
+    }
+    FtpClient.resumeTransfer = resumeTransfer;
+    async function setTransferPriority(token, priority) {
+        return RNFtpClient.setTransferPriority(token, priority);
+    }
+    FtpClient.setTransferPriority = setTransferPriority;
+    async function setTransferBandwidth(token, bytes_per_second) {
+        return RNFtpClient.setTransferBandwidth(token, bytes_per_second);
+    }
+    FtpClient.setTransferBandwidth = setTransferBandwidth;
+    function setBandwidthLimit(limit) {
+        RNFtpClient.setBandwidthLimit(limit);
+    }
+    FtpClient.setBandwidthLimit = setBandwidthLimit;
+    async function getTransfers() {
+        return RNFtpClient.getTransfers();
+    }
+    FtpClient.getTransfers = getTransfers;
+    async function getPersistentTransfers() {
+        return RNFtpClient.getPersistentTransfers();
+    }
+    FtpClient.getPersistentTransfers = getPersistentTransfers;
+    function removePersistentTransfer(token) {
+        RNFtpClient.removePersistentTransfer(token);
+    }
+    FtpClient.removePersistentTransfer = removePersistentTransfer;
+    function addTransferFinishedListener(listener) {
+        return RNFtpClientEventEmitter.addListener("TransferFinished", listener);
+    }
+    FtpClient.addTransferFinishedListener = addTransferFinishedListener;
+    function setConcurrencyOptions(lane, options) {
+        RNFtpClient.setConcurrencyOptions(lane, options);
+    }
+    FtpClient.setConcurrencyOptions = setConcurrencyOptions;
+    async function getConcurrency() {
+        return RNFtpClient.getConcurrency();
+    }
+    FtpClient.getConcurrency = getConcurrency;
+    function addConcurrencyListener(listener) {
+        return RNFtpClientEventEmitter.addListener("ConcurrencyChange", listener);
+    }
+    FtpClient.addConcurrencyListener = addConcurrencyListener;
+    // iOS vẫn gửi từng event "Progress" {token, percentage}, không có byte/tốc độ (-1/0)
+    function toTransferProgress(data) {
+        return { token: data.token, percentage: data.percentage, bytesTransferred: -1, totalBytes: -1,
+            throughput: 0, averageThroughput: 0, eta: -1 };
+    }
     function addProgressListener(listener) {
-        return RNFtpClientEventEmitter.addListener("Progress", listener);
+        if (Platform.OS === "ios") {
+            return RNFtpClientEventEmitter.addListener("Progress", (data) => {
+                listener(toTransferProgress(data));
+            });
+        }
+        return RNFtpClientEventEmitter.addListener("ProgressBatch", (batch) => {
+            batch.transfers.forEach(listener);
+        });
     }
     FtpClient.addProgressListener = addProgressListener;
+    function addProgressBatchListener(listener) {
+        if (Platform.OS === "ios") {
+            return RNFtpClientEventEmitter.addListener("Progress", (data) => {
+                listener([toTransferProgress(data)]);
+            });
+        }
+        return RNFtpClientEventEmitter.addListener("ProgressBatch", (batch) => {
+            listener(batch.transfers);
+        });
+    }
+    FtpClient.addProgressBatchListener = addProgressBatchListener;
     async function remove(remote_path) {
         return RNFtpClient.remove(remote_path);
     }
@@ -84,6 +233,70 @@ var FtpClient;
         return RNFtpClient.getFolderSize(remote_path);
     }
     FtpClient.getFolderSize = getFolderSize;
+    async function getFolderStats(remote_path, options = {}) {
+        return RNFtpClient.getFolderStats(remote_path, options);
+    }
+    FtpClient.getFolderStats = getFolderStats;
+    async function cancelFolderScan(remote_path) {
+        return RNFtpClient.cancelFolderScan(remote_path);
+    }
+    FtpClient.cancelFolderScan = cancelFolderScan;
+    async function updateIndex(remote_root, options = {}) {
+        return RNFtpClient.updateIndex(remote_root, options);
+    }
+    FtpClient.updateIndex = updateIndex;
+    async function searchIndex(remote_root, query) {
+        return RNFtpClient.searchIndex(remote_root, query);
+    }
+    FtpClient.searchIndex = searchIndex;
+    async function getIndexInfo(remote_root) {
+        return RNFtpClient.getIndexInfo(remote_root);
+    }
+    FtpClient.getIndexInfo = getIndexInfo;
+    async function removeIndex(remote_root) {
+        return RNFtpClient.removeIndex(remote_root);
+    }
+    FtpClient.removeIndex = removeIndex;
+    function addFolderScanListener(listener) {
+        return RNFtpClientEventEmitter.addListener("FolderScanProgress", listener);
+    }
+    FtpClient.addFolderScanListener = addFolderScanListener;
+    function addRemoveProgressListener(listener) {
+        return RNFtpClientEventEmitter.addListener("RemoveProgress", listener);
+    }
+    FtpClient.addRemoveProgressListener = addRemoveProgressListener;
+    async function getMetrics() {
+        return RNFtpClient.getMetrics();
+    }
+    FtpClient.getMetrics = getMetrics;
+    function resetMetrics() {
+        RNFtpClient.resetMetrics();
+    }
+    FtpClient.resetMetrics = resetMetrics;
+    function setMetricsInterval(interval_ms) {
+        RNFtpClient.setMetricsInterval(interval_ms);
+    }
+    FtpClient.setMetricsInterval = setMetricsInterval;
+    function addMetricsListener(listener) {
+        return RNFtpClientEventEmitter.addListener("Metrics", listener);
+    }
+    FtpClient.addMetricsListener = addMetricsListener;
+    async function statFile(remote_path) {
+        return RNFtpClient.statFile(remote_path);
+    }
+    FtpClient.statFile = statFile;
+    async function checkFilesExist(remote_dir, file_names) {
+        return RNFtpClient.checkFilesExist(remote_dir, file_names);
+    }
+    FtpClient.checkFilesExist = checkFilesExist;
+    async function readRange(remote_path, offset, length, options = {}) {
+        return RNFtpClient.readRange(remote_path, offset, length, options);
+    }
+    FtpClient.readRange = readRange;
+    async function tail(remote_path, bytes, options = {}) {
+        return RNFtpClient.tail(remote_path, bytes, options);
+    }
+    FtpClient.tail = tail;
 })(FtpClient || (FtpClient = {}));
 ;
 export default FtpClient;
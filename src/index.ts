@@ -1,4 +1,4 @@
-import { NativeModules, NativeEventEmitter,EmitterSubscription } from 'react-native';
+import { NativeModules, NativeEventEmitter,EmitterSubscription,Platform } from 'react-native';
 
 const { RNFtpClient } = NativeModules;
 const RNFtpClientEventEmitter = new NativeEventEmitter(RNFtpClient);
@@ -15,11 +15,260 @@ export interface ListItem{
         size:number,
         timestamp:Date,
     };
+export interface ListPage{
+        listId:string,
+        path:string,
+        cursor:number,
+        entries:Array<ListItem>,
+        done:boolean
+    };
+export interface RemoteFileStat{
+        path:string,
+        exists:boolean,
+        name?:string,
+        type?:FtpFileType,
+        size?:number,
+        timestamp?:string
+    };
+export interface RangeOptions{
+        localPath?:string
+    };
+export interface RangeResult{
+        offset?:number,
+        length:number,
+        data?:string,
+        localPath?:string
+    };
+export interface FolderStats{
+        bytes:number,
+        files:number,
+        dirs:number
+    };
+export interface FolderStatsOptions{
+        parallelism?:number,
+        useCache?:boolean
+    };
+export interface IndexInfo{
+        root:string,
+        built:boolean,
+        dirs:number,
+        files:number,
+        bytes:number,
+        updatedAt:number
+    };
+export interface IndexUpdate extends IndexInfo{
+        full:boolean,
+        dirsChecked:number,
+        dirsListed:number,
+        failures:number,
+        durationMs:number
+    };
+export interface IndexUpdateOptions{
+        parallelism?:number,
+        full?:boolean
+    };
+export interface IndexQuery{
+        under?:string,
+        prefix?:string,
+        glob?:string,
+        caseSensitive?:boolean,
+        type?:"file" | "dir",
+        minSize?:number,
+        maxSize?:number,
+        modifiedAfter?:number,
+        modifiedBefore?:number,
+        limit?:number
+    };
+export interface IndexEntry{
+        path:string,
+        type:"file" | "dir",
+        size:number,
+        timestamp?:string,
+        modifiedAt?:number
+    };
+export interface FolderScanProgress{
+        path:string,
+        dirsScanned:number,
+        files:number,
+        bytes:number,
+        done:boolean
+    };
+export interface RemoveProgress{
+        path:string,
+        deletedFiles:number,
+        deletedDirs:number,
+        failed:number,
+        done:boolean
+    };
+export interface MetricsHistogram{
+        unit:string,
+        count:number,
+        mean:number,
+        min:number,
+        max:number,
+        p50:number,
+        p90:number,
+        p99:number
+    };
+export interface FtpMetrics{
+        since:number,
+        counters:{[name:string]:number},
+        histograms:{[name:string]:MetricsHistogram}
+    };
 export interface FtpSetupConfiguration{
         ip_address:string,
         port:number,
         username:string,
-        password:string
+        password:string,
+        tls?:boolean,
+        protectData?:boolean,
+        certificateSha256?:string
+    };
+export const enum TransferPriority {
+        Low = -10,
+        Normal = 0,
+        High = 10,
+    };
+export interface TransferOptions{
+        priority?:number,
+        resume?:boolean,
+        retries?:number,
+        retryDelay?:number,
+        segments?:number,
+        maxBytesPerSecond?:number,
+        compression?:'off' | 'auto' | 'on',
+        checksumAlgorithm?:'crc32' | 'md5' | 'sha256',
+        persistent?:boolean
+    };
+export interface TransferChecksum{
+        algorithm:'crc32' | 'md5' | 'sha256',
+        value:string,
+        verified:boolean | null
+    };
+export interface TransferResult{
+        checksum?:TransferChecksum
+    };
+export interface BandwidthLimit{
+        upload?:number,
+        download?:number
+    };
+export interface ConcurrencyOptions{
+        adaptive?:boolean,
+        min?:number,
+        max?:number,
+        interval?:number
+    };
+export interface ConcurrencyDecision{
+        time:number,
+        from:number,
+        to:number,
+        reason:'increase' | 'plateau' | 'rtt' | 'error' | 'timeout' | 'config',
+        throughput:number,
+        rtt:number,
+        errors:number,
+        timeouts:number
+    };
+export interface ConcurrencyChange extends ConcurrencyDecision{
+        lane:'upload' | 'download'
+    };
+export interface LaneConcurrency{
+        adaptive:boolean,
+        min:number,
+        max:number,
+        level:number,
+        active:number,
+        queued:number,
+        throughput:number,
+        rtt:number,
+        baseRtt:number,
+        decisions:Array<ConcurrencyDecision>
+    };
+export interface FtpConcurrency{
+        upload:LaneConcurrency,
+        download:LaneConcurrency
+    };
+export interface TransferInfo{
+        token:string,
+        type:"upload"|"download",
+        state:"queued"|"running"|"paused"|"finished",
+        priority:number
+    };
+export interface PersistentTransfer{
+        token:string,
+        type:"upload"|"download",
+        localPath:string,
+        remotePath:string,
+        server:string,
+        offset:number
+    };
+export interface TransferFinished{
+        token:string,
+        type:"upload"|"download",
+        localPath:string,
+        remotePath:string,
+        status:"done"|"failed"|"cancelled",
+        result?:TransferResult,
+        code?:string,
+        error?:string
+    };
+export interface TransferProgress{
+        token:string,
+        percentage:number,
+        bytesTransferred:number,
+        totalBytes:number,
+        throughput:number,
+        averageThroughput:number,
+        eta:number
+    };
+export interface BatchUploadFile{
+        localPath:string,
+        remotePath:string
+    };
+export interface BatchUploadOptions extends TransferOptions{
+        token?:string,
+        parallelism?:number
+    };
+export interface BatchUploadResult{
+        token:string,
+        uploaded:number,
+        failed:number,
+        results:Array<{localPath:string, remotePath:string, success:boolean, error?:string, checksum?:TransferChecksum}>
+    };
+export interface SyncOptions extends TransferOptions{
+        token?:string,
+        delete?:boolean,
+        conflict?:"newer" | "local" | "remote" | "skip",
+        checksum?:boolean,
+        dryRun?:boolean,
+        full?:boolean,
+        parallelism?:number
+    };
+export interface SyncResult{
+        token:string,
+        uploaded:number,
+        downloaded:number,
+        deletedLocal:number,
+        deletedRemote:number,
+        unchanged:number,
+        conflicts:Array<string>,
+        failures:Array<{path:string, error:string}>,
+        plan?:Array<{action:string, path:string}>
+    };
+export interface FtpBufferSizes{
+        bufferSize?:number,
+        sendBufferSize?:number,
+        receiveBufferSize?:number
+    };
+export interface FtpListCacheOptions{
+        ttl?:number,
+        maxEntries?:number,
+        staleWhileRevalidate?:boolean
+    };
+export interface FtpPoolOptions{
+        minIdle?:number,
+        maxIdle?:number,
+        idleTimeout?:number,
+        validateAfter?:number
     };
 
 module FtpClient {
@@ -38,18 +287,66 @@ module FtpClient {
     }
 
     export function setup (config:FtpSetupConfiguration) {
+        if (config.tls) {
+            RNFtpClient.setupTls(config.ip_address,config.port,config.username,config.password,
+                {protectData:config.protectData,certificateSha256:config.certificateSha256});
+            return;
+        }
         RNFtpClient.setup(config.ip_address,config.port,config.username,config.password);
     }
+
+    export function setPoolOptions (options:FtpPoolOptions) {
+        RNFtpClient.setPoolOptions(options);
+    }
+
+    export function setBufferSizes (sizes:FtpBufferSizes) {
+        RNFtpClient.setBufferSizes(sizes);
+    }
+
+    export function setProgressInterval (interval_ms:number) {
+        RNFtpClient.setProgressInterval(interval_ms);
+    }
+
+    export function setListCacheOptions (options:FtpListCacheOptions) {
+        RNFtpClient.setListCacheOptions(options);
+    }
+
+    export function clearListCache () {
+        RNFtpClient.clearListCache();
+    }
     
+    function toListItem(f:{name:string,type:string,size:number,timestamp:string,modifiedAt?:number}):ListItem {
+        return {
+            name:f.name,
+            type:getEnumFromString(f.type),
+            size:+f.size,
+            timestamp:f.modifiedAt !== undefined ? new Date(f.modifiedAt) : new Date(f.timestamp)
+        };
+    }
+
     export async function list (remote_path:string):Promise<Array<ListItem>> {
         const files = await RNFtpClient.list(remote_path);
-        return files.map((f:{name:string,type:string,size:number,timestamp:string})=> {
-            return {
-                name:f.name,
-                type:getEnumFromString(f.type),
-                size:+f.size,
-                timestamp:new Date(f.timestamp)
-            };});
+        return files.map(toListItem);
+    }
+
+    let listCount = 0;
+
+    export async function listPaged (remote_path:string,on_page:(page:ListPage) => void,page_size:number = 200):Promise<number> {
+        const listId = `list-${Date.now()}-${listCount++}`;
+        const subscription = RNFtpClientEventEmitter.addListener("ListPage",(page:any) => {
+            if (page.listId === listId) {
+                on_page({...page, entries:page.entries.map(toListItem)});
+            }
+        });
+        try {
+            return await RNFtpClient.listPaged(listId,remote_path,page_size);
+        } finally {
+            subscription.remove();
+        }
+    }
+
+    export async function cancelList (list_id:string):Promise<boolean> {
+        return RNFtpClient.cancelList(list_id);
     }
 
     export async function uploadFile (local_path:string,remote_path:string):Promise<void> {
@@ -60,8 +357,170 @@ module FtpClient {
         return RNFtpClient.cancelUploadFile(token);
     }
 
-    export function addProgressListener(listener: ( data:{token:string, percentage:number}) => void):EmitterSubscription  {
-        return RNFtpClientEventEmitter.addListener("Progress",listener);
+    export async function enqueueUpload (local_path:string,remote_path:string,options:TransferOptions = {}):Promise<TransferResult> {
+        return RNFtpClient.enqueueUpload(local_path,remote_path,options);
+    }
+
+    let batchCount = 0;
+
+    export function makeBatchToken ():string {
+        return `batch:${Date.now()}-${batchCount++}`;
+    }
+
+    export async function uploadFiles (files:Array<BatchUploadFile>,options:BatchUploadOptions = {}):Promise<BatchUploadResult> {
+        return RNFtpClient.uploadFiles(files,{token:makeBatchToken(),...options});
+    }
+
+    export async function uploadDirectory (local_dir:string,remote_dir:string,options:BatchUploadOptions = {}):Promise<BatchUploadResult> {
+        return RNFtpClient.uploadDirectory(local_dir,remote_dir,{token:makeBatchToken(),...options});
+    }
+
+    export async function sync (local_dir:string,remote_dir:string,direction:"upload" | "download" | "both",options:SyncOptions = {}):Promise<SyncResult> {
+        return RNFtpClient.sync(local_dir,remote_dir,direction,{token:makeBatchToken(),...options});
+    }
+
+    export async function enqueueDownload (local_path:string,remote_path:string,options:TransferOptions = {}):Promise<TransferResult> {
+        return RNFtpClient.enqueueDownload(local_path,remote_path,options);
+    }
+
+    export async function pauseTransfer (token:string):Promise<void> {
+        return RNFtpClient.pauseTransfer(token);
+    }
+
+    export async function resumeTransfer (token:string):Promise<void> {
+        return RNFtpClient.resumeTransfer(token);
+    }
+
+    export async function setTransferPriority (token:string,priority:number):Promise<void> {
+        return RNFtpClient.setTransferPriority(token,priority);
+    }
+
+    export async function setTransferBandwidth (token:string,bytes_per_second:number):Promise<void> {
+        return RNFtpClient.setTransferBandwidth(token,bytes_per_second);
+    }
+
+    export function setBandwidthLimit (limit:BandwidthLimit) {
+        RNFtpClient.setBandwidthLimit(limit);
+    }
+
+    export async function getTransfers ():Promise<Array<TransferInfo>> {
+        return RNFtpClient.getTransfers();
+    }
+
+    export async function getPersistentTransfers ():Promise<Array<PersistentTransfer>> {
+        return RNFtpClient.getPersistentTransfers();
+    }
+
+    export function removePersistentTransfer (token:string) {
+        RNFtpClient.removePersistentTransfer(token);
+    }
+
+    export function addTransferFinishedListener(listener: ( data:TransferFinished) => void):EmitterSubscription  {
+        return RNFtpClientEventEmitter.addListener("TransferFinished",listener);
+    }
+
+    export function setConcurrencyOptions (lane:"upload" | "download",options:ConcurrencyOptions) {
+        RNFtpClient.setConcurrencyOptions(lane,options);
+    }
+
+    export async function getConcurrency ():Promise<FtpConcurrency> {
+        return RNFtpClient.getConcurrency();
+    }
+
+    export function addConcurrencyListener(listener: ( data:ConcurrencyChange) => void):EmitterSubscription  {
+        return RNFtpClientEventEmitter.addListener("ConcurrencyChange",listener);
+    }
+
+    // iOS vẫn gửi từng event "Progress" {token, percentage}, không có byte/tốc độ (-1/0)
+    function toTransferProgress(data:{token:string,percentage:number}):TransferProgress {
+        return {token:data.token,percentage:data.percentage,bytesTransferred:-1,totalBytes:-1,
+            throughput:0,averageThroughput:0,eta:-1};
+    }
+
+    export function addProgressListener(listener: ( data:TransferProgress) => void):EmitterSubscription  {
+        if (Platform.OS === "ios") {
+            return RNFtpClientEventEmitter.addListener("Progress",(data:{token:string,percentage:number}) => {
+                listener(toTransferProgress(data));
+            });
+        }
+        return RNFtpClientEventEmitter.addListener("ProgressBatch",(batch:{transfers:Array<TransferProgress>}) => {
+            batch.transfers.forEach(listener);
+        });
+    }
+
+    export function addProgressBatchListener(listener: ( transfers:Array<TransferProgress>) => void):EmitterSubscription  {
+        if (Platform.OS === "ios") {
+            return RNFtpClientEventEmitter.addListener("Progress",(data:{token:string,percentage:number}) => {
+                listener([toTransferProgress(data)]);
+            });
+        }
+        return RNFtpClientEventEmitter.addListener("ProgressBatch",(batch:{transfers:Array<TransferProgress>}) => {
+            listener(batch.transfers);
+        });
+    }
+
+    export async function statFile(remote_path:string):Promise<RemoteFileStat>{
+        return RNFtpClient.statFile(remote_path);
+    }
+
+    export async function checkFilesExist(remote_dir:string,file_names:Array<string>):Promise<Array<RemoteFileStat>>{
+        return RNFtpClient.checkFilesExist(remote_dir,file_names);
+    }
+
+    export async function readRange(remote_path:string,offset:number,length:number,options:RangeOptions = {}):Promise<RangeResult>{
+        return RNFtpClient.readRange(remote_path,offset,length,options);
+    }
+
+    export async function tail(remote_path:string,bytes:number,options:RangeOptions = {}):Promise<RangeResult>{
+        return RNFtpClient.tail(remote_path,bytes,options);
+    }
+
+    export async function getFolderStats(remote_path:string,options:FolderStatsOptions = {}):Promise<FolderStats>{
+        return RNFtpClient.getFolderStats(remote_path,options);
+    }
+
+    export async function cancelFolderScan(remote_path:string):Promise<boolean>{
+        return RNFtpClient.cancelFolderScan(remote_path);
+    }
+
+    export async function updateIndex(remote_root:string,options:IndexUpdateOptions = {}):Promise<IndexUpdate>{
+        return RNFtpClient.updateIndex(remote_root,options);
+    }
+
+    export async function searchIndex(remote_root:string,query:IndexQuery):Promise<Array<IndexEntry>>{
+        return RNFtpClient.searchIndex(remote_root,query);
+    }
+
+    export async function getIndexInfo(remote_root:string):Promise<IndexInfo>{
+        return RNFtpClient.getIndexInfo(remote_root);
+    }
+
+    export async function removeIndex(remote_root:string):Promise<boolean>{
+        return RNFtpClient.removeIndex(remote_root);
+    }
+
+    export function addFolderScanListener(listener: ( data:FolderScanProgress) => void):EmitterSubscription  {
+        return RNFtpClientEventEmitter.addListener("FolderScanProgress",listener);
+    }
+
+    export function addRemoveProgressListener(listener: ( data:RemoveProgress) => void):EmitterSubscription  {
+        return RNFtpClientEventEmitter.addListener("RemoveProgress",listener);
+    }
+
+    export async function getMetrics ():Promise<FtpMetrics> {
+        return RNFtpClient.getMetrics();
+    }
+
+    export function resetMetrics () {
+        RNFtpClient.resetMetrics();
+    }
+
+    export function setMetricsInterval (interval_ms:number) {
+        RNFtpClient.setMetricsInterval(interval_ms);
+    }
+
+    export function addMetricsListener(listener: ( data:FtpMetrics) => void):EmitterSubscription  {
+        return RNFtpClientEventEmitter.addListener("Metrics",listener);
     }
 
     export async function remove(remote_path:string):Promise<void>{